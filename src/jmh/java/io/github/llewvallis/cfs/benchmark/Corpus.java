@@ -0,0 +1,143 @@
+package io.github.llewvallis.cfs.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid programs for the front end to chew on. Generation is seeded, so every run of a
+ * benchmark sees exactly the same source for a given size.
+ */
+public final class Corpus {
+
+  public enum Size {
+    /** About the size of a test case. */
+    SMALL(10),
+    /** About the size of a real program. */
+    MEDIUM(500),
+    /** About a megabyte of source, far larger than anyone would write by hand. */
+    LARGE(5_000);
+
+    private final int functions;
+
+    Size(int functions) {
+      this.functions = functions;
+    }
+  }
+
+  private static final int MAX_EXPR_DEPTH = 4;
+
+  private final Random random = new Random(42);
+
+  private final StringBuilder out = new StringBuilder();
+
+  private final List<Integer> arities = new ArrayList<>();
+
+  /** The names that may be read at the current point in the function being generated. */
+  private final List<String> scope = new ArrayList<>();
+
+  private Corpus() {}
+
+  public static String generate(Size size) {
+    var corpus = new Corpus();
+
+    for (var i = 0; i < size.functions; i++) {
+      corpus.function(i);
+    }
+
+    return corpus.out.toString();
+  }
+
+  /** Identifiers may only contain letters, so indices are written in base 26. */
+  private static String name(String prefix, int index) {
+    var result = new StringBuilder(prefix);
+
+    do {
+      result.append((char) ('a' + index % 26));
+      index /= 26;
+    } while (index > 0);
+
+    return result.toString();
+  }
+
+  private void function(int index) {
+    var arity = random.nextInt(4);
+    scope.clear();
+
+    out.append("int ").append(name("f", index)).append('(');
+    for (var i = 0; i < arity; i++) {
+      if (i > 0) out.append(", ");
+      var param = name("p", i);
+      out.append("int ").append(param);
+      scope.add(param);
+    }
+    out.append(") {\n");
+
+    var locals = random.nextInt(5);
+    for (var i = 0; i < locals; i++) {
+      var local = name("v", i);
+      out.append("  int ").append(local).append(";\n");
+      out.append("  ").append(local).append(" = ");
+      expr(index, 0);
+      out.append(";\n");
+      scope.add(local);
+    }
+
+    out.append("  return ");
+    expr(index, 0);
+    out.append(";\n}\n\n");
+
+    arities.add(arity);
+  }
+
+  /** Writes an expression which may only call functions declared before {@code function}. */
+  private void expr(int function, int depth) {
+    var choice = depth >= MAX_EXPR_DEPTH ? random.nextInt(2) : random.nextInt(10);
+
+    switch (choice) {
+      case 0 -> out.append(random.nextInt(1000));
+      case 1 -> {
+        if (scope.isEmpty()) {
+          out.append(random.nextInt(10));
+        } else {
+          out.append(scope.get(random.nextInt(scope.size())));
+        }
+      }
+      case 2 -> {
+        out.append('-');
+        expr(function, depth + 1);
+      }
+      case 3 -> {
+        out.append('(');
+        expr(function, depth + 1);
+        out.append(" ? ");
+        expr(function, depth + 1);
+        out.append(" : ");
+        expr(function, depth + 1);
+        out.append(')');
+      }
+      case 4 -> {
+        if (function == 0) {
+          out.append(random.nextInt(10));
+          return;
+        }
+
+        var callee = random.nextInt(function);
+        out.append(name("f", callee)).append('(');
+        for (var i = 0; i < arities.get(callee); i++) {
+          if (i > 0) out.append(", ");
+          expr(function, depth + 1);
+        }
+        out.append(')');
+      }
+      default -> {
+        var operator = List.of(" + ", " - ", " * ", " / ", " && ", " || ").get(random.nextInt(6));
+        out.append('(');
+        expr(function, depth + 1);
+        out.append(operator);
+        expr(function, depth + 1);
+        out.append(')');
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package io.github.llewvallis.cfs.benchmark;
+
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.ast.analysis.Analyzer;
+import io.github.llewvallis.cfs.events.Events;
+import io.github.llewvallis.cfs.parser.LexException;
+import io.github.llewvallis.cfs.parser.Lexer;
+import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.parser.TokenStream;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import io.github.llewvallis.cfs.token.TokenKind;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of each stage of the front end, over generated programs of several sizes. Besides the
+ * usual operations per second, each benchmark reports how many tokens or AST nodes per second it
+ * got through, which can be compared across sizes. Run with {@code -prof gc} to see allocation
+ * rates too.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrontEndBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "LARGE"})
+  private Corpus.Size size;
+
+  private String source;
+
+  private TokenStream tokens;
+
+  private ProgramAst ast;
+
+  private int nodes;
+
+  /** Counts the tokens processed, which JMH reports as a rate. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Tokens {
+
+    public long tokens;
+  }
+
+  /** Counts the AST nodes processed, which JMH reports as a rate. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Nodes {
+
+    public long nodes;
+  }
+
+  @Setup
+  public void setup() {
+    source = Corpus.generate(size);
+
+    var reporter = new ErrorReporter();
+    tokens = new TokenStream(reporter, new Lexer(source));
+    ast = new Parser(reporter, new TokenStream(tokens)).parse();
+    new Analyzer(reporter).analyze(ast);
+    nodes = Events.countNodes(ast);
+
+    if (!reporter.getErrors().isEmpty()) {
+      throw new IllegalStateException("generated program is invalid: " + reporter.getErrors());
+    }
+  }
+
+  @Benchmark
+  public void lex(Tokens processed, Blackhole blackhole) throws LexException {
+    var lexer = new Lexer(source);
+
+    while (true) {
+      var kind = lexer.nextKind();
+      blackhole.consume(kind);
+      blackhole.consume(lexer.getTokenEnd());
+      processed.tokens++;
+      if (kind == TokenKind.EOF) break;
+    }
+  }
+
+  @Benchmark
+  public TokenStream tokenStream(Tokens processed) {
+    processed.tokens += tokens.size();
+    return new TokenStream(new ErrorReporter(), new Lexer(source));
+  }
+
+  @Benchmark
+  public ProgramAst parse(Nodes processed) {
+    processed.nodes += nodes;
+    return new Parser(new ErrorReporter(), new TokenStream(tokens)).parse();
+  }
+
+  /** Lexes as it parses, only keeping the tokens it may backtrack to. */
+  @Benchmark
+  public ProgramAst parseStreaming(Nodes processed) {
+    processed.nodes += nodes;
+    return Parser.parse(new ErrorReporter(), new StringReader(source));
+  }
+
+  /** Analysis only fills in fields of the tree, so the same tree can be analyzed repeatedly. */
+  @Benchmark
+  public ProgramAst analyze(Nodes processed) {
+    processed.nodes += nodes;
+    new Analyzer(new ErrorReporter()).analyze(ast);
+    return ast;
+  }
+}
@@ -2,47 +2,104 @@ package io.github.llewvallis.cfs;
 
 import io.github.llewvallis.cfs.ast.ProgramAst;
 import io.github.llewvallis.cfs.ast.analysis.Analyzer;
+import io.github.llewvallis.cfs.interpret.CompiledProgram;
+import io.github.llewvallis.cfs.interpret.EngineKind;
 import io.github.llewvallis.cfs.interpret.InterpretException;
-import io.github.llewvallis.cfs.interpret.Interpreter;
+import io.github.llewvallis.cfs.interpret.InterpreterOptions;
 import io.github.llewvallis.cfs.interpret.RValue;
 import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.parser.Utf8Reader;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import io.github.llewvallis.cfs.reporting.PipelineStats;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.List;
+import lombok.Getter;
 
 /**
  * A utility for running different stages of the compile in sequence. For example calling {@link
  * #analyze()} will lex, parse, and validate the program.
  *
- * <p>Only one method should be called on the driver to run all the required stages.
+ * <p>Only one method should be called on the driver to run all the required stages. How long each
+ * stage took is recorded in {@link #getStats()}.
  */
 public class CompilerDriver {
 
   private final ErrorReporter reporter = new ErrorReporter();
   private final String source;
 
+  /** The file being compiled, if the source was not given as a string. */
+  private final Reader file;
+
+  @Getter private final PipelineStats stats = new PipelineStats();
+
   private ProgramAst ast;
 
   public CompilerDriver(String source) {
     this.source = source;
+    this.file = null;
+  }
+
+  /**
+   * Compiles a UTF-8 file. The file is mapped into memory and lexed as it is parsed, so neither its
+   * text nor its tokens are ever held on the heap in full.
+   */
+  public CompilerDriver(Path path) throws IOException {
+    this.source = null;
+    this.file = Utf8Reader.map(path);
   }
 
   public ProgramAst parse() throws CompileErrorsException {
-    ast = Parser.parse(reporter, source);
+    if (file != null) {
+      ast = Parser.parse(reporter, file, stats);
+    } else {
+      ast = Parser.parse(reporter, source, stats);
+    }
+
     reporter.assertNoErrors();
     return ast;
   }
 
   public ProgramAst analyze() throws CompileErrorsException {
     parse();
-    new Analyzer(reporter).analyze(ast);
+    new Analyzer(reporter, stats).analyze(ast);
     reporter.assertNoErrors();
     return ast;
   }
 
   public RValue interpret(String function, List<RValue> params)
       throws CompileErrorsException, InterpretException {
+    return interpret(EngineKind.INTERPRETER, function, params);
+  }
+
+  public RValue interpret(EngineKind engine, String function, List<RValue> params)
+      throws CompileErrorsException, InterpretException {
+    var program = compile(engine);
+
+    var timer = stats.begin("interpret");
+    var result = program.run(function, params);
+    timer.end(1, "runs");
+    return result;
+  }
+
+  public CompiledProgram compile(EngineKind engine)
+      throws CompileErrorsException, InterpretException {
+    return compile(engine, InterpreterOptions.DEFAULT);
+  }
+
+  /**
+   * Analyzes the program and prepares it to be run by the given engine. The result can be run many
+   * times, concurrently, without repeating any of the work done here.
+   */
+  public CompiledProgram compile(EngineKind engine, InterpreterOptions options)
+      throws CompileErrorsException, InterpretException {
     analyze();
-    return new Interpreter(ast).run(function, params);
+
+    var timer = stats.begin("compile");
+    var program = new CompiledProgram(ast, engine, options);
+    timer.end(ast.getChildren().size(), "functions");
+    return program;
   }
 }
@@ -22,6 +22,12 @@ public final class CallExprAst extends RValueExprAst {
 
   @Getter @Setter @EqualsAndHashCode.Exclude private FunctionAst functionDecl;
 
+  /**
+   * Whether this is a call from a function to itself whose value is returned directly, so the
+   * caller's frame can be reused for the callee.
+   */
+  @Getter @Setter @EqualsAndHashCode.Exclude private boolean tailCall = false;
+
   public CallExprAst(Span span, IdentAst function, List<ExprAst> args) {
     super(span);
     this.function = function;
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 @ToString
@@ -22,6 +23,18 @@ public final class FunctionAst extends Ast {
 
   @Getter private final BlockAst body;
 
+  /**
+   * The number of slots needed to hold every variable and initialization flag in a call, assigned
+   * during analysis.
+   */
+  @Getter @Setter @EqualsAndHashCode.Exclude private int frameSize = -1;
+
+  /**
+   * A frame slot that a self tail call sets to one to restart the function rather than calling it
+   * again, or -1 if the function makes no such calls.
+   */
+  @Getter @Setter @EqualsAndHashCode.Exclude private int tailCallSlot = -1;
+
   public FunctionAst(
       Span span, IdentAst name, List<VarDeclAst> params, TyAst returnTy, BlockAst body) {
     super(span);
@@ -6,19 +6,60 @@ import io.github.llewvallis.cfs.graphviz.GraphvizNode;
 import io.github.llewvallis.cfs.reporting.Span;
 import java.util.Collections;
 import java.util.List;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
+/**
+ * A name. Identifiers that were parsed together share a {@link SymbolTable}, and are compared by
+ * their symbols rather than their text. Identifiers built by hand have no symbol, and are compared
+ * by their text instead.
+ */
 @ToString
-@EqualsAndHashCode(callSuper = false)
 public final class IdentAst extends Ast {
 
   @Getter private final String content;
 
+  /** The table {@link #symbol} is from, or null if this identifier has no symbol. */
+  @ToString.Exclude private final SymbolTable symbols;
+
+  private final int symbol;
+
   public IdentAst(Span span, String content) {
     super(span);
     this.content = content;
+    this.symbols = null;
+    this.symbol = -1;
+  }
+
+  public IdentAst(Span span, SymbolTable symbols, int symbol) {
+    super(span);
+    this.content = symbols.name(symbol);
+    this.symbols = symbols;
+    this.symbol = symbol;
+  }
+
+  /** This identifier's symbol in {@code table}, or -1 if its name is not in the table. */
+  public int lookupIn(SymbolTable table) {
+    return table == symbols ? symbol : table.lookup(content);
+  }
+
+  /** This identifier's symbol in {@code table}, adding its name to the table if needed. */
+  public int internIn(SymbolTable table) {
+    return table == symbols ? symbol : table.intern(content);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof IdentAst other)) return false;
+    if (symbols != null && symbols == other.symbols) return symbol == other.symbol;
+    return content.equals(other.content);
+  }
+
+  @Override
+  public int hashCode() {
+    // Consistent with equals either way, since equal symbols always have the same name
+    return content.hashCode();
   }
 
   @Override
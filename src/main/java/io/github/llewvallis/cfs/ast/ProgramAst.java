@@ -16,14 +16,30 @@ public final class ProgramAst extends Ast {
 
   @Getter private final List<FunctionAst> functions;
 
+  /** The identifiers of the program, shared by every {@link IdentAst} that was parsed with it. */
+  @Getter @ToString.Exclude @EqualsAndHashCode.Exclude private final SymbolTable symbols;
+
+  /** Creates a program whose identifiers have no symbols, such as one built by hand. */
   public ProgramAst(Span span, List<FunctionAst> functions) {
+    this(span, functions, new SymbolTable());
+
+    for (var function : functions) {
+      function.getName().internIn(symbols);
+    }
+  }
+
+  public ProgramAst(Span span, List<FunctionAst> functions, SymbolTable symbols) {
     super(span);
     this.functions = new ArrayList<>(functions);
+    this.symbols = symbols;
   }
 
   public FunctionAst getFunction(String name) {
+    var symbol = symbols.lookup(name);
+    if (symbol < 0) return null;
+
     for (FunctionAst function : functions) {
-      if (function.getName().getContent().equals(name)) {
+      if (function.getName().lookupIn(symbols) == symbol) {
         return function;
       }
     }
@@ -0,0 +1,108 @@
+package io.github.llewvallis.cfs.ast;
+
+import java.util.Arrays;
+
+/**
+ * Numbers every distinct identifier in a compilation, so that names can be compared and used as
+ * keys as plain ints instead of strings. Symbols are dense, starting from zero, which lets later
+ * stages index arrays by them.
+ *
+ * <p>Identifiers are interned straight from the lexer as they are read, so each distinct name is
+ * only copied out of the input once, however many times it appears.
+ */
+public class SymbolTable {
+
+  /** The name of each symbol. */
+  private String[] names = new String[16];
+
+  /** The {@link String#hashCode()} of each symbol's name, kept to avoid rehashing them. */
+  private int[] hashes = new int[16];
+
+  /** An open-addressed hash table of symbols plus one, with zero marking an empty slot. */
+  private int[] slots = new int[32];
+
+  private int size = 0;
+
+  /** The number of symbols, which is one more than the largest symbol. */
+  public int size() {
+    return size;
+  }
+
+  public String name(int symbol) {
+    return names[symbol];
+  }
+
+  /** The symbol of {@code name}, or -1 if it has not been interned. */
+  public int lookup(String name) {
+    var mask = slots.length - 1;
+    var hash = name.hashCode();
+
+    for (var slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+      var symbol = slots[slot] - 1;
+      if (symbol < 0 || hashes[symbol] == hash && names[symbol].equals(name)) return symbol;
+    }
+  }
+
+  public int intern(String name) {
+    var symbol = lookup(name);
+    return symbol >= 0 ? symbol : intern(name.toCharArray(), 0, name.length());
+  }
+
+  /** Interns {@code length} characters of {@code chars} from {@code offset}. */
+  public int intern(char[] chars, int offset, int length) {
+    var hash = 0;
+    for (var i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+
+    var mask = slots.length - 1;
+    var slot = spread(hash) & mask;
+
+    while (slots[slot] != 0) {
+      var symbol = slots[slot] - 1;
+      if (hashes[symbol] == hash && matches(names[symbol], chars, offset, length)) return symbol;
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+
+    var symbol = size++;
+    names[symbol] = new String(chars, offset, length);
+    hashes[symbol] = hash;
+    slots[slot] = symbol + 1;
+
+    // Keep the table at most half full so probe sequences stay short
+    if (size * 2 > slots.length) rehash();
+
+    return symbol;
+  }
+
+  private static boolean matches(String name, char[] chars, int offset, int length) {
+    if (name.length() != length) return false;
+
+    for (var i = 0; i < length; i++) {
+      if (name.charAt(i) != chars[offset + i]) return false;
+    }
+
+    return true;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    var mask = slots.length - 1;
+
+    for (var symbol = 0; symbol < size; symbol++) {
+      var slot = spread(hashes[symbol]) & mask;
+      while (slots[slot] != 0) slot = (slot + 1) & mask;
+      slots[slot] = symbol + 1;
+    }
+  }
+
+  /** Mixes the high bits of a hash into the low bits, which are all the table looks at. */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -7,6 +7,7 @@ import io.github.llewvallis.cfs.reporting.Span;
 import java.util.List;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 @ToString
@@ -17,6 +18,15 @@ public final class VarDeclAst extends Ast {
 
   @Getter private final TyAst ty;
 
+  /** The index of this variable in its function's frame, assigned during analysis. */
+  @Getter @Setter @EqualsAndHashCode.Exclude private int slot = -1;
+
+  /**
+   * The frame slot used to record whether this variable has been assigned, or -1 if every read of
+   * the variable is known to happen after an assignment.
+   */
+  @Getter @Setter @EqualsAndHashCode.Exclude private int initSlot = -1;
+
   public VarDeclAst(Span span, IdentAst name, TyAst ty) {
     super(span);
     this.name = name;
@@ -18,6 +18,13 @@ public final class VarExprAst extends LValueExprAst {
 
   @Getter @Setter @EqualsAndHashCode.Exclude private VarDeclAst decl = null;
 
+  /**
+   * Whether reading this variable might observe it before it has been assigned. When this is the
+   * target of an assignment, it means the assignment comes before the variable's declaration, and
+   * so fails if it is ever reached.
+   */
+  @Getter @Setter @EqualsAndHashCode.Exclude private boolean checkInitialized = false;
+
   public VarExprAst(Span span, IdentAst name) {
     super(span);
     this.name = name;
@@ -1,26 +1,73 @@
 package io.github.llewvallis.cfs.ast.analysis;
 
 import io.github.llewvallis.cfs.ast.Ast;
+import io.github.llewvallis.cfs.events.AnalysisPassEvent;
+import io.github.llewvallis.cfs.events.Events;
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import io.github.llewvallis.cfs.reporting.PipelineStats;
 
 /** Orchestrates validation and transformation passes over an AST. */
 public class Analyzer {
 
+  private final ErrorReporter reporter;
+
+  private final PipelineStats stats;
+
   private final CollectNames collectNames;
 
   private final ResolveNames resolveNames;
 
   private final CheckCallArity checkCallArity;
 
+  private final AssignSlots assignSlots;
+
+  private final CheckInitialization checkInitialization;
+
+  private final MarkTailCalls markTailCalls;
+
   public Analyzer(ErrorReporter reporter) {
+    this(reporter, new PipelineStats());
+  }
+
+  /** Creates an analyzer which records how long each pass takes in {@code stats}. */
+  public Analyzer(ErrorReporter reporter, PipelineStats stats) {
+    this.reporter = reporter;
+    this.stats = stats;
     collectNames = new CollectNames(reporter);
     resolveNames = new ResolveNames(reporter, collectNames);
     checkCallArity = new CheckCallArity(reporter);
+    assignSlots = new AssignSlots(reporter);
+    checkInitialization = new CheckInitialization(reporter);
+    markTailCalls = new MarkTailCalls(reporter);
   }
 
   public void analyze(Ast ast) {
-    ast.accept(collectNames);
-    ast.accept(resolveNames);
-    ast.accept(checkCallArity);
+    run(collectNames, ast);
+    run(resolveNames, ast);
+    run(checkCallArity, ast);
+    run(assignSlots, ast);
+    run(checkInitialization, ast);
+    run(markTailCalls, ast);
+  }
+
+  private void run(AnalysisPass pass, Ast ast) {
+    var name = pass.getClass().getSimpleName();
+    var recording = Events.isRecorderRunning();
+
+    var timer = stats.begin(name);
+    var event = recording ? new AnalysisPassEvent() : null;
+    if (recording) event.begin();
+    var errorsBefore = reporter.getErrors().size();
+
+    ast.accept(pass);
+
+    var errors = reporter.getErrors().size() - errorsBefore;
+    timer.end(errors, "errors");
+    if (recording) event.end();
+    if (recording && event.shouldCommit()) {
+      event.pass = name;
+      event.errors = errors;
+      event.commit();
+    }
   }
 }
@@ -0,0 +1,35 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.ast.VarDeclAst;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+
+/**
+ * Gives every variable declaration an index into its function's frame, and records the size of
+ * each frame. This lets an interpreter store variables in a flat array rather than looking them up
+ * by name.
+ *
+ * <p>Parameters are visited first, so a function's parameters always occupy the first slots of
+ * its frame in declaration order.
+ */
+public class AssignSlots extends AnalysisPass {
+
+  private int nextSlot = 0;
+
+  protected AssignSlots(ErrorReporter reporter) {
+    super(reporter);
+  }
+
+  @Override
+  public void visitFunction(FunctionAst ast) {
+    nextSlot = 0;
+    super.visitFunction(ast);
+    ast.setFrameSize(nextSlot);
+  }
+
+  @Override
+  public void visitVarDecl(VarDeclAst ast) {
+    ast.setSlot(nextSlot++);
+    super.visitVarDecl(ast);
+  }
+}
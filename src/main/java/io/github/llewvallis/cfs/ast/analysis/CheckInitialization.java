@@ -0,0 +1,134 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import java.util.BitSet;
+
+/**
+ * Finds variable reads that might happen before the variable is assigned. Reading an uninitialized
+ * variable is a runtime error, so each of these reads is marked to be checked, and the variable is
+ * given an extra frame slot to record whether it has been assigned. Every other read is known to be
+ * safe and needs no check at all.
+ *
+ * <p>Using a variable before its declaration is only an error if that use is reached at runtime.
+ * Declarations can only appear directly in a function's body, so the variable's flag is always
+ * clear at such a use. Reads are checked like any other, and assignments are marked to check the
+ * flag too, before their value is evaluated.
+ *
+ * <p>This must run after {@link AssignSlots}, since the set of definitely assigned variables is
+ * tracked by slot.
+ */
+public class CheckInitialization extends AnalysisPass {
+
+  private FunctionAst function;
+
+  /** The slots of all variables that are definitely assigned at the current point. */
+  private BitSet initialized;
+
+  /** The slots of all variables whose declaration comes before the current point. */
+  private BitSet declared;
+
+  protected CheckInitialization(ErrorReporter reporter) {
+    super(reporter);
+  }
+
+  @Override
+  public void visitFunction(FunctionAst ast) {
+    function = ast;
+    initialized = new BitSet();
+    declared = new BitSet();
+
+    for (var param : ast.getParams()) {
+      initialized.set(param.getSlot());
+      declared.set(param.getSlot());
+    }
+
+    super.visitFunction(ast);
+  }
+
+  @Override
+  public void visitVarDeclStmt(VarDeclStmtAst ast) {
+    // Executing a declaration resets the variable, even if it was assigned earlier
+    initialized.clear(ast.getDecl().getSlot());
+    declared.set(ast.getDecl().getSlot());
+    super.visitVarDeclStmt(ast);
+  }
+
+  @Override
+  public void visitIntoRValueExpr(IntoRValueExprAst ast) {
+    switch (ast.getLValue()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+
+        if (decl != null && !initialized.get(decl.getSlot())) {
+          var.setCheckInitialized(true);
+          allocateInitSlot(decl);
+        }
+      }
+    }
+
+    super.visitIntoRValueExpr(ast);
+  }
+
+  @Override
+  public void visitAssignmentExpr(AssignmentExprAst ast) {
+    // The right-hand side is evaluated before the variable is assigned
+    ast.getRhs().accept(this);
+
+    switch (ast.getLhs()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        if (decl == null) return;
+
+        if (declared.get(decl.getSlot())) {
+          initialized.set(decl.getSlot());
+        } else {
+          var.setCheckInitialized(true);
+          allocateInitSlot(decl);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void visitLogicalAndExpr(LogicalAndExprAst ast) {
+    visitShortCircuit(ast.getLhs(), ast.getRhs());
+  }
+
+  @Override
+  public void visitLogicalOrExpr(LogicalOrExprAst ast) {
+    visitShortCircuit(ast.getLhs(), ast.getRhs());
+  }
+
+  private void visitShortCircuit(RValueExprAst lhs, RValueExprAst rhs) {
+    lhs.accept(this);
+
+    // The right-hand side might not run, so nothing it assigns can be relied on afterwards
+    var before = (BitSet) initialized.clone();
+    rhs.accept(this);
+    initialized = before;
+  }
+
+  @Override
+  public void visitTernaryExpr(TernaryExprAst ast) {
+    ast.getCondition().accept(this);
+
+    var before = (BitSet) initialized.clone();
+    ast.getTrueCase().accept(this);
+    var afterTrue = initialized;
+
+    initialized = before;
+    ast.getFalseCase().accept(this);
+
+    // Only variables assigned by both branches are definitely assigned afterwards
+    initialized.and(afterTrue);
+  }
+
+  private void allocateInitSlot(VarDeclAst decl) {
+    if (decl.getInitSlot() >= 0) return;
+
+    var slot = function.getFrameSize();
+    decl.setInitSlot(slot);
+    function.setFrameSize(slot + 1);
+  }
+}
@@ -2,16 +2,25 @@ package io.github.llewvallis.cfs.ast.analysis;
 
 import io.github.llewvallis.cfs.ast.FunctionAst;
 import io.github.llewvallis.cfs.ast.IdentAst;
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.ast.SymbolTable;
 import io.github.llewvallis.cfs.ast.VarDeclAst;
 import io.github.llewvallis.cfs.reporting.DuplicateNameError;
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-/** Maintains an index of all identifiers and reports duplicate identifiers. */
+/**
+ * Maintains an index of all identifiers and reports duplicate identifiers. Names are keyed by
+ * their symbol in the program's {@link SymbolTable}.
+ */
 public class CollectNames extends AnalysisPass {
 
-  private final Map<IdentAst, FunctionAst> functions = new HashMap<>();
+  private SymbolTable symbols;
+
+  /** Each function, indexed by the symbol of its name. */
+  private FunctionAst[] functions = new FunctionAst[0];
 
   private final Map<NameInFunction, VarDeclAst> variables = new HashMap<>();
 
@@ -19,31 +28,57 @@ public class CollectNames extends AnalysisPass {
     super(reporter);
   }
 
-  private record NameInFunction(IdentAst function, IdentAst variable) {}
+  private record NameInFunction(int function, int variable) {}
 
   public FunctionAst getFunction(IdentAst ident) {
-    return functions.get(ident);
+    if (symbols == null) return null;
+
+    var symbol = ident.lookupIn(symbols);
+    return symbol >= 0 && symbol < functions.length ? functions[symbol] : null;
   }
 
   public VarDeclAst getVariable(IdentAst function, IdentAst ident) {
-    return variables.get(new NameInFunction(function, ident));
+    if (symbols == null) return null;
+
+    var functionSymbol = function.lookupIn(symbols);
+    var symbol = ident.lookupIn(symbols);
+    if (functionSymbol < 0 || symbol < 0) return null;
+
+    return variables.get(new NameInFunction(functionSymbol, symbol));
+  }
+
+  @Override
+  public void visitProgram(ProgramAst ast) {
+    symbols = ast.getSymbols();
+    functions = new FunctionAst[symbols.size()];
+    variables.clear();
+
+    super.visitProgram(ast);
   }
 
   @Override
   public void visitFunction(FunctionAst ast) {
     var functionName = ast.getName();
+    var symbol = functionName.internIn(symbols);
 
-    if (functions.put(functionName, ast) != null) {
+    if (symbol >= functions.length) {
+      functions = Arrays.copyOf(functions, symbols.size());
+    }
+
+    if (functions[symbol] != null) {
       report(new DuplicateNameError(functionName));
     }
 
+    functions[symbol] = ast;
+
     super.visitFunction(ast);
   }
 
   @Override
   public void visitVarDecl(VarDeclAst ast) {
     var function = ast.findAncestor(FunctionAst.class);
-    var nameInFunction = new NameInFunction(function.getName(), ast.getName());
+    var nameInFunction =
+        new NameInFunction(function.getName().internIn(symbols), ast.getName().internIn(symbols));
 
     if (variables.put(nameInFunction, ast) != null) {
       report(new DuplicateNameError(ast.getName()));
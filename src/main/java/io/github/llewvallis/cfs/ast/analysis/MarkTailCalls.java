@@ -0,0 +1,61 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+
+/**
+ * Finds calls from a function to itself whose value is returned as is, either directly or through
+ * the branches of a ternary or the right-hand side of a logical operator. Since the language has no
+ * loops, these calls are how programs iterate, and executing them by reusing the current frame
+ * keeps such programs in constant stack space.
+ *
+ * <p>Functions containing such a call are given an extra frame slot used to signal a restart. This
+ * must run after every other pass that assigns slots.
+ */
+public class MarkTailCalls extends AnalysisPass {
+
+  private FunctionAst function;
+
+  private boolean foundTailCall;
+
+  protected MarkTailCalls(ErrorReporter reporter) {
+    super(reporter);
+  }
+
+  @Override
+  public void visitFunction(FunctionAst ast) {
+    function = ast;
+    foundTailCall = false;
+
+    super.visitFunction(ast);
+
+    if (foundTailCall) {
+      ast.setTailCallSlot(ast.getFrameSize());
+      ast.setFrameSize(ast.getFrameSize() + 1);
+    }
+  }
+
+  @Override
+  public void visitReturnStmt(ReturnStmtAst ast) {
+    markTailPosition(ast.getValue());
+    super.visitReturnStmt(ast);
+  }
+
+  private void markTailPosition(RValueExprAst ast) {
+    switch (ast) {
+      case CallExprAst call -> {
+        if (call.getFunctionDecl() == function) {
+          call.setTailCall(true);
+          foundTailCall = true;
+        }
+      }
+      case TernaryExprAst ternary -> {
+        markTailPosition(ternary.getTrueCase());
+        markTailPosition(ternary.getFalseCase());
+      }
+      case LogicalAndExprAst logicalAnd -> markTailPosition(logicalAnd.getRhs());
+      case LogicalOrExprAst logicalOr -> markTailPosition(logicalOr.getRhs());
+      default -> {}
+    }
+  }
+}
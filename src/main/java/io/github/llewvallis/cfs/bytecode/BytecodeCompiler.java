@@ -0,0 +1,303 @@
+package io.github.llewvallis.cfs.bytecode;
+
+import static io.github.llewvallis.cfs.bytecode.Opcodes.*;
+
+import io.github.llewvallis.cfs.ast.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed program to register-based bytecode.
+ *
+ * <p>Temporary registers are allocated like a stack: each expression takes the registers it needs
+ * above {@link #nextRegister} and gives them back once its result has been used.
+ */
+public class BytecodeCompiler {
+
+  private final Map<FunctionAst, Integer> functionIndices = new IdentityHashMap<>();
+
+  private int[] code;
+  private int codeLength;
+
+  private int nextRegister;
+  private int registerCount;
+
+  public BytecodeProgram compile(ProgramAst ast) {
+    var functions = ast.getFunctions();
+
+    for (var i = 0; i < functions.size(); i++) {
+      functionIndices.put(functions.get(i), i);
+    }
+
+    var results = new ArrayList<BytecodeFunction>();
+    for (var function : functions) {
+      results.add(compileFunction(function));
+    }
+
+    return new BytecodeProgram(results);
+  }
+
+  private BytecodeFunction compileFunction(FunctionAst ast) {
+    code = new int[64];
+    codeLength = 0;
+    nextRegister = ast.getFrameSize();
+    registerCount = nextRegister;
+
+    compileBody(ast.getBody());
+
+    return new BytecodeFunction(
+        ast.getName().getContent(),
+        ast.getParams().size(),
+        ast.getFrameSize(),
+        registerCount,
+        Arrays.copyOf(code, codeLength));
+  }
+
+  private void compileBody(BlockAst ast) {
+    for (var stmt : ast.getStmts()) {
+      switch (stmt) {
+        case VarDeclStmtAst varDecl -> {
+          var initSlot = varDecl.getDecl().getInitSlot();
+          if (initSlot >= 0) emit(CONST, initSlot, 0);
+        }
+        case ReturnStmtAst returnStmt -> {
+          compileReturn(returnStmt.getValue());
+          // Anything after a return statement can never run
+          return;
+        }
+        case ExprStmtAst exprStmt -> {
+          var mark = nextRegister;
+          compileOperand(exprStmt.getExpr(), false);
+          nextRegister = mark;
+        }
+      }
+    }
+
+    emit(NO_RETURN);
+  }
+
+  /**
+   * Compiles an expression whose value is returned. Ternaries and logical operators are compiled so
+   * that each branch ends in its own return, which lets self tail calls in any branch become a
+   * {@link Opcodes#TAIL_CALL}.
+   */
+  private void compileReturn(RValueExprAst ast) {
+    var mark = nextRegister;
+
+    switch (ast) {
+      case CallExprAst call when call.isTailCall() -> {
+        var firstArg = compileArgs(call);
+        emit(TAIL_CALL, firstArg);
+      }
+      case TernaryExprAst ternary -> {
+        var condition = compileOperand(ternary.getCondition(), false);
+        nextRegister = mark;
+
+        var jumpToFalse = emit(JUMP_IF_ZERO, condition, -1);
+        compileReturn(ternary.getTrueCase());
+        patch(jumpToFalse);
+        compileReturn(ternary.getFalseCase());
+      }
+      case LogicalAndExprAst logicalAnd ->
+          compileShortCircuitReturn(JUMP_IF_NOT_ZERO, logicalAnd.getLhs(), logicalAnd.getRhs());
+      case LogicalOrExprAst logicalOr ->
+          compileShortCircuitReturn(JUMP_IF_ZERO, logicalOr.getLhs(), logicalOr.getRhs());
+      default -> emit(RETURN, compileOperand(ast, false));
+    }
+
+    nextRegister = mark;
+  }
+
+  /** Returns the left-hand side unless the jump is taken, in which case the right is returned. */
+  private void compileShortCircuitReturn(int jumpOpcode, RValueExprAst lhs, RValueExprAst rhs) {
+    var mark = nextRegister;
+    var value = compileOperand(lhs, false);
+
+    var jumpToRhs = emit(jumpOpcode, value, -1);
+    emit(RETURN, value);
+    nextRegister = mark;
+
+    patch(jumpToRhs);
+    compileReturn(rhs);
+  }
+
+  /**
+   * Compiles an expression and returns the register holding its value. Where possible this is a
+   * variable's own register, which avoids a copy, but then the value would change if the variable
+   * was assigned later. Passing {@code copy} forces the value into a fresh register instead.
+   */
+  private int compileOperand(RValueExprAst ast, boolean copy) {
+    if (!copy && ast instanceof IntoRValueExprAst intoRValue) {
+      return switch (intoRValue.getLValue()) {
+        case VarExprAst var -> compileVarRead(var);
+      };
+    }
+
+    if (!copy && ast instanceof AssignmentExprAst assignment) {
+      return compileAssignment(assignment);
+    }
+
+    var register = allocateRegister();
+    compileInto(ast, register);
+    return register;
+  }
+
+  /** Compiles an expression such that its value ends up in the given register. */
+  private void compileInto(RValueExprAst ast, int dst) {
+    var mark = nextRegister;
+
+    switch (ast) {
+      case IntoRValueExprAst intoRValue -> emit(MOVE, dst, compileOperand(intoRValue, false));
+      case IntLiteralExprAst intLiteral -> emit(CONST, dst, intLiteral.getValue());
+      case AssignmentExprAst assignment -> emit(MOVE, dst, compileAssignment(assignment));
+      case CallExprAst call -> compileCall(call, dst);
+      case AddExprAst add -> compileAdd(add, dst);
+      case SubExprAst sub -> compileSub(sub, dst);
+      case MulExprAst mul -> compileBinary(MUL, mul.getLhs(), mul.getRhs(), dst);
+      case DivExprAst div -> compileBinary(DIV, div.getLhs(), div.getRhs(), dst);
+      case NegExprAst neg -> emit(NEG, dst, compileOperand(neg.getExpr(), false));
+      case LogicalAndExprAst logicalAnd ->
+          compileShortCircuit(JUMP_IF_ZERO, logicalAnd.getLhs(), logicalAnd.getRhs(), dst);
+      case LogicalOrExprAst logicalOr ->
+          compileShortCircuit(JUMP_IF_NOT_ZERO, logicalOr.getLhs(), logicalOr.getRhs(), dst);
+      case TernaryExprAst ternary -> compileTernary(ternary, dst);
+    }
+
+    nextRegister = mark;
+  }
+
+  private int compileVarRead(VarExprAst var) {
+    var decl = var.getDecl();
+    if (var.isCheckInitialized()) emit(CHECK_INIT, decl.getInitSlot());
+    return decl.getSlot();
+  }
+
+  /** Compiles an assignment and returns the register of the assigned variable. */
+  private int compileAssignment(AssignmentExprAst assignment) {
+    return switch (assignment.getLhs()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        var mark = nextRegister;
+
+        // An assignment before the variable's declaration fails before its value is evaluated
+        if (var.isCheckInitialized()) emit(CHECK_INIT, decl.getInitSlot());
+
+        if (assignment.getRhs() instanceof IntLiteralExprAst literal) {
+          emit(CONST, decl.getSlot(), literal.getValue());
+        } else {
+          var value = compileOperand(assignment.getRhs(), false);
+          if (value != decl.getSlot()) emit(MOVE, decl.getSlot(), value);
+        }
+
+        if (decl.getInitSlot() >= 0) emit(CONST, decl.getInitSlot(), 1);
+
+        nextRegister = mark;
+        yield decl.getSlot();
+      }
+    };
+  }
+
+  private void compileCall(CallExprAst call, int dst) {
+    var firstArg = compileArgs(call);
+
+    // The callee's registers overlap ours from the first argument onwards
+    var callee = call.getFunctionDecl();
+    registerCount = Math.max(registerCount, firstArg + callee.getParams().size());
+
+    emit(CALL, dst, functionIndices.get(callee), firstArg);
+  }
+
+  /** Evaluates a call's arguments into consecutive registers, and returns the first of them. */
+  private int compileArgs(CallExprAst call) {
+    var args = call.getArgs();
+    var firstArg = nextRegister;
+
+    for (var i = 0; i < args.size(); i++) {
+      allocateRegister();
+    }
+
+    for (var i = 0; i < args.size(); i++) {
+      compileInto(args.get(i), firstArg + i);
+    }
+
+    return firstArg;
+  }
+
+  private void compileAdd(AddExprAst add, int dst) {
+    if (add.getRhs() instanceof IntLiteralExprAst literal) {
+      emit(ADD_IMM, dst, compileOperand(add.getLhs(), false), literal.getValue());
+    } else {
+      compileBinary(ADD, add.getLhs(), add.getRhs(), dst);
+    }
+  }
+
+  private void compileSub(SubExprAst sub, int dst) {
+    // Negating the immediate is fine even for the minimum int, since both wrap around identically
+    if (sub.getRhs() instanceof IntLiteralExprAst literal) {
+      emit(ADD_IMM, dst, compileOperand(sub.getLhs(), false), -literal.getValue());
+    } else {
+      compileBinary(SUB, sub.getLhs(), sub.getRhs(), dst);
+    }
+  }
+
+  private void compileBinary(int opcode, RValueExprAst lhs, RValueExprAst rhs, int dst) {
+    // If the right-hand side assigns a variable, the left-hand side must be read beforehand
+    var lhsRegister = compileOperand(lhs, containsAssignment(rhs));
+    var rhsRegister = compileOperand(rhs, false);
+    emit(opcode, dst, lhsRegister, rhsRegister);
+  }
+
+  private void compileShortCircuit(int jumpOpcode, RValueExprAst lhs, RValueExprAst rhs, int dst) {
+    compileInto(lhs, dst);
+    var jump = emit(jumpOpcode, dst, -1);
+    compileInto(rhs, dst);
+    patch(jump);
+  }
+
+  private void compileTernary(TernaryExprAst ternary, int dst) {
+    var mark = nextRegister;
+    var condition = compileOperand(ternary.getCondition(), false);
+    nextRegister = mark;
+
+    var jumpToFalse = emit(JUMP_IF_ZERO, condition, -1);
+    compileInto(ternary.getTrueCase(), dst);
+    var jumpToEnd = emit(JUMP, -1);
+
+    patch(jumpToFalse);
+    compileInto(ternary.getFalseCase(), dst);
+    patch(jumpToEnd);
+  }
+
+  private static boolean containsAssignment(RValueExprAst ast) {
+    return ast instanceof AssignmentExprAst
+        || ast.findDescendant(AssignmentExprAst.class) != null;
+  }
+
+  private int allocateRegister() {
+    var register = nextRegister++;
+    registerCount = Math.max(registerCount, nextRegister);
+    return register;
+  }
+
+  /** Appends an instruction and returns its index in the code. */
+  private int emit(int opcode, int... operands) {
+    var index = codeLength;
+    var length = 1 + operands.length;
+
+    if (codeLength + length > code.length) {
+      code = Arrays.copyOf(code, Math.max(code.length * 2, codeLength + length));
+    }
+
+    code[codeLength++] = opcode;
+    for (var operand : operands) code[codeLength++] = operand;
+
+    return index;
+  }
+
+  /** Points the jump instruction at the given index to the current end of the code. */
+  private void patch(int jump) {
+    code[jump + length(code[jump]) - 1] = codeLength;
+  }
+}
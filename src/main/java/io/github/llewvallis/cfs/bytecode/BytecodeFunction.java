@@ -0,0 +1,41 @@
+package io.github.llewvallis.cfs.bytecode;
+
+import lombok.Getter;
+
+/** A single function compiled to bytecode. See {@link Opcodes} for the instruction format. */
+public class BytecodeFunction {
+
+  @Getter private final String name;
+
+  @Getter private final int paramCount;
+
+  /** The number of registers holding variables, which must be zeroed on entry to the function. */
+  @Getter private final int slotCount;
+
+  /** The total number of registers used by the function, including temporaries. */
+  @Getter private final int registerCount;
+
+  private final int[] code;
+
+  public BytecodeFunction(
+      String name, int paramCount, int slotCount, int registerCount, int[] code) {
+    this.name = name;
+    this.paramCount = paramCount;
+    this.slotCount = slotCount;
+    this.registerCount = registerCount;
+    this.code = code;
+  }
+
+  /** The function's code. This is shared rather than copied, so must not be modified. */
+  int[] code() {
+    return code;
+  }
+
+  public int getCodeLength() {
+    return code.length;
+  }
+
+  public int getCode(int index) {
+    return code[index];
+  }
+}
@@ -0,0 +1,24 @@
+package io.github.llewvallis.cfs.bytecode;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+
+/** A whole program compiled to bytecode. Calls refer to functions by their index in this list. */
+public class BytecodeProgram {
+
+  @Getter private final List<BytecodeFunction> functions;
+
+  public BytecodeProgram(List<BytecodeFunction> functions) {
+    this.functions = new ArrayList<>(functions);
+  }
+
+  /** Finds the index of the function with the given name, or -1 if there is none. */
+  public int indexOf(String name) {
+    for (var i = 0; i < functions.size(); i++) {
+      if (functions.get(i).getName().equals(name)) return i;
+    }
+
+    return -1;
+  }
+}
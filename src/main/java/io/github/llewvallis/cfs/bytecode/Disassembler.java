@@ -0,0 +1,41 @@
+package io.github.llewvallis.cfs.bytecode;
+
+/** Formats bytecode as human-readable text, one instruction per line. */
+public class Disassembler {
+
+  public static String disassemble(BytecodeProgram program) {
+    var builder = new StringBuilder();
+    var functions = program.getFunctions();
+
+    for (var function : functions) {
+      builder.append("function ").append(function.getName());
+      builder.append(" (params: ").append(function.getParamCount());
+      builder.append(", slots: ").append(function.getSlotCount());
+      builder.append(", registers: ").append(function.getRegisterCount());
+      builder.append(")\n");
+
+      var pc = 0;
+      while (pc < function.getCodeLength()) {
+        var opcode = function.getCode(pc);
+        builder.append(String.format("%6d: %s", pc, Opcodes.name(opcode)));
+
+        var operands = Opcodes.operands(opcode);
+        for (var i = 0; i < operands.length(); i++) {
+          var operand = function.getCode(pc + 1 + i);
+          builder.append(i == 0 ? " " : ", ");
+
+          switch (operands.charAt(i)) {
+            case 'r' -> builder.append('r').append(operand);
+            case 'f' -> builder.append(functions.get(operand).getName());
+            default -> builder.append(operand);
+          }
+        }
+
+        builder.append('\n');
+        pc += Opcodes.length(opcode);
+      }
+    }
+
+    return builder.toString();
+  }
+}
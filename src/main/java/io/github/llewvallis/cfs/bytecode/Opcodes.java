@@ -0,0 +1,111 @@
+package io.github.llewvallis.cfs.bytecode;
+
+/**
+ * The instruction set of the bytecode VM. Each instruction is an opcode followed by a fixed number
+ * of operands, all stored inline in a function's {@code int[]} code array. Operands are one of:
+ *
+ * <ul>
+ *   <li>a register, written {@code rN}, which is an index into the current function's registers
+ *   <li>an immediate integer value
+ *   <li>a jump target, which is an index into the current function's code
+ *   <li>a function, which is an index into the program's functions
+ * </ul>
+ *
+ * <p>Registers start with the slots assigned to variables during analysis, so parameters are
+ * always the first registers. Temporaries follow after that.
+ */
+public final class Opcodes {
+
+  private Opcodes() {}
+
+  /** {@code const rDst, value} */
+  public static final int CONST = 0;
+
+  /** {@code move rDst, rSrc} */
+  public static final int MOVE = 1;
+
+  /** {@code add rDst, rLhs, rRhs} */
+  public static final int ADD = 2;
+
+  /** {@code add_imm rDst, rLhs, value} */
+  public static final int ADD_IMM = 3;
+
+  /** {@code sub rDst, rLhs, rRhs} */
+  public static final int SUB = 4;
+
+  /** {@code mul rDst, rLhs, rRhs} */
+  public static final int MUL = 5;
+
+  /** {@code div rDst, rLhs, rRhs}, failing if {@code rRhs} is zero. */
+  public static final int DIV = 6;
+
+  /** {@code neg rDst, rSrc} */
+  public static final int NEG = 7;
+
+  /** {@code jump target} */
+  public static final int JUMP = 8;
+
+  /** {@code jump_if_zero rCondition, target} */
+  public static final int JUMP_IF_ZERO = 9;
+
+  /** {@code jump_if_not_zero rCondition, target} */
+  public static final int JUMP_IF_NOT_ZERO = 10;
+
+  /**
+   * {@code call rDst, function, rArgs}. The arguments are in consecutive registers starting at
+   * {@code rArgs}, and those registers become the first registers of the callee.
+   */
+  public static final int CALL = 11;
+
+  /** {@code return rValue} */
+  public static final int RETURN = 12;
+
+  /** {@code check_init rFlag}, failing with an uninitialized variable error if the flag is zero. */
+  public static final int CHECK_INIT = 13;
+
+  /** {@code no_return}, failing because the end of a function was reached without returning. */
+  public static final int NO_RETURN = 14;
+
+  /**
+   * {@code tail_call rArgs}. Restarts the current function with the arguments in consecutive
+   * registers starting at {@code rArgs}, reusing its registers rather than making a new call.
+   */
+  public static final int TAIL_CALL = 15;
+
+  private static final String[] NAMES = {
+    "const",
+    "move",
+    "add",
+    "add_imm",
+    "sub",
+    "mul",
+    "div",
+    "neg",
+    "jump",
+    "jump_if_zero",
+    "jump_if_not_zero",
+    "call",
+    "return",
+    "check_init",
+    "no_return",
+    "tail_call",
+  };
+
+  /** What kind of value each operand is, using the first letter of the operand kinds above. */
+  private static final String[] OPERANDS = {
+    "ri", "rr", "rrr", "rri", "rrr", "rrr", "rrr", "rr", "t", "rt", "rt", "rfr", "r", "r", "", "r",
+  };
+
+  public static String name(int opcode) {
+    return NAMES[opcode];
+  }
+
+  public static String operands(int opcode) {
+    return OPERANDS[opcode];
+  }
+
+  /** The number of code array entries taken up by an instruction, including the opcode. */
+  public static int length(int opcode) {
+    return OPERANDS[opcode].length() + 1;
+  }
+}
@@ -0,0 +1,193 @@
+package io.github.llewvallis.cfs.bytecode;
+
+import static io.github.llewvallis.cfs.bytecode.Opcodes.*;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.ExecutionEngine;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Executes a {@link BytecodeProgram}. All guest calls are handled inside a single dispatch loop,
+ * with registers and return addresses kept in arrays rather than on the Java stack. The run's
+ * {@link ExecutionBudget} is charged by the call, tail call and return instructions.
+ */
+public class Vm implements ExecutionEngine {
+
+  /** The number of entries {@link #frames} uses for each call. */
+  private static final int FRAME_ENTRY_SIZE = 4;
+
+  private final BytecodeFunction[] functions;
+
+  private final BytecodeProgram program;
+
+  /** The registers of every active call. A callee's registers begin at its first argument. */
+  private int[] registers = new int[256];
+
+  /**
+   * Saved state of each caller, four entries per call: the function index, the return address,
+   * the register base and the register the result should be written to.
+   */
+  private int[] frames = new int[64 * FRAME_ENTRY_SIZE];
+
+  private final ExecutionLimits defaultLimits;
+
+  public Vm(BytecodeProgram program) {
+    this(program, ExecutionLimits.DEFAULT);
+  }
+
+  /** Creates a VM whose runs use {@code defaultLimits} unless they give their own. */
+  public Vm(BytecodeProgram program, ExecutionLimits defaultLimits) {
+    this.program = program;
+    this.functions = program.getFunctions().toArray(BytecodeFunction[]::new);
+    this.defaultLimits = defaultLimits;
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, defaultLimits);
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    var index = program.indexOf(name);
+    if (index < 0) {
+      throw new InterpretException("no function called " + name);
+    }
+
+    var function = functions[index];
+    if (function.getParamCount() != args.size()) {
+      throw new InterpretException("wrong number of arguments for " + name);
+    }
+
+    ensureRegisters(function.getRegisterCount());
+    for (var i = 0; i < args.size(); i++) {
+      registers[i] = args.get(i).castToInt().getValue();
+    }
+
+    return new IntValue(execute(index, new ExecutionBudget(limits)));
+  }
+
+  private void ensureRegisters(int size) {
+    if (size > registers.length) {
+      registers = Arrays.copyOf(registers, Math.max(size, registers.length * 2));
+    }
+  }
+
+  private int execute(int entry, ExecutionBudget budget) throws InterpretException {
+    var function = functions[entry];
+    var functionIndex = entry;
+    var code = function.code();
+    var regs = registers;
+    var base = 0;
+    var pc = 0;
+    var depth = 0;
+
+    Arrays.fill(regs, function.getParamCount(), function.getSlotCount(), 0);
+    budget.enter();
+
+    while (true) {
+      switch (code[pc]) {
+        case CONST -> {
+          regs[base + code[pc + 1]] = code[pc + 2];
+          pc += 3;
+        }
+        case MOVE -> {
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]];
+          pc += 3;
+        }
+        case ADD -> {
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]] + regs[base + code[pc + 3]];
+          pc += 4;
+        }
+        case ADD_IMM -> {
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]] + code[pc + 3];
+          pc += 4;
+        }
+        case SUB -> {
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]] - regs[base + code[pc + 3]];
+          pc += 4;
+        }
+        case MUL -> {
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]] * regs[base + code[pc + 3]];
+          pc += 4;
+        }
+        case DIV -> {
+          var divisor = regs[base + code[pc + 3]];
+          if (divisor == 0) throw new InterpretException("division by zero");
+          regs[base + code[pc + 1]] = regs[base + code[pc + 2]] / divisor;
+          pc += 4;
+        }
+        case NEG -> {
+          regs[base + code[pc + 1]] = -regs[base + code[pc + 2]];
+          pc += 3;
+        }
+        case JUMP -> pc = code[pc + 1];
+        case JUMP_IF_ZERO -> pc = regs[base + code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+        case JUMP_IF_NOT_ZERO -> pc = regs[base + code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+        case CALL -> {
+          var calleeIndex = code[pc + 2];
+          var callee = functions[calleeIndex];
+          budget.enter();
+
+          var frame = depth * FRAME_ENTRY_SIZE;
+          if (frame + FRAME_ENTRY_SIZE > frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+          }
+
+          frames[frame] = functionIndex;
+          frames[frame + 1] = pc + 4;
+          frames[frame + 2] = base;
+          frames[frame + 3] = code[pc + 1];
+          depth++;
+
+          base += code[pc + 3];
+          ensureRegisters(base + callee.getRegisterCount());
+          regs = registers;
+          Arrays.fill(regs, base + callee.getParamCount(), base + callee.getSlotCount(), 0);
+
+          functionIndex = calleeIndex;
+          code = callee.code();
+          pc = 0;
+        }
+        case RETURN -> {
+          var value = regs[base + code[pc + 1]];
+          budget.exit();
+          if (depth == 0) return value;
+
+          depth--;
+          var frame = depth * FRAME_ENTRY_SIZE;
+
+          functionIndex = frames[frame];
+          code = functions[functionIndex].code();
+          pc = frames[frame + 1];
+          base = frames[frame + 2];
+          regs[base + frames[frame + 3]] = value;
+        }
+        case CHECK_INIT -> {
+          if (regs[base + code[pc + 1]] == 0) {
+            throw new InterpretException("uninitialized variable");
+          }
+
+          pc += 2;
+        }
+        case NO_RETURN -> throw new InterpretException("function did not return");
+        case TAIL_CALL -> {
+          var current = functions[functionIndex];
+          var paramCount = current.getParamCount();
+
+          System.arraycopy(regs, base + code[pc + 1], regs, base, paramCount);
+          Arrays.fill(regs, base + paramCount, base + current.getSlotCount(), 0);
+          budget.startBody();
+          pc = 0;
+        }
+        default -> throw new AssertionError("invalid opcode " + code[pc]);
+      }
+    }
+  }
+}
@@ -1,11 +1,10 @@
 package io.github.llewvallis.cfs.cli;
 
-import io.github.llewvallis.cfs.CompilerDriver;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
-import io.github.llewvallis.cfs.reporting.SourceMap;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 
 @Command(
     name = "analyze",
@@ -13,17 +12,21 @@ import picocli.CommandLine.Command;
     mixinStandardHelpOptions = true)
 public class Analyze implements Callable<Integer> {
 
+  @Mixin private SourceInput source;
+
+  @Mixin private TimePasses timePasses;
+
   @Override
   public Integer call() throws IOException {
-    var input = new String(System.in.readAllBytes());
-    var sourceMap = new SourceMap(input);
-    var compiler = new CompilerDriver(input);
+    var compiler = source.createDriver();
 
     try {
       compiler.analyze();
     } catch (CompileErrorsException e) {
-      System.err.println(e.prettyPrint(sourceMap));
+      System.err.println(e.prettyPrint(source.sourceMap()));
       return 1;
+    } finally {
+      timePasses.print(compiler);
     }
 
     return 0;
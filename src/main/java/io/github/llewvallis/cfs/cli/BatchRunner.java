@@ -0,0 +1,150 @@
+package io.github.llewvallis.cfs.cli;
+
+import io.github.llewvallis.cfs.interpret.CompiledProgram;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs one function of a program over a stream of inputs. Each line of input holds the arguments
+ * of one call, separated by commas or whitespace, and produces exactly one line of output: either
+ * the result or an error message.
+ *
+ * <p>Lines are grouped into chunks, which are run on a pool of worker threads. Results are written
+ * in the same order as the input no matter which chunk finishes first, and only a few chunks are
+ * in flight at once, so arbitrarily long inputs run in constant memory.
+ */
+class BatchRunner {
+
+  private static final int CHUNK_SIZE = 256;
+
+  /** How many chunks each worker may have queued up, which bounds the memory used. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static final Pattern SEPARATOR = Pattern.compile("[,\\s]+");
+
+  private final CompiledProgram program;
+
+  private final String function;
+
+  private final int threads;
+
+  private final AtomicInteger failures = new AtomicInteger();
+
+  BatchRunner(CompiledProgram program, String function, int threads) {
+    this.program = program;
+    this.function = function;
+    this.threads = threads;
+  }
+
+  /** Runs every line of the input, and returns the number of lines that failed. */
+  int run(BufferedReader in, Writer out) throws IOException {
+    var pending = new ArrayDeque<Future<String>>();
+
+    try (var workers = Executors.newFixedThreadPool(threads)) {
+      while (true) {
+        var chunk = readChunk(in);
+        if (chunk.isEmpty()) break;
+
+        if (pending.size() == threads * CHUNKS_PER_THREAD) {
+          write(out, await(pending.poll()));
+        }
+
+        pending.add(submit(workers, chunk));
+      }
+
+      while (!pending.isEmpty()) {
+        write(out, await(pending.poll()));
+      }
+    }
+
+    return failures.get();
+  }
+
+  /** Writes the results of a chunk, and flushes them so they show up as soon as they are done. */
+  private static void write(Writer out, String results) throws IOException {
+    out.write(results);
+    out.flush();
+  }
+
+  private static List<String> readChunk(BufferedReader in) throws IOException {
+    var chunk = new ArrayList<String>(CHUNK_SIZE);
+
+    String line;
+    while (chunk.size() < CHUNK_SIZE && (line = in.readLine()) != null) {
+      chunk.add(line);
+    }
+
+    return chunk;
+  }
+
+  private Future<String> submit(ExecutorService workers, List<String> chunk) {
+    return workers.submit(
+        () -> {
+          var result = new StringBuilder();
+
+          for (var line : chunk) {
+            try {
+              result.append(program.run(function, parseArgs(line)));
+            } catch (InterpretException e) {
+              fail(result, e.getMessage());
+            } catch (StackOverflowError e) {
+              // Engines that recurse on the Java stack can run out of it, but only this line fails
+              fail(result, "stack overflow");
+            } catch (RuntimeException e) {
+              // A bug in an engine is still reported against its line, not the whole batch
+              fail(result, e.toString());
+            }
+
+            result.append('\n');
+          }
+
+          return result.toString();
+        });
+  }
+
+  private void fail(StringBuilder result, String message) {
+    failures.incrementAndGet();
+    result.append("error: ").append(message);
+  }
+
+  private static String await(Future<String> chunk) throws IOException {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while running batch", e);
+    } catch (ExecutionException e) {
+      // Failures are caught per line, so only errors like running out of memory get here
+      throw new AssertionError(e.getCause());
+    }
+  }
+
+  private static List<RValue> parseArgs(String line) throws InterpretException {
+    var trimmed = line.strip();
+    if (trimmed.isEmpty()) return List.of();
+
+    var args = new ArrayList<RValue>();
+    for (var token : SEPARATOR.split(trimmed)) {
+      try {
+        args.add(new IntValue(Integer.parseInt(token)));
+      } catch (NumberFormatException e) {
+        throw new InterpretException("not an integer: " + token);
+      }
+    }
+
+    return args;
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.llewvallis.cfs.cli;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.bytecode.BytecodeCompiler;
+import io.github.llewvallis.cfs.bytecode.Disassembler;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+
+@Command(
+    name = "disassemble",
+    description = "output the bytecode a program compiles to",
+    mixinStandardHelpOptions = true)
+public class Disassemble implements Callable<Integer> {
+
+  @Override
+  public Integer call() throws IOException {
+    var input = new String(System.in.readAllBytes());
+    var sourceMap = new SourceMap(input);
+    var compiler = new CompilerDriver(input);
+
+    try {
+      var program = new BytecodeCompiler().compile(compiler.analyze());
+      System.out.print(Disassembler.disassemble(program));
+    } catch (CompileErrorsException e) {
+      System.err.println(e.prettyPrint(sourceMap));
+      return 1;
+    }
+
+    return 0;
+  }
+}
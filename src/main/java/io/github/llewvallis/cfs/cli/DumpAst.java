@@ -1,13 +1,12 @@
 package io.github.llewvallis.cfs.cli;
 
-import io.github.llewvallis.cfs.CompilerDriver;
 import io.github.llewvallis.cfs.ast.ProgramAst;
 import io.github.llewvallis.cfs.graphviz.GraphvizBuilder;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
-import io.github.llewvallis.cfs.reporting.SourceMap;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 
 @Command(name = "dump-ast", description = "output a parsed AST", mixinStandardHelpOptions = true)
@@ -18,18 +17,22 @@ public class DumpAst implements Callable<Integer> {
       description = "output a representation using Graphviz")
   private boolean graphviz;
 
+  @Mixin private SourceInput source;
+
+  @Mixin private TimePasses timePasses;
+
   @Override
   public Integer call() throws IOException {
-    var input = new String(System.in.readAllBytes());
-    var sourceMap = new SourceMap(input);
-    var compiler = new CompilerDriver(input);
+    var compiler = source.createDriver();
 
     ProgramAst ast;
     try {
       ast = compiler.parse();
     } catch (CompileErrorsException e) {
-      System.err.println(e.prettyPrint(sourceMap));
+      System.err.println(e.prettyPrint(source.sourceMap()));
       return 1;
+    } finally {
+      timePasses.print(compiler);
     }
 
     if (graphviz) {
@@ -1,13 +1,27 @@
 package io.github.llewvallis.cfs.cli;
 
-import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.CompiledProgram;
+import io.github.llewvallis.cfs.interpret.EngineKind;
 import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.Interpreter;
+import io.github.llewvallis.cfs.interpret.InterpreterOptions;
+import io.github.llewvallis.cfs.interpret.MemoTable;
+import io.github.llewvallis.cfs.interpret.Memoizer;
+import io.github.llewvallis.cfs.interpret.TieredEngine;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
-import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
 
 @Command(
     name = "interpret",
@@ -15,20 +29,125 @@ import picocli.CommandLine.Command;
     mixinStandardHelpOptions = true)
 public class Interpret implements Callable<Integer> {
 
+  @Option(
+      names = {"-e", "--engine"},
+      description = "how to execute the program, one of: ${COMPLETION-CANDIDATES}",
+      defaultValue = "interpreter")
+  private EngineKind engine;
+
+  @Option(
+      names = {"--memoize"},
+      description =
+          "remember up to this many results per function in interpreted code, and print hit rates"
+              + " afterwards. Every function gets a table of this size up front, and at most "
+              + MemoTable.MAX_CAPACITY
+              + " results are kept",
+      defaultValue = "0")
+  private int memoCapacity;
+
+  @Mixin private SourceInput source;
+
+  @Option(
+      names = {"-b", "--batch"},
+      paramLabel = "<inputs>",
+      description =
+          "run a function once per line of this file, or of standard input if it is -, and print"
+              + " one result per line. Arguments on a line are separated by commas or whitespace")
+  private String batchInput;
+
+  @Option(
+      names = {"-f", "--function"},
+      description = "the function to run in batch mode",
+      defaultValue = "main")
+  private String function;
+
+  @Option(
+      names = {"-j", "--threads"},
+      description = "the number of worker threads in batch mode, or 0 for one per processor",
+      defaultValue = "0")
+  private int threads;
+
+  @Mixin private TimePasses timePasses;
+
   @Override
   public Integer call() throws IOException, InterpretException {
-    var input = new String(System.in.readAllBytes());
-    var sourceMap = new SourceMap(input);
-    var compiler = new CompilerDriver(input);
+    if (source.isStandardInput() && "-".equals(batchInput)) {
+      System.err.println("--source is required when batch inputs are read from standard input");
+      return 2;
+    }
+
+    if (memoCapacity < 0) {
+      System.err.println("--memoize must not be negative");
+      return 2;
+    }
+
+    if (memoCapacity > MemoTable.MAX_CAPACITY) {
+      var max = MemoTable.MAX_CAPACITY;
+      System.err.printf("--memoize is limited to %d results per function, so using that%n", max);
+    }
+
+    var compiler = source.createDriver();
 
     try {
-      var value = compiler.interpret("main", List.of());
+      var options = InterpreterOptions.DEFAULT.withMemoCapacity(memoCapacity);
+
+      if (batchInput != null) {
+        return runBatch(compiler.compile(engine, options));
+      }
+
+      var ast = compiler.analyze();
+
+      var compileTimer = compiler.getStats().begin("compile");
+      var instance = engine.create(ast, options);
+      compileTimer.end(ast.getChildren().size(), "functions");
+
+      var interpretTimer = compiler.getStats().begin("interpret");
+      var value = instance.run("main", List.of());
+      interpretTimer.end(1, "runs");
+
       System.out.println(value);
+
+      var memoizer =
+          switch (instance) {
+            case Interpreter interpreter -> interpreter.getMemoizer();
+            case TieredEngine tiered -> tiered.getMemoizer();
+            default -> null;
+          };
+
+      if (memoizer != null) printMemoStats(memoizer);
     } catch (CompileErrorsException e) {
-      System.err.println(e.prettyPrint(sourceMap));
+      System.err.println(e.prettyPrint(source.sourceMap()));
       return 1;
+    } finally {
+      timePasses.print(compiler);
     }
 
     return 0;
   }
+
+  private int runBatch(CompiledProgram program) throws IOException {
+    var workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    var runner = new BatchRunner(program, function, workers);
+
+    var in =
+        batchInput.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+            : Files.newBufferedReader(Path.of(batchInput));
+    var out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+    try (in) {
+      var failures = runner.run(in, out);
+      if (failures > 0) System.err.printf("%d inputs failed%n", failures);
+      return failures > 0 ? 1 : 0;
+    }
+  }
+
+  private static void printMemoStats(Memoizer memoizer) {
+    for (var entry : memoizer.getTables().entrySet()) {
+      var table = entry.getValue();
+      System.err.printf(
+          "%s: %d hits, %d misses%n",
+          entry.getKey().getName().getContent(), table.getHits(), table.getMisses());
+    }
+  }
 }
@@ -8,11 +8,18 @@ import picocli.CommandLine.Command;
     name = "compiler",
     description = "tools for working with the compiler",
     mixinStandardHelpOptions = true,
-    subcommands = {Interpret.class, DumpAst.class, Analyze.class})
+    subcommands = {
+      Interpret.class,
+      Profile.class,
+      DumpAst.class,
+      Analyze.class,
+      Disassemble.class
+    })
 public class Main {
 
   public static void main(String[] args) {
-    var exitCode = new CommandLine(new Main()).execute(args);
+    var exitCode =
+        new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
     System.exit(exitCode);
   }
 }
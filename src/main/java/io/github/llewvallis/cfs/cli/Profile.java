@@ -0,0 +1,189 @@
+package io.github.llewvallis.cfs.cli;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.Interpreter;
+import io.github.llewvallis.cfs.interpret.InterpreterOptions;
+import io.github.llewvallis.cfs.interpret.Profiler;
+import io.github.llewvallis.cfs.interpret.RValue;
+import io.github.llewvallis.cfs.interpret.SamplingProfiler;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "profile",
+    description = "execute the main method of a program, and report where the time went",
+    mixinStandardHelpOptions = true)
+public class Profile implements Callable<Integer> {
+
+  private static final int MAX_LINE_LENGTH = 60;
+
+  @Option(
+      names = {"--folded"},
+      paramLabel = "<file>",
+      description =
+          "write folded stacks for flame graph tools to this file, or to standard output instead"
+              + " of the report if it is -")
+  private String foldedOutput;
+
+  @Option(
+      names = {"--top"},
+      description = "the number of hottest expressions or lines to list",
+      defaultValue = "20")
+  private int top;
+
+  @Option(
+      names = {"--sample"},
+      paramLabel = "<micros>",
+      description =
+          "sample the call stack at this interval instead of recording every call, which is much"
+              + " cheaper but only approximate")
+  private int sampleMicros;
+
+  @Mixin private SourceInput source;
+
+  @Override
+  public Integer call() throws IOException, InterpretException, InterruptedException {
+    var compiler = source.createDriver();
+
+    try {
+      var ast = compiler.analyze();
+      var sourceMap = source.sourceMap();
+
+      if (sampleMicros > 0) {
+        runSampled(ast, sourceMap);
+        return 0;
+      }
+
+      var profiler = new Profiler();
+      var options = InterpreterOptions.DEFAULT.withProfiler(profiler);
+      var value = new Interpreter(ast, options).run("main", List.of());
+
+      if ("-".equals(foldedOutput)) {
+        System.out.print(profiler.toFoldedStacks());
+        return 0;
+      }
+
+      if (foldedOutput != null) {
+        Files.writeString(Path.of(foldedOutput), profiler.toFoldedStacks());
+      }
+
+      System.out.println("main returned " + value);
+      System.out.println();
+      printFunctions(profiler);
+      System.out.println();
+      printHotExpressions(profiler, sourceMap);
+    } catch (CompileErrorsException e) {
+      System.err.println(e.prettyPrint(source.sourceMap()));
+      return 1;
+    }
+
+    return 0;
+  }
+
+  private void runSampled(ProgramAst ast, SourceMap sourceMap)
+      throws InterpretException, InterruptedException {
+    var sampler = new SamplingProfiler(Duration.ofNanos(sampleMicros * 1000L));
+    RValue value;
+
+    try (sampler) {
+      var options = InterpreterOptions.DEFAULT.withSampler(sampler);
+      value = new Interpreter(ast, options).run("main", List.of());
+    }
+
+    var samples = Math.max(1, sampler.getSamples());
+    System.out.println("main returned " + value + ", " + sampler.getSamples() + " samples taken");
+    System.out.println();
+
+    var totals = sampler.getTotalSamples();
+    System.out.printf("%-20s %12s %12s%n", "function", "self %", "total %");
+
+    sampler.getSelfSamples().entrySet().stream()
+        .sorted(Comparator.comparingLong(entry -> -entry.getValue()))
+        .forEach(
+            entry ->
+                System.out.printf(
+                    "%-20s %12.1f %12.1f%n",
+                    entry.getKey().getName().getContent(),
+                    100.0 * entry.getValue() / samples,
+                    100.0 * totals.get(entry.getKey()) / samples));
+
+    System.out.println();
+    System.out.printf("%12s %8s  %-5s %s%n", "samples", "%", "line", "source");
+
+    sampler.getLineSamples(sourceMap).entrySet().stream()
+        .sorted(Comparator.comparingLong(entry -> -entry.getValue()))
+        .limit(top)
+        .forEach(
+            entry ->
+                System.out.printf(
+                    "%12d %8.1f  %-5d %s%n",
+                    entry.getValue(),
+                    100.0 * entry.getValue() / samples,
+                    entry.getKey() + 1,
+                    truncate(sourceMap.getLineContent(entry.getKey()))));
+  }
+
+  private static void printFunctions(Profiler profiler) {
+    System.out.printf("%-20s %12s %12s %12s%n", "function", "calls", "self ms", "total ms");
+
+    for (var function : profiler.getFunctions()) {
+      System.out.printf(
+          "%-20s %12d %12.3f %12.3f%n",
+          function.getName(),
+          function.getCalls(),
+          function.getSelfNanos() / 1e6,
+          function.getTotalNanos() / 1e6);
+    }
+  }
+
+  private static String describe(Ast node) {
+    return switch (node) {
+      case IntoRValueExprAst ignored -> "variable";
+      case IntLiteralExprAst ignored -> "literal";
+      case AssignmentExprAst ignored -> "assignment";
+      case CallExprAst ignored -> "call";
+      case AddExprAst ignored -> "add";
+      case SubExprAst ignored -> "subtract";
+      case MulExprAst ignored -> "multiply";
+      case DivExprAst ignored -> "divide";
+      case NegExprAst ignored -> "negate";
+      case LogicalAndExprAst ignored -> "and";
+      case LogicalOrExprAst ignored -> "or";
+      case TernaryExprAst ignored -> "ternary";
+      default -> node.getClass().getSimpleName();
+    };
+  }
+
+  private void printHotExpressions(Profiler profiler, SourceMap sourceMap) {
+    System.out.printf("%12s  %-8s %-12s %s%n", "hits", "location", "expression", "line");
+
+    profiler.getHits().entrySet().stream()
+        .sorted(Comparator.comparingLong(entry -> -entry.getValue()))
+        .limit(top)
+        .forEach(
+            entry -> {
+              var node = entry.getKey();
+
+              var location = sourceMap.getLineCol(node.getSpan().start());
+              var line = truncate(sourceMap.getLineContent(location.line()));
+
+              System.out.printf(
+                  "%12d  %-8s %-12s %s%n", entry.getValue(), location, describe(node), line);
+            });
+  }
+
+  private static String truncate(String line) {
+    return line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH - 3) + "..." : line;
+  }
+}
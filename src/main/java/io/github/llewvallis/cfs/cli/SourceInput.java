@@ -0,0 +1,45 @@
+package io.github.llewvallis.cfs.cli;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import picocli.CommandLine.Option;
+
+/**
+ * The {@code --source} option, shared by every command that compiles a program. Without it, the
+ * program is read from standard input.
+ */
+class SourceInput {
+
+  @Option(
+      names = {"-s", "--source"},
+      description =
+          "read the program from this UTF-8 file instead of standard input. The file is mapped into"
+              + " memory rather than read in")
+  private Path path;
+
+  private String text;
+
+  boolean isStandardInput() {
+    return path == null;
+  }
+
+  CompilerDriver createDriver() throws IOException {
+    if (path != null) return new CompilerDriver(path);
+
+    text = new String(System.in.readAllBytes());
+    return new CompilerDriver(text);
+  }
+
+  /**
+   * Maps positions in the program to lines. A file is only decoded when this is first called, which
+   * is usually only if there are errors to print.
+   */
+  SourceMap sourceMap() throws IOException {
+    if (text == null) text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    return new SourceMap(text);
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.llewvallis.cfs.cli;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import picocli.CommandLine.Option;
+
+/** The {@code --time-passes} option, shared by every command that runs the compiler. */
+class TimePasses {
+
+  @Option(
+      names = {"--time-passes"},
+      description =
+          "print the time taken and memory allocated by each stage to standard error. Lexing is"
+              + " timed together with building the token stream, and a file given with --source"
+              + " is lexed while it is parsed, so it has no lex stage")
+  private boolean enabled;
+
+  void print(CompilerDriver compiler) {
+    if (enabled) System.err.print(compiler.getStats().format());
+  }
+}
@@ -0,0 +1,21 @@
+package io.github.llewvallis.cfs.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A single analysis pass over a program's AST. */
+@Name("io.github.llewvallis.cfs.AnalysisPass")
+@Label("Analysis Pass")
+@Category({"Compiler From Scratch", "Compile"})
+@StackTrace(false)
+public class AnalysisPassEvent extends Event {
+
+  @Label("Pass")
+  public String pass;
+
+  @Label("Errors")
+  public int errors;
+}
@@ -0,0 +1,42 @@
+package io.github.llewvallis.cfs.events;
+
+import io.github.llewvallis.cfs.ast.Ast;
+import java.util.ArrayDeque;
+import jdk.jfr.FlightRecorder;
+
+/** Helpers for emitting the Flight Recorder events in this package. */
+public final class Events {
+
+  private Events() {}
+
+  /**
+   * Whether Flight Recorder has been started in this JVM. Creating the first event otherwise starts
+   * up Flight Recorder's machinery, which takes hundreds of milliseconds, so no event should be
+   * created unless this returns true. Recordings started later on, such as through {@code jcmd},
+   * are still picked up.
+   */
+  public static boolean isRecorderRunning() {
+    return FlightRecorder.isInitialized();
+  }
+
+  /**
+   * Counts the nodes in a tree, iteratively since deeply nested expressions make deep trees. Trees
+   * with syntax errors are missing nodes and can't be walked, so they must not be passed here.
+   */
+  public static int countNodes(Ast root) {
+    var count = 0;
+    var pending = new ArrayDeque<Ast>();
+    pending.push(root);
+
+    while (!pending.isEmpty()) {
+      var node = pending.pop();
+      count++;
+
+      for (var child : node.getChildren()) {
+        pending.push(child);
+      }
+    }
+
+    return count;
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.llewvallis.cfs.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A guest function call made by the interpreter. Recording every call would cost far more than the
+ * calls themselves, so only a sample of calls is recorded, at a fixed rate per call started. The
+ * functions called most often therefore show up most often.
+ */
+@Name("io.github.llewvallis.cfs.GuestCall")
+@Label("Guest Call")
+@Description("A sample of the guest function calls started by the interpreter")
+@Category({"Compiler From Scratch", "Interpreter"})
+@StackTrace(false)
+public class GuestCallEvent extends Event {
+
+  @Label("Function")
+  public String function;
+
+  @Label("Depth")
+  @Description("The number of guest calls active, including this one")
+  public int depth;
+}
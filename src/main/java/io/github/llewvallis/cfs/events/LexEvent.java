@@ -0,0 +1,25 @@
+package io.github.llewvallis.cfs.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Turning a program's source into tokens. */
+@Name("io.github.llewvallis.cfs.Lex")
+@Label("Lex")
+@Category({"Compiler From Scratch", "Compile"})
+@StackTrace(false)
+public class LexEvent extends Event {
+
+  /** In characters rather than bytes, since the lexer only sees decoded text. */
+  @Label("Source Length")
+  public int sourceLength;
+
+  @Label("Tokens")
+  public int tokens;
+
+  @Label("Errors")
+  public int errors;
+}
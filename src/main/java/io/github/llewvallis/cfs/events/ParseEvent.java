@@ -0,0 +1,23 @@
+package io.github.llewvallis.cfs.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Building the AST of a program from its tokens. */
+@Name("io.github.llewvallis.cfs.Parse")
+@Label("Parse")
+@Category({"Compiler From Scratch", "Compile"})
+@StackTrace(false)
+public class ParseEvent extends Event {
+
+  @Label("Nodes")
+  @Description("The number of nodes in the AST, or zero if there were syntax errors")
+  public int nodes;
+
+  @Label("Errors")
+  public int errors;
+}
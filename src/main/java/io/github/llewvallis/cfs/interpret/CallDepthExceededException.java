@@ -0,0 +1,13 @@
+package io.github.llewvallis.cfs.interpret;
+
+import lombok.Getter;
+
+public class CallDepthExceededException extends LimitExceededException {
+
+  @Getter private final int maxDepth;
+
+  public CallDepthExceededException(int maxDepth) {
+    super("maximum call depth of " + maxDepth + " exceeded");
+    this.maxDepth = maxDepth;
+  }
+}
@@ -0,0 +1,12 @@
+package io.github.llewvallis.cfs.interpret;
+
+/**
+ * Compiled code for a single function. The frame passed in must be at least the function's frame
+ * size, with the arguments in the first slots and every other slot zeroed. The call charges the
+ * budget of the run it is part of, and passes it on to the calls it makes.
+ */
+@FunctionalInterface
+public interface CallTarget {
+
+  int call(int[] frame, ExecutionBudget budget) throws InterpretException;
+}
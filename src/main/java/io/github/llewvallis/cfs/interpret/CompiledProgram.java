@@ -0,0 +1,134 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.Getter;
+
+/**
+ * An analyzed program prepared for execution, which can be run any number of times from any number
+ * of threads at once. Compiling a program once and running it many times avoids repeating the
+ * lexing, parsing, analysis and compilation for every run.
+ *
+ * <p>Engines that are thread safe are shared by every run. Otherwise, each concurrent run borrows
+ * an engine of its own, which is returned for reuse afterwards. Only as many engines are created as
+ * there are runs in progress at once, so this works equally well with platform and virtual threads.
+ */
+public final class CompiledProgram {
+
+  /** Runs asynchronous calls when no executor is given. Virtual threads make blocking cheap. */
+  private static final ExecutorService DEFAULT_EXECUTOR =
+      Executors.newVirtualThreadPerTaskExecutor();
+
+  @Getter private final ProgramAst ast;
+
+  @Getter private final EngineKind engineKind;
+
+  private final InterpreterOptions options;
+
+  /** The engine used by every run, or null if runs borrow engines from {@link #idle}. */
+  private final ExecutionEngine shared;
+
+  private final ConcurrentLinkedDeque<ExecutionEngine> idle = new ConcurrentLinkedDeque<>();
+
+  public CompiledProgram(ProgramAst ast, EngineKind engineKind, InterpreterOptions options)
+      throws InterpretException {
+    this.ast = ast;
+    this.engineKind = engineKind;
+    this.options = options;
+
+    // Creating the first engine eagerly reports compile errors here, rather than on the first run
+    var engine = engineKind.create(ast, options);
+    if (engineKind.isThreadSafe()) {
+      shared = engine;
+    } else {
+      shared = null;
+      idle.push(engine);
+    }
+  }
+
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, null);
+  }
+
+  /**
+   * Runs a function within the given limits.
+   *
+   * @param limits the limits of this run, or null to use those from the options the program was
+   *     compiled with
+   */
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    if (shared != null) return run(shared, name, args, limits);
+
+    var engine = idle.poll();
+    if (engine == null) engine = engineKind.create(ast, options);
+
+    try {
+      return run(engine, name, args, limits);
+    } finally {
+      // Engines restore their state even when a run fails, so they can always be reused
+      idle.push(engine);
+    }
+  }
+
+  private static RValue run(
+      ExecutionEngine engine, String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    return limits == null ? engine.run(name, args) : engine.run(name, args, limits);
+  }
+
+  /** Runs a function on a virtual thread. See {@link #runAsync(String, List, Executor)}. */
+  public CompletableFuture<RValue> runAsync(String name, List<RValue> args) {
+    return runAsync(name, args, DEFAULT_EXECUTOR);
+  }
+
+  /**
+   * Runs a function on the given executor. Cancelling the returned future with {@code
+   * mayInterruptIfRunning} set interrupts the run, which every engine notices soon after, when it
+   * next checks the run's limits.
+   */
+  public CompletableFuture<RValue> runAsync(String name, List<RValue> args, Executor executor) {
+    var future = new RunFuture();
+    executor.execute(() -> future.execute(name, args));
+    return future;
+  }
+
+  /** A future that interrupts the thread running it when cancelled. */
+  private class RunFuture extends CompletableFuture<RValue> {
+
+    /** The thread currently running the call, or null if it has not started or has finished. */
+    private Thread thread;
+
+    private void execute(String name, List<RValue> args) {
+      synchronized (this) {
+        // Cancelled before the executor got around to it
+        if (isDone()) return;
+        thread = Thread.currentThread();
+      }
+
+      try {
+        complete(run(name, args));
+      } catch (Throwable e) {
+        completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          thread = null;
+          // Don't leak a cancellation into whatever the executor runs next on this thread
+          Thread.interrupted();
+        }
+      }
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+      var cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled && mayInterruptIfRunning && thread != null) thread.interrupt();
+      return cancelled;
+    }
+  }
+}
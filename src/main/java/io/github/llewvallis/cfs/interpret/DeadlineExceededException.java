@@ -0,0 +1,14 @@
+package io.github.llewvallis.cfs.interpret;
+
+import java.time.Duration;
+import lombok.Getter;
+
+public class DeadlineExceededException extends LimitExceededException {
+
+  @Getter private final Duration timeout;
+
+  public DeadlineExceededException(Duration timeout) {
+    super("did not finish within " + timeout.toMillis() + "ms");
+    this.timeout = timeout;
+  }
+}
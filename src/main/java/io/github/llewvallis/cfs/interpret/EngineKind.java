@@ -0,0 +1,80 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.bytecode.BytecodeCompiler;
+import io.github.llewvallis.cfs.bytecode.Vm;
+import io.github.llewvallis.cfs.interpret.closure.ClosureCompiler;
+import io.github.llewvallis.cfs.interpret.node.NodeInterpreter;
+import io.github.llewvallis.cfs.jvm.JvmCompiler;
+import java.util.concurrent.ForkJoinPool;
+
+/** The different ways an analyzed program can be executed. */
+public enum EngineKind {
+  /** Walks the AST directly. This has no startup cost, but is the slowest way to run a program. */
+  INTERPRETER,
+
+  /** Converts each function into a tree of Java lambdas up front, then runs those. */
+  CLOSURE,
+
+  /**
+   * Like {@link #CLOSURE}, but evaluates independent operands containing calls in parallel on the
+   * common fork-join pool.
+   */
+  PARALLEL,
+
+  /**
+   * Walks a tree of nodes built from the AST, which rewrite themselves into specialized forms as
+   * the program runs.
+   */
+  SPECIALIZING,
+
+  /** Compiles each function to register-based bytecode, then runs that on a small VM. */
+  BYTECODE,
+
+  /**
+   * Compiles each function to a JVM method, so the program is optimized by the JVM's own JIT. This
+   * has the highest startup cost, but the best peak performance.
+   */
+  JVM,
+
+  /**
+   * Interprets functions at first, and compiles them to closures in the background once they are
+   * called often. This starts as quickly as the interpreter, but approaches the closure engine's
+   * speed for programs that run for a long time.
+   */
+  TIERED;
+
+  /**
+   * Whether a single engine of this kind can run calls from several threads at once. Engines that
+   * are not keep per-run state, like the interpreter's stack, and need one instance per thread.
+   */
+  public boolean isThreadSafe() {
+    return switch (this) {
+      case INTERPRETER, SPECIALIZING, BYTECODE -> false;
+      case CLOSURE, PARALLEL, JVM, TIERED -> true;
+    };
+  }
+
+  public ExecutionEngine create(ProgramAst ast) throws InterpretException {
+    return create(ast, InterpreterOptions.DEFAULT);
+  }
+
+  /**
+   * Creates an engine, applying the given options to any code it interprets. Every engine takes
+   * the limits of runs that don't give their own from the options, but engines that compile
+   * everything up front ignore the rest.
+   */
+  public ExecutionEngine create(ProgramAst ast, InterpreterOptions options)
+      throws InterpretException {
+    return switch (this) {
+      case INTERPRETER -> new Interpreter(ast, options);
+      case CLOSURE -> ClosureCompiler.compileProgram(ast, null, options.limits());
+      case PARALLEL ->
+          ClosureCompiler.compileProgram(ast, ForkJoinPool.commonPool(), options.limits());
+      case SPECIALIZING -> new NodeInterpreter(ast, options.limits());
+      case BYTECODE -> new Vm(new BytecodeCompiler().compile(ast), options.limits());
+      case JVM -> new JvmCompiler().compile(ast, options.limits());
+      case TIERED -> new TieredEngine(ast, TieredEngine.DEFAULT_THRESHOLD, options);
+    };
+  }
+}
@@ -0,0 +1,138 @@
+package io.github.llewvallis.cfs.interpret;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What a single run has left of its {@link ExecutionLimits}. A run creates one budget and passes it
+ * to every function it calls, whichever engine or tier ends up running each function, so the
+ * limits hold for the run as a whole rather than for each stretch of it spent in one tier.
+ *
+ * <p>Every function body charges the budget as it starts, and every call counts towards the depth
+ * until it returns. A run that fails part way through leaves the depth inconsistent, but the budget
+ * is thrown away with the run.
+ *
+ * <p>Budgets are not thread safe. Work forked onto another thread needs a {@link #split()} budget,
+ * and a run that forks should start from a {@link #shared(ExecutionLimits)} one.
+ */
+public final class ExecutionBudget {
+
+  /** How many function bodies to start between checks for interruption and timeouts, minus one. */
+  private static final int CHECK_MASK = 4095;
+
+  private final ExecutionLimits limits;
+
+  /** The number of function bodies the run may still start, if it is not shared between threads. */
+  private long fuel;
+
+  /** The fuel left for every thread of the run, or null if {@link #fuel} is used instead. */
+  private final AtomicLong sharedFuel;
+
+  /** The {@link System#nanoTime()} by which the run must finish, if it has a timeout. */
+  private final long deadline;
+
+  /** Set to stop every thread of a shared run, or null if the run is not shared. */
+  private final AtomicBoolean interrupted;
+
+  /** The number of calls active in the run, on this thread's path through it. */
+  private int depth;
+
+  /** The number of function bodies started, used to check for interruption periodically. */
+  private int bodiesStarted = 0;
+
+  public ExecutionBudget(ExecutionLimits limits) {
+    this(limits, limits.fuel(), null, deadline(limits), null, 0);
+  }
+
+  private ExecutionBudget(
+      ExecutionLimits limits,
+      long fuel,
+      AtomicLong sharedFuel,
+      long deadline,
+      AtomicBoolean interrupted,
+      int depth) {
+    this.limits = limits;
+    this.fuel = fuel;
+    this.sharedFuel = sharedFuel;
+    this.deadline = deadline;
+    this.interrupted = interrupted;
+    this.depth = depth;
+  }
+
+  /**
+   * A budget for a run that forks work onto other threads, whose {@link #split()} budgets all draw
+   * from the same fuel. Counting fuel then takes an atomic update, so this is only done if the run
+   * has a fuel limit at all.
+   */
+  public static ExecutionBudget shared(ExecutionLimits limits) {
+    var unlimited = limits.fuel() == Long.MAX_VALUE;
+    var sharedFuel = unlimited ? null : new AtomicLong(limits.fuel());
+    return new ExecutionBudget(
+        limits, limits.fuel(), sharedFuel, deadline(limits), new AtomicBoolean(), 0);
+  }
+
+  private static long deadline(ExecutionLimits limits) {
+    return limits.timeout() == null ? 0 : System.nanoTime() + limits.timeout().toNanos();
+  }
+
+  /**
+   * A budget for work forked onto another thread, which starts at this one's depth and shares its
+   * deadline. It shares this budget's fuel if this one is {@link #shared(ExecutionLimits)}, and
+   * otherwise starts with a copy of it.
+   */
+  public ExecutionBudget split() {
+    return new ExecutionBudget(limits, fuel, sharedFuel, deadline, interrupted, depth);
+  }
+
+  /**
+   * Stops every thread of a shared run at its next periodic check, as if each of them had been
+   * interrupted. The thread that started the run is usually waiting for the others, so
+   * interrupting it is not enough on its own.
+   */
+  public void interrupt() {
+    if (interrupted == null) {
+      throw new IllegalStateException("only shared budgets can be interrupted");
+    }
+
+    interrupted.set(true);
+  }
+
+  /** Starts a call and its body, which must be matched by {@link #exit()} if the call returns. */
+  public void enter() throws InterpretException {
+    if (depth == limits.maxDepth()) {
+      throw new CallDepthExceededException(limits.maxDepth());
+    }
+
+    depth++;
+    startBody();
+  }
+
+  /**
+   * Charges for starting a function body without a new call, as self tail calls do. Every loop in
+   * a program goes through here, so this is also where a run notices it was interrupted or ran out
+   * of time.
+   */
+  public void startBody() throws InterpretException {
+    if (sharedFuel == null ? --fuel < 0 : sharedFuel.decrementAndGet() < 0) {
+      throw new OutOfFuelException(limits.fuel());
+    }
+
+    if ((++bodiesStarted & CHECK_MASK) == 0) {
+      checkPeriodically();
+    }
+  }
+
+  public void exit() {
+    depth--;
+  }
+
+  private void checkPeriodically() throws InterpretException {
+    if (Thread.currentThread().isInterrupted() || (interrupted != null && interrupted.get())) {
+      throw new InterpretException("interrupted");
+    }
+
+    if (limits.timeout() != null && System.nanoTime() - deadline > 0) {
+      throw new DeadlineExceededException(limits.timeout());
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package io.github.llewvallis.cfs.interpret;
+
+import java.util.List;
+
+/** Something capable of running the functions of an analyzed program. */
+public interface ExecutionEngine {
+
+  RValue run(String name, List<RValue> args) throws InterpretException;
+
+  /**
+   * Runs a function within the given limits, instead of the engine's defaults. Engines enforce them
+   * by passing an {@link ExecutionBudget} through the run.
+   */
+  RValue run(String name, List<RValue> args, ExecutionLimits limits) throws InterpretException;
+}
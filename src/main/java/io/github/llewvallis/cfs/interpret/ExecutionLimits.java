@@ -0,0 +1,32 @@
+package io.github.llewvallis.cfs.interpret;
+
+import java.time.Duration;
+import lombok.With;
+
+/**
+ * Bounds on how much a single run of a program may do, so that a runaway program fails instead of
+ * running forever. Exceeding a limit throws a {@link LimitExceededException}.
+ *
+ * @param fuel the maximum number of function bodies that may be started, including self tail calls.
+ *     Since the language has no loops, this bounds the total amount of work done
+ * @param timeout how long the run may take, or null for no time limit. This is only checked
+ *     periodically, so a run may overshoot it by a few thousand calls
+ * @param maxDepth the maximum number of guest calls that may be active at once
+ */
+@With
+public record ExecutionLimits(long fuel, Duration timeout, int maxDepth) {
+
+  /** Deep enough for recursion over millions of elements, while catching runaway recursion. */
+  public static final ExecutionLimits DEFAULT =
+      new ExecutionLimits(Long.MAX_VALUE, null, 5_000_000);
+
+  public ExecutionLimits {
+    if (fuel < 0) {
+      throw new IllegalArgumentException("fuel must not be negative, not " + fuel);
+    }
+
+    if (maxDepth <= 0) {
+      throw new IllegalArgumentException("maximum depth must be positive, not " + maxDepth);
+    }
+  }
+}
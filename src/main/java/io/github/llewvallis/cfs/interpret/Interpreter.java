@@ -1,184 +1,670 @@
 package io.github.llewvallis.cfs.interpret;
 
 import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.events.Events;
+import io.github.llewvallis.cfs.events.GuestCallEvent;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 
-public class Interpreter {
+/**
+ * A tree-walking interpreter for analyzed programs.
+ *
+ * <p>The only type in the language is {@code int}, so every expression is evaluated straight to a
+ * Java {@code int} and values are only boxed into {@link RValue}s at the {@link #run(String, List)}
+ * boundary. This keeps evaluation free of allocations.
+ *
+ * <p>Guest calls do not recurse on the Java stack. Instead, the work remaining in each expression
+ * is kept on an explicit continuation stack, and intermediate values on a value stack, both of
+ * which live on the heap and grow as needed. Recursion depth is therefore only limited by the
+ * {@link ExecutionLimits} of the run and the memory available, not by the size of the Java thread's
+ * stack.
+ */
+public class Interpreter implements ExecutionEngine {
 
   private final ProgramAst ast;
 
-  private final Deque<Map<IdentAst, LValue>> stack = new ArrayDeque<>();
+  /** Decides which calls run compiled code instead, or null to interpret every call. */
+  private final TieredEngine tiers;
+
+  /** The limits used by runs that do not give their own. */
+  private final ExecutionLimits defaultLimits;
+
+  /** What the current run has left of its limits, which it shares with any compiled code. */
+  private ExecutionBudget budget;
+
+  /** Remembers the results of calls, or null if memoization is disabled. */
+  private final Memoizer memoizer;
+
+  /** Records every call and expression, or null if profiling is disabled. */
+  private final Profiler profiler;
+
+  /** Samples the call stack from another thread while running, or null if sampling is disabled. */
+  private final SamplingProfiler sampler;
+
+  /**
+   * The slots of every active call, laid out one frame after another. Each variable lives at the
+   * slot assigned to it during analysis, offset by the start of its frame.
+   */
+  private int[] stack = new int[256];
+
+  /** The start of the current frame in {@link #stack}. */
+  private int framePointer = 0;
+
+  /** The first slot in {@link #stack} that is not in use. */
+  private int stackTop = 0;
+
+  /**
+   * Work that remains to be done, as pairs of a node and a state saying how far through the node
+   * evaluation has got. The top entry is resumed whenever a value is ready for it.
+   */
+  private Ast[] contNodes = new Ast[64];
+
+  private int[] contStates = new int[64];
+
+  private int contTop = 0;
+
+  /** The state of a call continuation waiting to remember its callee's result. */
+  private static final int STORE_RESULT = -1;
+
+  /** Results of expressions that have been evaluated, but not yet used by their parent. */
+  private int[] values = new int[64];
+
+  private int valueTop = 0;
+
+  /** The function each active call is running. */
+  private FunctionAst[] callFunctions = new FunctionAst[16];
+
+  /** The caller's frame pointer and continuation base for each active call. */
+  private int[] callSaved = new int[32];
+
+  /**
+   * The number of active calls. This is what the interpreter publishes to a {@link
+   * SamplingProfiler}: it is always written with a release store, after the call stack and current
+   * function it describes, and the sampler reads it with an acquire load before reading them.
+   */
+  private int depth = 0;
+
+  private static final VarHandle DEPTH;
+
+  static {
+    try {
+      DEPTH = MethodHandles.lookup().findVarHandle(Interpreter.class, "depth", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /** The function of the innermost active call. */
+  private FunctionAst function;
+
+  /** Where the innermost call's continuations start, which is where a return unwinds to. */
+  private int contBase;
+
+  /** How many function bodies to start between recording calls for monitoring, minus one. */
+  private static final int CALL_EVENT_MASK = 4095;
+
+  /** The number of function bodies started, used to record a sample of calls. */
+  private int bodiesStarted = 0;
 
   public Interpreter(ProgramAst ast) {
+    this(ast, InterpreterOptions.DEFAULT);
+  }
+
+  public Interpreter(ProgramAst ast, InterpreterOptions options) {
+    this(ast, null, options, createMemoizer(ast, options));
+  }
+
+  Interpreter(
+      ProgramAst ast, TieredEngine tiers, InterpreterOptions options, Memoizer memoizer) {
     this.ast = ast;
+    this.tiers = tiers;
+    this.defaultLimits = options.limits();
+    this.memoizer = memoizer;
+    this.profiler = options.profiler();
+    this.sampler = options.sampler();
+  }
+
+  static Memoizer createMemoizer(ProgramAst ast, InterpreterOptions options) {
+    return options.memoCapacity() > 0 ? new Memoizer(ast, options.memoCapacity()) : null;
   }
 
+  /** The results remembered so far, or null if memoization is disabled. */
+  public Memoizer getMemoizer() {
+    return memoizer;
+  }
+
+  @Override
   public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, defaultLimits);
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
     var function = ast.getFunction(name);
     if (function == null) {
       throw new InterpretException("no function called " + name);
     }
 
-    return runFunction(function, args);
-  }
+    if (function.getParams().size() != args.size()) {
+      throw new InterpretException("wrong number of arguments for " + function.getName());
+    }
 
-  private RValue runFunction(FunctionAst ast, List<RValue> args) throws InterpretException {
-    var variables = new HashMap<IdentAst, LValue>();
-    stack.push(variables);
+    var base = stackTop;
+    ensureCapacity(base + args.size());
 
-    if (ast.getParams().size() != args.size()) {
-      throw new InterpretException("wrong number of arguments for " + ast.getName());
+    for (var i = 0; i < args.size(); i++) {
+      stack[base + i] = args.get(i).castToInt().getValue();
     }
 
-    for (var i = 0; i < args.size(); i++) {
-      var param = ast.getParams().get(i);
-      var value = new LValue(args.get(i));
-      variables.put(param.getName(), value);
+    budget = new ExecutionBudget(limits);
+
+    var compiled = tiers == null ? null : tiers.enter(function);
+    if (compiled != null) {
+      return new IntValue(callCompiled(compiled, function, base));
     }
 
+    return new IntValue(execute(function, base));
+  }
+
+  /**
+   * Runs a function given a frame in the layout used by {@link CallTarget}, as part of a run which
+   * may have started in another tier.
+   */
+  int call(FunctionAst function, int[] frame, ExecutionBudget budget) throws InterpretException {
+    var paramCount = function.getParams().size();
+    var base = stackTop;
+    ensureCapacity(base + paramCount);
+    System.arraycopy(frame, 0, stack, base, paramCount);
+
+    var oldBudget = this.budget;
+    this.budget = budget;
+
     try {
-      return runBody(ast.getBody());
+      return execute(function, base);
     } finally {
-      stack.pop();
+      this.budget = oldBudget;
     }
   }
 
-  private RValue runBody(BlockAst ast) throws InterpretException {
-    for (var stmt : ast.getStmts()) {
-      switch (stmt) {
-        case VarDeclStmtAst varDecl -> stack.peek().put(varDecl.getDecl().getName(), new LValue());
-        case ReturnStmtAst returnStmt -> {
-          return evalRValueExpr(returnStmt.getValue());
-        }
-        case ExprStmtAst exprStmt -> evalRValueExpr(exprStmt.getExpr());
+  private int callCompiled(CallTarget compiled, FunctionAst function, int base)
+      throws InterpretException {
+    var frame = new int[function.getFrameSize()];
+    System.arraycopy(stack, base, frame, 0, function.getParams().size());
+    return compiled.call(frame, budget);
+  }
+
+  /**
+   * Runs a function whose arguments have already been written to the stack starting at {@code
+   * base}, along with every call it makes, until it returns.
+   */
+  private int execute(FunctionAst function, int base) throws InterpretException {
+    var oldContTop = contTop;
+    var oldValueTop = valueTop;
+    var oldDepth = depth;
+    var oldFramePointer = framePointer;
+    var oldStackTop = stackTop;
+    var oldFunction = this.function;
+    var oldContBase = contBase;
+    var oldProfileDepth = profiler == null ? 0 : profiler.depth();
+
+    if (sampler != null && oldDepth == 0) sampler.attach(this);
+
+    try {
+      enterFunction(function, base);
+      runUntil(oldContTop);
+      return values[--valueTop];
+    } finally {
+      // Only needed if an exception was thrown part way through, otherwise these already match
+      contTop = oldContTop;
+      valueTop = oldValueTop;
+      framePointer = oldFramePointer;
+      stackTop = oldStackTop;
+      this.function = oldFunction;
+      contBase = oldContBase;
+      publishDepth(oldDepth);
+      if (profiler != null) profiler.unwind(oldProfileDepth);
+      if (sampler != null && oldDepth == 0) sampler.detach(this);
+    }
+  }
+
+  /**
+   * Takes a sample for a {@link SamplingProfiler}. This is called from the sampler's own thread
+   * while the interpreter keeps running.
+   *
+   * <p>The depth is read first, with an acquire load that pairs with the release store that
+   * published it. The current function and the callers below that depth are then at least as new
+   * as the call that depth was published for, so samples follow the interpreter rather than a
+   * value the JIT cached. They may also be newer, if calls were made or returned from since, and
+   * the node about to be evaluated is not published at all. That only makes the odd sample
+   * inaccurate, as long as each field is read just once and nothing is read out of bounds.
+   */
+  void sample(SamplingProfiler sampler) {
+    var publishedDepth = (int) DEPTH.getAcquire(this);
+
+    var current = function;
+    if (current == null) return;
+
+    var callers = callFunctions;
+    var callDepth = Math.min(publishedDepth, callers.length);
+
+    // Caught part way through entering or leaving the outermost call, so there is no stack to see
+    if (callDepth == 0) return;
+
+    var nodes = contNodes;
+    var next = Math.min(contTop, nodes.length) - 1;
+
+    sampler.record(current, callers, callDepth, next >= 0 ? nodes[next] : null);
+  }
+
+  private void enterFunction(FunctionAst callee, int base) throws InterpretException {
+    budget.enter();
+
+    if (depth == callFunctions.length) {
+      callFunctions = Arrays.copyOf(callFunctions, depth * 2);
+      callSaved = Arrays.copyOf(callSaved, depth * 4);
+    }
+
+    callFunctions[depth] = function;
+    callSaved[depth * 2] = framePointer;
+    callSaved[depth * 2 + 1] = contBase;
+
+    var frameSize = callee.getFrameSize();
+    ensureCapacity(base + frameSize);
+
+    function = callee;
+    framePointer = base;
+    stackTop = base + frameSize;
+    contBase = contTop;
+    publishDepth(depth + 1);
+
+    if (profiler != null) profiler.enter(callee);
+    startBody();
+  }
+
+  /**
+   * Clears the current frame's locals and schedules the function body from the beginning. The
+   * budget must already have been charged for the body.
+   */
+  private void startBody() {
+    if ((++bodiesStarted & CALL_EVENT_MASK) == 0) {
+      recordCallEvent();
+    }
+
+    // Locals and initialization flags start zeroed, but the arguments must be kept
+    Arrays.fill(stack, framePointer + function.getParams().size(), stackTop, 0);
+    pushCont(function.getBody(), 0);
+  }
+
+  /** Records a call for monitoring, which happens at a fixed rate per call. */
+  private void recordCallEvent() {
+    if (Events.isRecorderRunning()) {
+      var event = new GuestCallEvent();
+
+      if (event.shouldCommit()) {
+        event.function = function.getName().getContent();
+        event.depth = depth;
+        event.commit();
       }
     }
+  }
 
-    throw new InterpretException("function did not return");
+  private void returnFromFunction(int value) {
+    if (profiler != null) profiler.exit();
+    budget.exit();
+
+    stackTop = framePointer;
+    contTop = contBase;
+
+    var caller = depth - 1;
+    function = callFunctions[caller];
+    framePointer = callSaved[caller * 2];
+    contBase = callSaved[caller * 2 + 1];
+    publishDepth(caller);
+
+    pushValue(value);
   }
 
-  private LValue evalLValueExpr(LValueExprAst ast) throws InterpretException {
-    return switch (ast) {
-      case VarExprAst var -> evalVarExpr(var);
-    };
+  /**
+   * Sets the depth once the call stack and function it describes are in place, so a sampler that
+   * sees the new depth sees them too.
+   */
+  private void publishDepth(int value) {
+    DEPTH.setRelease(this, value);
+  }
+
+  private void ensureCapacity(int size) {
+    if (size > stack.length) {
+      stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
   }
 
-  private LValue evalVarExpr(VarExprAst variable) throws InterpretException {
-    var value = stack.peek().get(variable.getName());
+  private void pushCont(Ast node, int state) {
+    if (contTop == contNodes.length) {
+      contNodes = Arrays.copyOf(contNodes, contTop * 2);
+      contStates = Arrays.copyOf(contStates, contTop * 2);
+    }
 
-    if (value == null) {
-      throw new InterpretException("undefined variable " + variable.getName());
+    contNodes[contTop] = node;
+    contStates[contTop] = state;
+    contTop++;
+  }
+
+  private void pushValue(int value) {
+    if (valueTop == values.length) {
+      values = Arrays.copyOf(values, valueTop * 2);
     }
 
-    return value;
+    values[valueTop++] = value;
   }
 
-  private RValue evalRValueExpr(RValueExprAst ast) throws InterpretException {
-    return switch (ast) {
-      case IntoRValueExprAst intoRValue -> evalIntoRValueExpr(intoRValue);
-      case IntLiteralExprAst intLiteral -> evalIntLiteral(intLiteral);
-      case AssignmentExprAst assignment -> evalAssignmentExpr(assignment);
-      case CallExprAst call -> evalCallExpr(call);
-      case AddExprAst add -> evalAddExpr(add);
-      case SubExprAst sub -> evalSubExpr(sub);
-      case MulExprAst mul -> evalMulExpr(mul);
-      case DivExprAst div -> evalDivExpr(div);
-      case NegExprAst neg -> evalNegExpr(neg);
-      case LogicalAndExprAst logicalAnd -> evalLogicalAndExpr(logicalAnd);
-      case LogicalOrExprAst logicalOr -> evalLogicalOrExpr(logicalOr);
-      case TernaryExprAst ternary -> evalTernaryExpr(ternary);
-    };
+  /**
+   * Schedules an expression to be evaluated, after which its value will be on top of the value
+   * stack. Literals and variables are evaluated immediately.
+   */
+  private void pushExpr(RValueExprAst ast) throws InterpretException {
+    if (!evalLeaf(ast)) pushCont(ast, 0);
   }
 
-  private RValue evalIntoRValueExpr(IntoRValueExprAst intoRValue) throws InterpretException {
-    var lValue = evalLValueExpr(intoRValue.getLValue());
-    return lValue.get();
+  /** Pushes the value of a literal or variable and returns true, or returns false otherwise. */
+  private boolean evalLeaf(RValueExprAst ast) throws InterpretException {
+    switch (ast) {
+      case IntLiteralExprAst intLiteral -> pushValue(intLiteral.getValue());
+      case IntoRValueExprAst intoRValue -> pushValue(evalLValueExpr(intoRValue.getLValue()));
+      default -> {
+        return false;
+      }
+    }
+
+    if (profiler != null) profiler.hit(ast);
+
+    return true;
   }
 
-  private IntValue evalIntLiteral(IntLiteralExprAst intLiteral) {
-    return new IntValue(intLiteral.getValue());
+  /** Resumes continuations until the continuation stack is back down to the given size. */
+  private void runUntil(int stop) throws InterpretException {
+    while (contTop > stop) {
+      var top = --contTop;
+      var node = contNodes[top];
+      var state = contStates[top];
+
+      // Other expressions only start evaluating once, with a state of zero
+      if (profiler != null && state == 0 && node instanceof RValueExprAst) profiler.hit(node);
+
+      // Cases are roughly ordered by how often they come up, since they are tested in order
+      switch (node) {
+        case TernaryExprAst ternary -> {
+          if (state == 0) {
+            pushCont(ternary, 1);
+            pushExpr(ternary.getCondition());
+          } else {
+            pushExpr(
+                values[--valueTop] != 0 ? ternary.getTrueCase() : ternary.getFalseCase());
+          }
+        }
+        case CallExprAst call -> evalCallExpr(call, state);
+        case AddExprAst add -> {
+          if (evalOperands(add, state, add.getLhs(), add.getRhs())) {
+            var rhs = values[--valueTop];
+            values[valueTop - 1] += rhs;
+          }
+        }
+        case ReturnStmtAst returnStmt -> returnFromFunction(values[--valueTop]);
+        case BlockAst block -> runBlock(block, state);
+        case SubExprAst sub -> {
+          if (evalOperands(sub, state, sub.getLhs(), sub.getRhs())) {
+            var rhs = values[--valueTop];
+            values[valueTop - 1] -= rhs;
+          }
+        }
+        case MulExprAst mul -> {
+          if (evalOperands(mul, state, mul.getLhs(), mul.getRhs())) {
+            var rhs = values[--valueTop];
+            values[valueTop - 1] *= rhs;
+          }
+        }
+        case DivExprAst div -> {
+          if (evalOperands(div, state, div.getLhs(), div.getRhs())) {
+            var rhs = values[--valueTop];
+            if (rhs == 0) throw new InterpretException("division by zero");
+            values[valueTop - 1] /= rhs;
+          }
+        }
+        case NegExprAst neg -> {
+          if (state == 0) {
+            pushCont(neg, 1);
+            pushExpr(neg.getExpr());
+          } else {
+            values[valueTop - 1] = -values[valueTop - 1];
+          }
+        }
+        case LogicalAndExprAst logicalAnd -> {
+          if (state == 0) {
+            pushCont(logicalAnd, 1);
+            pushExpr(logicalAnd.getLhs());
+          } else if (values[valueTop - 1] != 0) {
+            // The right-hand side's value replaces the left's as the result
+            valueTop--;
+            pushExpr(logicalAnd.getRhs());
+          }
+        }
+        case LogicalOrExprAst logicalOr -> {
+          if (state == 0) {
+            pushCont(logicalOr, 1);
+            pushExpr(logicalOr.getLhs());
+          } else if (values[valueTop - 1] == 0) {
+            valueTop--;
+            pushExpr(logicalOr.getRhs());
+          }
+        }
+        case AssignmentExprAst assignment -> {
+          if (state == 0) {
+            checkAssignable(assignment.getLhs());
+            pushCont(assignment, 1);
+            pushExpr(assignment.getRhs());
+          } else {
+            assignLValueExpr(assignment.getLhs(), values[valueTop - 1]);
+          }
+        }
+        default -> throw new AssertionError("unexpected continuation " + node);
+      }
+    }
   }
 
-  private RValue evalAssignmentExpr(AssignmentExprAst assignment) throws InterpretException {
-    var lhs = evalLValueExpr(assignment.getLhs());
-    var rhs = evalRValueExpr(assignment.getRhs());
+  /**
+   * Runs a block's statements starting at the given index, until one of them needs to evaluate an
+   * expression that is not a leaf. The state is the index of the next statement, bitwise negated if
+   * the previous statement's value needs to be discarded first.
+   */
+  private void runBlock(BlockAst block, int state) throws InterpretException {
+    if (state < 0) {
+      valueTop--;
+      state = ~state;
+    }
 
-    lhs.set(rhs);
+    var stmts = block.getStmts();
+    for (var i = state; i < stmts.size(); i++) {
+      switch (stmts.get(i)) {
+        case VarDeclStmtAst varDecl -> runVarDeclStmt(varDecl);
+        case ReturnStmtAst returnStmt -> {
+          var value = returnStmt.getValue();
 
-    return rhs;
+          if (evalLeaf(value)) {
+            returnFromFunction(values[--valueTop]);
+          } else {
+            pushCont(returnStmt, 0);
+            pushCont(value, 0);
+          }
+
+          return;
+        }
+        case ExprStmtAst exprStmt -> {
+          var expr = exprStmt.getExpr();
+
+          if (evalLeaf(expr)) {
+            valueTop--;
+          } else {
+            pushCont(block, ~(i + 1));
+            pushCont(expr, 0);
+            return;
+          }
+        }
+      }
+    }
+
+    throw new InterpretException("function did not return");
   }
 
-  private RValue evalCallExpr(CallExprAst call) throws InterpretException {
-    var args = new ArrayList<RValue>();
-    for (var arg : call.getArgs()) args.add(evalRValueExpr(arg));
-    return run(call.getFunction().getContent(), args);
+  private void runVarDeclStmt(VarDeclStmtAst varDecl) {
+    var initSlot = varDecl.getDecl().getInitSlot();
+    if (initSlot >= 0) stack[framePointer + initSlot] = 0;
   }
 
-  private RValue evalAddExpr(AddExprAst add) throws InterpretException {
-    var lhs = evalRValueExpr(add.getLhs());
-    var rhs = evalRValueExpr(add.getRhs());
-    var value = lhs.castToInt().getValue() + rhs.castToInt().getValue();
-    return new IntValue(value);
+  private int evalLValueExpr(LValueExprAst ast) throws InterpretException {
+    return switch (ast) {
+      case VarExprAst var -> evalVarExpr(var);
+    };
   }
 
-  private RValue evalSubExpr(SubExprAst sub) throws InterpretException {
-    var lhs = evalRValueExpr(sub.getLhs());
-    var rhs = evalRValueExpr(sub.getRhs());
-    var value = lhs.castToInt().getValue() - rhs.castToInt().getValue();
-    return new IntValue(value);
+  private int evalVarExpr(VarExprAst variable) throws InterpretException {
+    checkInitialized(variable);
+    return stack[framePointer + variable.getDecl().getSlot()];
   }
 
-  private RValue evalMulExpr(MulExprAst mul) throws InterpretException {
-    var lhs = evalRValueExpr(mul.getLhs());
-    var rhs = evalRValueExpr(mul.getRhs());
-    var value = lhs.castToInt().getValue() * rhs.castToInt().getValue();
-    return new IntValue(value);
+  /** Fails if an assignment comes before its variable's declaration, before its value is run. */
+  private void checkAssignable(LValueExprAst ast) throws InterpretException {
+    switch (ast) {
+      case VarExprAst var -> checkInitialized(var);
+    }
   }
 
-  private RValue evalDivExpr(DivExprAst div) throws InterpretException {
-    var lhs = evalRValueExpr(div.getLhs());
-    var rhs = evalRValueExpr(div.getRhs());
+  private void checkInitialized(VarExprAst variable) throws InterpretException {
+    var decl = variable.getDecl();
 
-    try {
-      var value = lhs.castToInt().getValue() + rhs.castToInt().getValue();
-      return new IntValue(value);
-    } catch (ArithmeticException e) {
-      throw new InterpretException("division by zero");
+    if (variable.isCheckInitialized() && stack[framePointer + decl.getInitSlot()] == 0) {
+      throw new InterpretException("uninitialized variable");
     }
   }
 
-  private RValue evalNegExpr(NegExprAst negation) throws InterpretException {
-    var value = evalRValueExpr(negation.getExpr());
-    return new IntValue(-value.castToInt().getValue());
+  private void assignLValueExpr(LValueExprAst ast, int value) {
+    switch (ast) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        stack[framePointer + decl.getSlot()] = value;
+        if (decl.getInitSlot() >= 0) stack[framePointer + decl.getInitSlot()] = 1;
+      }
+    }
   }
 
-  private RValue evalLogicalAndExpr(LogicalAndExprAst logicalAnd) throws InterpretException {
-    var lhs = evalRValueExpr(logicalAnd.getLhs());
+  /**
+   * Schedules the operands of a binary operator one after the other, and returns true once both of
+   * their values are on the value stack.
+   */
+  private boolean evalOperands(RValueExprAst node, int state, RValueExprAst lhs, RValueExprAst rhs)
+      throws InterpretException {
+    if (state == 0) {
+      if (!evalLeaf(lhs)) {
+        pushCont(node, 1);
+        pushCont(lhs, 0);
+        return false;
+      }
 
-    if (lhs.castToInt().getValue() == 0) {
-      return lhs;
-    } else {
-      return evalRValueExpr(logicalAnd.getRhs());
+      state = 1;
     }
+
+    if (state == 1) {
+      if (!evalLeaf(rhs)) {
+        pushCont(node, 2);
+        pushCont(rhs, 0);
+        return false;
+      }
+    }
+
+    return true;
   }
 
-  private RValue evalLogicalOrExpr(LogicalOrExprAst logicalOr) throws InterpretException {
-    var lhs = evalRValueExpr(logicalOr.getLhs());
+  /**
+   * Evaluates a call's arguments one at a time, with the state being the number evaluated so far.
+   * Once all of them are on the value stack, they are moved into the callee's frame.
+   *
+   * <p>When memoizing, a call that misses keeps its arguments on the value stack, and is resumed
+   * with a state of {@link #STORE_RESULT} to remember the result once the callee returns.
+   */
+  private void evalCallExpr(CallExprAst call, int state) throws InterpretException {
+    var args = call.getArgs();
+    var callee = call.getFunctionDecl();
+    var argCount = args.size();
+
+    if (state == STORE_RESULT) {
+      var result = values[--valueTop];
+      valueTop -= argCount;
+      memoizer.table(callee).put(values, valueTop, result);
+      pushValue(result);
+      return;
+    }
 
-    if (lhs.castToInt().getValue() != 0) {
-      return lhs;
-    } else {
-      return evalRValueExpr(logicalOr.getRhs());
+    while (state < args.size()) {
+      var arg = args.get(state++);
+
+      if (!evalLeaf(arg)) {
+        pushCont(call, state);
+        pushCont(arg, 0);
+        return;
+      }
     }
-  }
 
-  private RValue evalTernaryExpr(TernaryExprAst ternary) throws InterpretException {
-    var condition = evalRValueExpr(ternary.getCondition());
+    var table = memoizer == null ? null : memoizer.table(callee);
+    if (table != null) {
+      var remembered = table.lookup(values, valueTop - argCount);
+
+      if (remembered != MemoTable.MISSING) {
+        valueTop -= argCount;
+        var result = (int) remembered;
+
+        if (call.isTailCall()) {
+          returnFromFunction(result);
+        } else {
+          pushValue(result);
+        }
+
+        return;
+      }
+    }
 
-    if (condition.castToInt().getValue() != 0) {
-      return evalRValueExpr(ternary.getTrueCase());
+    valueTop -= argCount;
+
+    if (call.isTailCall()) {
+      // Anything left of the current function's continuations is just waiting to return this call's
+      // value, so it can be thrown away and the function started again in the same frame
+      System.arraycopy(values, valueTop, stack, framePointer, argCount);
+      contTop = contBase;
+      if (profiler != null) profiler.tailCall();
+
+      // A running loop can't move into compiled code, but counting it means later calls can
+      if (tiers != null) tiers.enter(callee);
+
+      budget.startBody();
+      startBody();
+      return;
+    }
+
+    var base = stackTop;
+    ensureCapacity(base + argCount);
+    System.arraycopy(values, valueTop, stack, base, argCount);
+
+    var compiled = tiers == null ? null : tiers.enter(callee);
+    if (compiled != null) {
+      var result = callCompiled(compiled, callee, base);
+      if (table != null) table.put(values, valueTop, result);
+      pushValue(result);
     } else {
-      return evalRValueExpr(ternary.getFalseCase());
+      if (table != null) {
+        valueTop += argCount;
+        pushCont(call, STORE_RESULT);
+      }
+
+      enterFunction(callee, base);
     }
   }
 }
@@ -0,0 +1,30 @@
+package io.github.llewvallis.cfs.interpret;
+
+import lombok.With;
+
+/**
+ * Settings for the {@link Interpreter}.
+ *
+ * @param limits the limits of runs that do not give their own
+ * @param memoCapacity the number of results remembered per function, or zero to disable
+ *     memoization. Every function gets a table of this size up front, and it is clamped to {@link
+ *     MemoTable#MAX_CAPACITY}
+ * @param profiler records every call and expression evaluated, or null to disable profiling. Only
+ *     the {@link Interpreter} itself supports profiling, and it has no cost when disabled
+ * @param sampler periodically samples what interpreted code is doing, or null to disable sampling
+ */
+@With
+public record InterpreterOptions(
+    ExecutionLimits limits, int memoCapacity, Profiler profiler, SamplingProfiler sampler) {
+
+  public static final InterpreterOptions DEFAULT =
+      new InterpreterOptions(ExecutionLimits.DEFAULT, 0, null, null);
+
+  public InterpreterOptions {
+    if (memoCapacity < 0) {
+      throw new IllegalArgumentException("memo capacity must not be negative, not " + memoCapacity);
+    }
+
+    memoCapacity = Math.min(memoCapacity, MemoTable.MAX_CAPACITY);
+  }
+}
@@ -0,0 +1,9 @@
+package io.github.llewvallis.cfs.interpret;
+
+/** Thrown when a run exceeds one of its {@link ExecutionLimits}. */
+public abstract class LimitExceededException extends InterpretException {
+
+  public LimitExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,112 @@
+package io.github.llewvallis.cfs.interpret;
+
+import java.util.Arrays;
+import lombok.Synchronized;
+
+/**
+ * A fixed-size cache of a function's results, keyed by its arguments. Every function is a pure
+ * function of its arguments, since the language has no globals or I/O, so a remembered result can
+ * be reused for any later call with the same arguments.
+ *
+ * <p>The table is direct mapped: each argument tuple hashes to exactly one entry, and storing a
+ * result evicts whatever was in that entry before. Arguments are stored flat in an {@code int[]},
+ * so lookups never allocate.
+ *
+ * <p>Tables may be shared between threads. An entry's arguments and result are written together
+ * under the table's lock, so a lookup can never pair one call's arguments with another's result.
+ */
+public class MemoTable {
+
+  /**
+   * The most entries a table can have. Larger capacities are clamped to this, so that rounding up
+   * to a power of two can't overflow, and no table takes more than a few megabytes per argument.
+   */
+  public static final int MAX_CAPACITY = 1 << 20;
+
+  private final int arity;
+
+  /** How far to shift a hash to get an entry index, which keeps only its highest bits. */
+  private final int shift;
+
+  /** The arguments of each entry, {@link #arity} values per entry. */
+  private final int[] keys;
+
+  private final int[] results;
+
+  private final boolean[] occupied;
+
+  /** Returned by {@link #lookup(int[], int)} when there is no remembered result. */
+  static final long MISSING = Long.MIN_VALUE;
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  /**
+   * @param capacity the maximum number of entries, rounded up to a power of two and clamped to
+   *     {@link #MAX_CAPACITY}
+   */
+  MemoTable(int arity, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("memo table capacity must be positive, not " + capacity);
+    }
+
+    var size = Integer.highestOneBit(Math.max(1, Math.min(capacity, MAX_CAPACITY) - 1)) << 1;
+
+    this.arity = arity;
+    this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    this.keys = new int[size * arity];
+    this.results = new int[size];
+    this.occupied = new boolean[size];
+  }
+
+  @Synchronized
+  public long getHits() {
+    return hits;
+  }
+
+  @Synchronized
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Looks up the result for the arguments stored in {@code args} starting at {@code offset}. This
+   * returns the result widened to a {@code long}, or {@link #MISSING} if it is not remembered.
+   */
+  @Synchronized
+  long lookup(int[] args, int offset) {
+    var entry = entry(args, offset);
+    var start = entry * arity;
+
+    if (occupied[entry]
+        && Arrays.equals(keys, start, start + arity, args, offset, offset + arity)) {
+      hits++;
+      return results[entry];
+    }
+
+    misses++;
+    return MISSING;
+  }
+
+  @Synchronized
+  void put(int[] args, int offset, int result) {
+    var entry = entry(args, offset);
+    System.arraycopy(args, offset, keys, entry * arity, arity);
+    results[entry] = result;
+    occupied[entry] = true;
+  }
+
+  /**
+   * Fibonacci hashing: multiplying by the golden ratio spreads nearby arguments, which are by far
+   * the most common, evenly across the high bits of the hash.
+   */
+  private int entry(int[] args, int offset) {
+    var hash = 0;
+    for (var i = 0; i < arity; i++) {
+      hash = (hash + args[offset + i]) * 0x9E3779B9;
+    }
+
+    return hash >>> shift;
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Holds a {@link MemoTable} for each function of a program. The tables are all created up front,
+ * so finding a function's table needs no locking even when shared between threads.
+ *
+ * <p>Since every function gets a full table, memory use is the capacity times the number of
+ * functions, at {@code 4 * (arity + 1) + 1} bytes per entry. The capacity is clamped to {@link
+ * MemoTable#MAX_CAPACITY} to keep that bounded.
+ */
+public class Memoizer {
+
+  private final Map<FunctionAst, MemoTable> tables = new IdentityHashMap<>();
+
+  public Memoizer(ProgramAst ast, int capacity) {
+    for (var function : ast.getFunctions()) {
+      tables.put(function, new MemoTable(function.getParams().size(), capacity));
+    }
+  }
+
+  MemoTable table(FunctionAst function) {
+    return tables.get(function);
+  }
+
+  public Map<FunctionAst, MemoTable> getTables() {
+    return Collections.unmodifiableMap(tables);
+  }
+}
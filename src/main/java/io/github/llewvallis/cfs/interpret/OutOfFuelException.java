@@ -0,0 +1,13 @@
+package io.github.llewvallis.cfs.interpret;
+
+import lombok.Getter;
+
+public class OutOfFuelException extends LimitExceededException {
+
+  @Getter private final long fuel;
+
+  public OutOfFuelException(long fuel) {
+    super("ran out of fuel after " + fuel + " calls");
+    this.fuel = fuel;
+  }
+}
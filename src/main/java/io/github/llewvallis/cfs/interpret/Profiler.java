@@ -0,0 +1,210 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.Ast;
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Records where an {@link Interpreter} spends its time, in terms of guest functions rather than
+ * the interpreter's own methods. Every call is timed, and every expression evaluated is counted.
+ *
+ * <p>A profiler is only updated by interpreters it was given to through {@link
+ * InterpreterOptions#profiler()}. It is not thread safe, so it should only be used by one run at a
+ * time.
+ */
+public class Profiler {
+
+  /** The totals for a single function. */
+  @Getter
+  public static class FunctionProfile {
+
+    private final FunctionAst function;
+
+    /** The number of times the function was called, including self tail calls. */
+    private long calls = 0;
+
+    /** The time spent running the function's own code, excluding the calls it makes. */
+    private long selfNanos = 0;
+
+    /**
+     * The time spent in the function including its callees. Recursive calls are only counted once,
+     * at the outermost call.
+     */
+    private long totalNanos = 0;
+
+    /** How many calls of the function are active, used to avoid counting recursion twice. */
+    @Getter(AccessLevel.NONE)
+    private int active = 0;
+
+    private FunctionProfile(FunctionAst function) {
+      this.function = function;
+    }
+
+    public String getName() {
+      return function.getName().getContent();
+    }
+  }
+
+  /**
+   * How deep call paths are recorded. Calls any deeper are charged to the path of their ancestor at
+   * this depth, since otherwise deep recursion makes the folded stacks quadratic in its depth.
+   */
+  static final int MAX_PATH_DEPTH = 256;
+
+  /** A distinct chain of calls from the outermost one, and the self time spent at its end. */
+  private static class CallPath {
+
+    private final FunctionProfile function;
+
+    private final Map<FunctionAst, CallPath> children = new IdentityHashMap<>();
+
+    private long selfNanos = 0;
+
+    private CallPath(FunctionProfile function) {
+      this.function = function;
+    }
+  }
+
+  private final Map<FunctionAst, FunctionProfile> functions = new IdentityHashMap<>();
+
+  private final Map<Ast, long[]> hits = new IdentityHashMap<>();
+
+  private final CallPath root = new CallPath(null);
+
+  /** The function of each active call, innermost last. */
+  private FunctionProfile[] profiles = new FunctionProfile[64];
+
+  /** The path of each active call, which is shared by calls past {@link #MAX_PATH_DEPTH}. */
+  private CallPath[] paths = new CallPath[64];
+
+  /** When each active call started. */
+  private long[] starts = new long[64];
+
+  /** The time spent in the callees of each active call so far. */
+  private long[] childNanos = new long[64];
+
+  private int depth = 0;
+
+  void enter(FunctionAst function) {
+    var profile = functions.computeIfAbsent(function, FunctionProfile::new);
+    profile.calls++;
+    profile.active++;
+
+    var parent = depth == 0 ? root : paths[depth - 1];
+    var path =
+        depth < MAX_PATH_DEPTH
+            ? parent.children.computeIfAbsent(function, f -> new CallPath(profile))
+            : parent;
+
+    if (depth == paths.length) {
+      profiles = Arrays.copyOf(profiles, depth * 2);
+      paths = Arrays.copyOf(paths, depth * 2);
+      starts = Arrays.copyOf(starts, depth * 2);
+      childNanos = Arrays.copyOf(childNanos, depth * 2);
+    }
+
+    profiles[depth] = profile;
+    paths[depth] = path;
+    childNanos[depth] = 0;
+    starts[depth] = System.nanoTime();
+    depth++;
+  }
+
+  /** Records a self tail call, which reuses the current call rather than starting a new one. */
+  void tailCall() {
+    profiles[depth - 1].calls++;
+  }
+
+  void exit() {
+    var elapsed = System.nanoTime() - starts[--depth];
+    var self = elapsed - childNanos[depth];
+
+    paths[depth].selfNanos += self;
+    paths[depth] = null;
+
+    var profile = profiles[depth];
+    profiles[depth] = null;
+    profile.selfNanos += self;
+    if (--profile.active == 0) profile.totalNanos += elapsed;
+
+    if (depth > 0) childNanos[depth - 1] += elapsed;
+  }
+
+  /** The number of calls active, which {@link #unwind(int)} can later return to. */
+  int depth() {
+    return depth;
+  }
+
+  /** Ends calls until only the given number are active, after a run failed part way through. */
+  void unwind(int depth) {
+    while (this.depth > depth) exit();
+  }
+
+  void hit(Ast node) {
+    var count = hits.get(node);
+
+    if (count == null) {
+      hits.put(node, new long[] {1});
+    } else {
+      count[0]++;
+    }
+  }
+
+  /** Every function called so far, with the most self time first. */
+  public List<FunctionProfile> getFunctions() {
+    var result = new ArrayList<>(functions.values());
+    result.sort((a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+    return result;
+  }
+
+  /** The number of times each expression was evaluated. */
+  public Map<Ast, Long> getHits() {
+    var result = new IdentityHashMap<Ast, Long>();
+    hits.forEach((node, count) -> result.put(node, count[0]));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Renders the self time of every call path in the folded stacks format used by flame graph tools.
+   * Each line is a chain of function names separated by semicolons, outermost first, followed by a
+   * space and the self time in nanoseconds. Paths are cut off at {@link #MAX_PATH_DEPTH} calls.
+   */
+  public String toFoldedStacks() {
+    var result = new StringBuilder();
+
+    // Walked iteratively, since deep guest recursion makes for an equally deep tree of paths
+    var names = new ArrayList<String>();
+    var pending = new ArrayDeque<Iterator<CallPath>>();
+    pending.push(root.children.values().iterator());
+
+    while (!pending.isEmpty()) {
+      var children = pending.peek();
+
+      if (!children.hasNext()) {
+        pending.pop();
+        if (!names.isEmpty()) names.removeLast();
+        continue;
+      }
+
+      var path = children.next();
+      names.add(path.function.getName());
+
+      if (path.selfNanos > 0) {
+        result.append(String.join(";", names)).append(' ').append(path.selfNanos).append('\n');
+      }
+
+      pending.push(path.children.values().iterator());
+    }
+
+    return result.toString();
+  }
+}
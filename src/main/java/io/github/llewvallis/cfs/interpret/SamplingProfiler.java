@@ -0,0 +1,149 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.Ast;
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Periodically samples what running {@link Interpreter}s are doing, from a daemon thread of its
+ * own. Unlike a {@link Profiler}, this adds no work to the interpreter itself: the sampler reads
+ * the interpreter's call stack directly, which it keeps anyway. This makes it cheap enough to
+ * leave running in production, at the cost of only giving statistical results.
+ *
+ * <p>Each sample records the innermost guest function, every function on the call stack, and the
+ * expression about to be evaluated. Expressions are resolved to source lines when reporting.
+ */
+public class SamplingProfiler implements AutoCloseable {
+
+  /** Only this many of the innermost calls are looked at, so deep recursion is cheap to sample. */
+  private static final int MAX_SAMPLED_DEPTH = 1024;
+
+  private final long intervalNanos;
+
+  private final Set<Interpreter> running = ConcurrentHashMap.newKeySet();
+
+  private final Thread thread;
+
+  private volatile boolean closed = false;
+
+  // Everything below is only touched while holding the lock on this
+
+  private long samples = 0;
+
+  private final Map<FunctionAst, long[]> functionSamples = new IdentityHashMap<>();
+
+  private final Map<Ast, long[]> nodeSamples = new IdentityHashMap<>();
+
+  /**
+   * @param interval how long to wait between samples, which must be positive
+   */
+  public SamplingProfiler(Duration interval) {
+    if (interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("sampling interval must be positive, not " + interval);
+    }
+
+    this.intervalNanos = interval.toNanos();
+    this.thread = Thread.ofPlatform().name("cfs-sampler").daemon().start(this::sampleLoop);
+  }
+
+  /** Makes an interpreter visible to the sampler until {@link #detach(Interpreter)} is called. */
+  void attach(Interpreter interpreter) {
+    running.add(interpreter);
+  }
+
+  void detach(Interpreter interpreter) {
+    running.remove(interpreter);
+  }
+
+  private void sampleLoop() {
+    while (!closed) {
+      LockSupport.parkNanos(intervalNanos);
+
+      for (var interpreter : running) {
+        interpreter.sample(this);
+      }
+    }
+  }
+
+  /**
+   * Records one sample of an interpreter. The interpreter's stack is read while it keeps running,
+   * so the {@code callers} array may be changing underneath us and the result is only approximate.
+   *
+   * @param callers the function of each active call's caller, where entries from 1 to {@code
+   *     depth - 1} are the functions calling {@code current}, outermost first
+   */
+  synchronized void record(FunctionAst current, FunctionAst[] callers, int depth, Ast node) {
+    var sample = ++samples;
+    counter(current)[0]++;
+
+    countInStack(current, sample);
+    for (var i = depth - 1; i >= Math.max(1, depth - MAX_SAMPLED_DEPTH); i--) {
+      var caller = callers[i];
+      if (caller != null) countInStack(caller, sample);
+    }
+
+    if (node != null) nodeSamples.computeIfAbsent(node, n -> new long[1])[0]++;
+  }
+
+  /** Counts a function towards the sample, unless it has already been counted. */
+  private void countInStack(FunctionAst function, long sample) {
+    var counter = counter(function);
+
+    if (counter[2] != sample) {
+      counter[1]++;
+      counter[2] = sample;
+    }
+  }
+
+  /** The self and total samples of a function, and the last sample it was counted in. */
+  private long[] counter(FunctionAst function) {
+    return functionSamples.computeIfAbsent(function, f -> new long[3]);
+  }
+
+  public synchronized long getSamples() {
+    return samples;
+  }
+
+  /** The number of samples in which each function was the innermost call. */
+  public synchronized Map<FunctionAst, Long> getSelfSamples() {
+    var result = new IdentityHashMap<FunctionAst, Long>();
+    functionSamples.forEach((function, counter) -> result.put(function, counter[0]));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /** The number of samples in which each function was anywhere in the call stack. */
+  public synchronized Map<FunctionAst, Long> getTotalSamples() {
+    var result = new IdentityHashMap<FunctionAst, Long>();
+    functionSamples.forEach((function, counter) -> result.put(function, counter[1]));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /** The number of samples taken on each line of the source, keyed by zero-based line number. */
+  public synchronized Map<Integer, Long> getLineSamples(SourceMap sourceMap) {
+    var result = new TreeMap<Integer, Long>();
+
+    nodeSamples.forEach(
+        (node, counter) -> {
+          var line = sourceMap.getLineCol(node.getSpan().start()).line();
+          result.merge(line, counter[0], Long::sum);
+        });
+
+    return result;
+  }
+
+  /** Stops sampling. Samples taken so far can still be read afterwards. */
+  @Override
+  public void close() throws InterruptedException {
+    closed = true;
+    LockSupport.unpark(thread);
+    thread.join();
+  }
+}
@@ -0,0 +1,165 @@
+package io.github.llewvallis.cfs.interpret;
+
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.interpret.closure.ClosureCompiler;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts out running every function in the {@link Interpreter}, and promotes functions to closure
+ * compiled code once they have been called often enough. Short programs never pay for compilation,
+ * while long-running ones spend most of their time in the faster tier.
+ *
+ * <p>Compilation happens on a background thread, so calls carry on in the interpreter until the
+ * compiled code is ready. Compiled code calls other functions through their {@link TieredFunction},
+ * so a hot function can call a cold one and vice versa. A run's {@link ExecutionBudget} is passed
+ * along with each call, so its limits hold no matter which tier each function runs in.
+ */
+public class TieredEngine implements ExecutionEngine {
+
+  public static final int DEFAULT_THRESHOLD = 1000;
+
+  /** Shared by every engine, so that creating engines does not leak threads. */
+  private static final ExecutorService COMPILER =
+      Executors.newSingleThreadExecutor(
+          task -> {
+            var thread = new Thread(task, "cfs-compiler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final ProgramAst ast;
+
+  private final int threshold;
+
+  /** The options for interpreted code, which is never profiled since it only runs when cold. */
+  private final InterpreterOptions options;
+
+  /** Shared by the interpreters for every run, so results are remembered between runs. */
+  private final Memoizer memoizer;
+
+  private final Map<FunctionAst, TieredFunction> functions = new IdentityHashMap<>();
+
+  /**
+   * One interpreter per thread, for runs and for cold functions called from compiled code. Calls
+   * back into the interpreter nest inside whatever it is already running, so a run's budgets cover
+   * every call it makes.
+   */
+  private final ThreadLocal<Interpreter> interpreters =
+      ThreadLocal.withInitial(this::newInterpreter);
+
+  public TieredEngine(ProgramAst ast) {
+    this(ast, DEFAULT_THRESHOLD, InterpreterOptions.DEFAULT);
+  }
+
+  /**
+   * @param threshold the number of calls after which a function is compiled
+   * @param options the options for interpreted code. Compiled code is not memoized, but is held to
+   *     the same limits
+   */
+  public TieredEngine(ProgramAst ast, int threshold, InterpreterOptions options) {
+    this.ast = ast;
+    this.threshold = threshold;
+    this.options = options.withProfiler(null);
+    this.memoizer = Interpreter.createMemoizer(ast, options);
+
+    for (var function : ast.getFunctions()) {
+      functions.put(function, new TieredFunction(function));
+    }
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    try {
+      return interpreters.get().run(name, args);
+    } catch (StackOverflowError e) {
+      // Compiled code recurses on the Java stack, unlike the interpreter
+      throw new InterpretException("stack overflow");
+    }
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    try {
+      return interpreters.get().run(name, args, limits);
+    } catch (StackOverflowError e) {
+      throw new InterpretException("stack overflow");
+    }
+  }
+
+  private Interpreter newInterpreter() {
+    return new Interpreter(ast, this, options, memoizer);
+  }
+
+  /** The results remembered by interpreted code, or null if memoization is disabled. */
+  public Memoizer getMemoizer() {
+    return memoizer;
+  }
+
+  /** Whether the named function has been promoted to compiled code. */
+  public boolean isCompiled(String name) {
+    var function = ast.getFunction(name);
+    return function != null && functions.get(function).compiled != null;
+  }
+
+  /**
+   * Counts a call to a function, and returns its compiled code if there is any. Otherwise, the
+   * caller should interpret the function itself. Self tail calls are counted too, even though the
+   * interpreter carries on with them, so that functions which loop get compiled for later calls.
+   */
+  CallTarget enter(FunctionAst function) {
+    return functions.get(function).enter();
+  }
+
+  /** The call target for a function, which switches to compiled code once it is available. */
+  private class TieredFunction implements CallTarget {
+
+    private final FunctionAst ast;
+
+    private int invocations = 0;
+
+    /** Written once by the compiler thread, and read without locking by callers. */
+    private volatile CallTarget compiled;
+
+    private TieredFunction(FunctionAst ast) {
+      this.ast = ast;
+    }
+
+    private CallTarget enter() {
+      var target = compiled;
+
+      // The count is only a heuristic, so a racy increment is good enough. Compilation is only
+      // requested when the count hits the threshold exactly, so it rarely happens more than once.
+      // The count stops there, so it can't wrap around if compiling fails and request it again
+      if (target == null && invocations < threshold && ++invocations == threshold) {
+        COMPILER.execute(this::compile);
+      }
+
+      return target;
+    }
+
+    private void compile() {
+      // Racing callers may have requested compilation twice, but only the first request does work
+      if (compiled != null) return;
+
+      try {
+        compiled = new ClosureCompiler(functions::get).compileFunction(ast);
+      } catch (InterpretException e) {
+        // The function can never run successfully, so there is nothing to gain by compiling it
+      }
+    }
+
+    @Override
+    public int call(int[] frame, ExecutionBudget budget) throws InterpretException {
+      var target = enter();
+      if (target != null) return target.call(frame, budget);
+
+      return interpreters.get().call(ast, frame, budget);
+    }
+  }
+}
@@ -1,6 +1,6 @@
 package io.github.llewvallis.cfs.interpret;
 
-public abstract sealed class Value permits LValue, RValue {
+public abstract sealed class Value permits RValue {
 
   public IntValue castToInt() throws InterpretException {
     return switch (this) {
@@ -0,0 +1,570 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.interpret.CallTarget;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Converts an analyzed program into a tree of Java lambdas (closure compilation). All the decisions
+ * a tree-walking interpreter makes on every evaluation - which kind of node it is looking at, which
+ * function a call refers to, which slot a variable lives in - are made once here instead. The
+ * resulting closures only do the actual work of the program.
+ *
+ * <p>Functions can be compiled one at a time. Calls go to whatever {@link CallTarget} the linker
+ * provides for the callee, which need not be closure compiled itself.
+ *
+ * <p>In parallel mode, independent operands that each contain a call are evaluated concurrently
+ * using fork-join. Evaluation order cannot be observed, since functions are pure, as long as
+ * neither operand assigns a variable. Operands without calls are too cheap to be worth forking.
+ */
+public class ClosureCompiler {
+
+  private final Function<FunctionAst, CallTarget> linker;
+
+  private final boolean parallel;
+
+  public ClosureCompiler(Function<FunctionAst, CallTarget> linker) {
+    this(linker, false);
+  }
+
+  public ClosureCompiler(Function<FunctionAst, CallTarget> linker, boolean parallel) {
+    this.linker = linker;
+    this.parallel = parallel;
+  }
+
+  /** Compiles every function in a program, with calls linked directly to each other. */
+  public static ClosureProgram compileProgram(ProgramAst ast) throws InterpretException {
+    return compileProgram(ast, null);
+  }
+
+  /**
+   * Compiles every function in a program, which will be run in parallel in the given pool unless
+   * it is null.
+   */
+  public static ClosureProgram compileProgram(ProgramAst ast, ForkJoinPool pool)
+      throws InterpretException {
+    return compileProgram(ast, pool, ExecutionLimits.DEFAULT);
+  }
+
+  /**
+   * Same as {@link #compileProgram(ProgramAst, ForkJoinPool)}, but runs that don't give limits of
+   * their own use {@code defaultLimits}.
+   */
+  public static ClosureProgram compileProgram(
+      ProgramAst ast, ForkJoinPool pool, ExecutionLimits defaultLimits)
+      throws InterpretException {
+    var functions = new IdentityHashMap<FunctionAst, CompiledFunction>();
+    var byName = new HashMap<String, CompiledFunction>();
+
+    for (var function : ast.getFunctions()) {
+      var name = function.getName().getContent();
+      var compiled =
+          new CompiledFunction(name, function.getParams().size(), function.getFrameSize());
+
+      functions.put(function, compiled);
+      byName.put(name, compiled);
+    }
+
+    var compiler = new ClosureCompiler(functions::get, pool != null);
+    for (var function : ast.getFunctions()) {
+      functions.get(function).setBody(compiler.compileFunction(function));
+    }
+
+    return new ClosureProgram(byName, pool, defaultLimits);
+  }
+
+  public CallTarget compileFunction(FunctionAst ast) throws InterpretException {
+    var body = compileBody(ast.getBody());
+
+    // The budget is only charged here, when a call starts, so the cost of limits is per call
+    var tailCallSlot = ast.getTailCallSlot();
+    if (tailCallSlot < 0) {
+      return (frame, budget) -> {
+        budget.enter();
+        var result = body.eval(frame, budget);
+        budget.exit();
+        return result;
+      };
+    }
+
+    // Self tail calls overwrite the parameters and set the restart flag, so the body is run again
+    // with the same frame rather than a new one
+    var paramCount = ast.getParams().size();
+    var frameSize = ast.getFrameSize();
+
+    return (frame, budget) -> {
+      budget.enter();
+
+      while (true) {
+        var result = body.eval(frame, budget);
+
+        if (frame[tailCallSlot] == 0) {
+          budget.exit();
+          return result;
+        }
+
+        Arrays.fill(frame, paramCount, frameSize, 0);
+        budget.startBody();
+      }
+    };
+  }
+
+  private IntClosure compileBody(BlockAst ast) throws InterpretException {
+    var effects = new ArrayList<IntClosure>();
+    IntClosure result = null;
+
+    for (var stmt : ast.getStmts()) {
+      switch (stmt) {
+        case VarDeclStmtAst varDecl -> {
+          var initSlot = varDecl.getDecl().getInitSlot();
+          if (initSlot >= 0) effects.add((frame, budget) -> frame[initSlot] = 0);
+        }
+        case ReturnStmtAst returnStmt -> result = compileTailExpr(returnStmt.getValue());
+        case ExprStmtAst exprStmt -> effects.add(compileExpr(exprStmt.getExpr()));
+      }
+
+      // Anything after a return statement can never run
+      if (result != null) break;
+    }
+
+    if (result == null) {
+      result =
+          (frame, budget) -> {
+            throw new InterpretException("function did not return");
+          };
+    }
+
+    if (effects.isEmpty()) {
+      return result;
+    }
+
+    var effectArray = effects.toArray(IntClosure[]::new);
+    var finalResult = result;
+
+    return (frame, budget) -> {
+      for (var effect : effectArray) effect.eval(frame, budget);
+      return finalResult.eval(frame, budget);
+    };
+  }
+
+  /** Compiles an expression whose value is returned, which may contain self tail calls. */
+  private IntClosure compileTailExpr(RValueExprAst ast) throws InterpretException {
+    return switch (ast) {
+      case CallExprAst call when call.isTailCall() -> compileTailCall(call);
+      case TernaryExprAst ternary -> {
+        var condition = compileExpr(ternary.getCondition());
+        var trueCase = compileTailExpr(ternary.getTrueCase());
+        var falseCase = compileTailExpr(ternary.getFalseCase());
+        yield (frame, budget) ->
+            condition.eval(frame, budget) != 0
+                ? trueCase.eval(frame, budget)
+                : falseCase.eval(frame, budget);
+      }
+      case LogicalAndExprAst logicalAnd -> {
+        var lhs = compileExpr(logicalAnd.getLhs());
+        var rhs = compileTailExpr(logicalAnd.getRhs());
+        yield (frame, budget) -> {
+          var value = lhs.eval(frame, budget);
+          return value == 0 ? value : rhs.eval(frame, budget);
+        };
+      }
+      case LogicalOrExprAst logicalOr -> {
+        var lhs = compileExpr(logicalOr.getLhs());
+        var rhs = compileTailExpr(logicalOr.getRhs());
+        yield (frame, budget) -> {
+          var value = lhs.eval(frame, budget);
+          return value != 0 ? value : rhs.eval(frame, budget);
+        };
+      }
+      default -> compileExpr(ast);
+    };
+  }
+
+  /**
+   * Compiles a self tail call, which replaces the parameters and sets the restart flag. The value
+   * it returns is never used.
+   */
+  private IntClosure compileTailCall(CallExprAst call) throws InterpretException {
+    var tailCallSlot = call.getFunctionDecl().getTailCallSlot();
+    var args = new IntClosure[call.getArgs().size()];
+    for (var i = 0; i < args.length; i++) {
+      args[i] = compileExpr(call.getArgs().get(i));
+    }
+
+    // The arguments may read the current parameters, so none can be written until all have been
+    // evaluated
+    return switch (args.length) {
+      case 0 -> (frame, budget) -> frame[tailCallSlot] = 1;
+      case 1 -> {
+        var arg0 = args[0];
+        yield (frame, budget) -> {
+          frame[0] = arg0.eval(frame, budget);
+          return frame[tailCallSlot] = 1;
+        };
+      }
+      case 2 -> {
+        var arg0 = args[0];
+        var arg1 = args[1];
+        yield (frame, budget) -> {
+          var value0 = arg0.eval(frame, budget);
+          frame[1] = arg1.eval(frame, budget);
+          frame[0] = value0;
+          return frame[tailCallSlot] = 1;
+        };
+      }
+      default ->
+          (frame, budget) -> {
+            var values = new int[args.length];
+            for (var i = 0; i < args.length; i++) values[i] = args[i].eval(frame, budget);
+            System.arraycopy(values, 0, frame, 0, values.length);
+            return frame[tailCallSlot] = 1;
+          };
+    };
+  }
+
+  private IntClosure compileExpr(RValueExprAst ast) throws InterpretException {
+    return switch (ast) {
+      case IntoRValueExprAst intoRValue -> compileLValueRead(intoRValue.getLValue());
+      case IntLiteralExprAst intLiteral -> compileIntLiteral(intLiteral);
+      case AssignmentExprAst assignment -> compileAssignment(assignment);
+      case CallExprAst call -> compileCall(call);
+      case AddExprAst add -> compileAdd(add);
+      case SubExprAst sub -> compileSub(sub);
+      case MulExprAst mul -> compileMul(mul);
+      case DivExprAst div -> compileDiv(div);
+      case NegExprAst neg -> compileNeg(neg);
+      case LogicalAndExprAst logicalAnd -> compileLogicalAnd(logicalAnd);
+      case LogicalOrExprAst logicalOr -> compileLogicalOr(logicalOr);
+      case TernaryExprAst ternary -> compileTernary(ternary);
+    };
+  }
+
+  private IntClosure compileLValueRead(LValueExprAst ast) {
+    return switch (ast) {
+      case VarExprAst var -> compileVarRead(var);
+    };
+  }
+
+  private IntClosure compileVarRead(VarExprAst var) {
+    var slot = var.getDecl().getSlot();
+
+    if (!var.isCheckInitialized()) {
+      return (frame, budget) -> frame[slot];
+    }
+
+    var initSlot = var.getDecl().getInitSlot();
+    return (frame, budget) -> {
+      if (frame[initSlot] == 0) throw new InterpretException("uninitialized variable");
+      return frame[slot];
+    };
+  }
+
+  private IntClosure compileIntLiteral(IntLiteralExprAst intLiteral) {
+    var value = intLiteral.getValue();
+    return (frame, budget) -> value;
+  }
+
+  private IntClosure compileAssignment(AssignmentExprAst assignment) throws InterpretException {
+    var rhs = compileExpr(assignment.getRhs());
+
+    return switch (assignment.getLhs()) {
+      case VarExprAst var -> {
+        var slot = var.getDecl().getSlot();
+        var initSlot = var.getDecl().getInitSlot();
+
+        if (initSlot < 0) {
+          yield (frame, budget) -> frame[slot] = rhs.eval(frame, budget);
+        }
+
+        // An assignment before the variable's declaration fails before its value is evaluated
+        if (var.isCheckInitialized()) {
+          yield (frame, budget) -> {
+            if (frame[initSlot] == 0) throw new InterpretException("uninitialized variable");
+            var value = rhs.eval(frame, budget);
+            return frame[slot] = value;
+          };
+        }
+
+        yield (frame, budget) -> {
+          var value = rhs.eval(frame, budget);
+          frame[initSlot] = 1;
+          return frame[slot] = value;
+        };
+      }
+    };
+  }
+
+  private IntClosure compileCall(CallExprAst call) throws InterpretException {
+    var decl = call.getFunctionDecl();
+    var callee = linker.apply(decl);
+
+    if (decl.getParams().size() != call.getArgs().size()) {
+      throw new InterpretException("wrong number of arguments for " + decl.getName().getContent());
+    }
+
+    var frameSize = decl.getFrameSize();
+    var args = new IntClosure[call.getArgs().size()];
+    for (var i = 0; i < args.length; i++) {
+      args[i] = compileExpr(call.getArgs().get(i));
+    }
+
+    if (isForkable(call.getArgs())) {
+      return compileForkedCall(callee, frameSize, args, call.getArgs());
+    }
+
+    // Small arities are by far the most common, so they get closures without a loop
+    return switch (args.length) {
+      case 0 -> (frame, budget) -> callee.call(new int[frameSize], budget);
+      case 1 -> {
+        var arg0 = args[0];
+        yield (frame, budget) -> {
+          var calleeFrame = new int[frameSize];
+          calleeFrame[0] = arg0.eval(frame, budget);
+          return callee.call(calleeFrame, budget);
+        };
+      }
+      case 2 -> {
+        var arg0 = args[0];
+        var arg1 = args[1];
+        yield (frame, budget) -> {
+          var calleeFrame = new int[frameSize];
+          calleeFrame[0] = arg0.eval(frame, budget);
+          calleeFrame[1] = arg1.eval(frame, budget);
+          return callee.call(calleeFrame, budget);
+        };
+      }
+      default ->
+          (frame, budget) -> {
+            var calleeFrame = new int[frameSize];
+            for (var i = 0; i < args.length; i++) {
+              calleeFrame[i] = args[i].eval(frame, budget);
+            }
+
+            return callee.call(calleeFrame, budget);
+          };
+    };
+  }
+
+  /**
+   * Evaluates the arguments that contain calls concurrently with each other, and everything else on
+   * the current thread.
+   */
+  private IntClosure compileForkedCall(
+      CallTarget callee, int frameSize, IntClosure[] args, List<RValueExprAst> argAsts) {
+    var expensive = new boolean[args.length];
+    for (var i = 0; i < args.length; i++) {
+      expensive[i] = isExpensive(argAsts.get(i));
+    }
+
+    return (frame, budget) -> {
+      var calleeFrame = new int[frameSize];
+
+      if (!ForkedEval.worthForking()) {
+        for (var i = 0; i < args.length; i++) calleeFrame[i] = args[i].eval(frame, budget);
+        return callee.call(calleeFrame, budget);
+      }
+
+      // The last expensive argument is evaluated on this thread while the others run elsewhere
+      var tasks = new ForkedEval[args.length];
+      var last = -1;
+      for (var i = 0; i < args.length; i++) {
+        if (!expensive[i]) continue;
+        if (last >= 0) {
+          tasks[last] = (ForkedEval) new ForkedEval(args[last], frame, budget.split()).fork();
+        }
+        last = i;
+      }
+
+      // Arguments are pure, so the first one to fail in source order is the error that evaluating
+      // them one at a time would have reported, whichever thread happens to notice first
+      var failedAt = args.length;
+      InterpretException failure = null;
+
+      try {
+        for (var i = 0; i < args.length; i++) {
+          if (tasks[i] != null) continue;
+
+          try {
+            calleeFrame[i] = args[i].eval(frame, budget);
+          } catch (InterpretException e) {
+            failure = e;
+            failedAt = i;
+            break;
+          }
+        }
+
+        for (var i = 0; i < failedAt; i++) {
+          if (tasks[i] == null) continue;
+
+          try {
+            calleeFrame[i] = tasks[i].joinInt();
+          } catch (InterpretException e) {
+            failure = e;
+            failedAt = i;
+          }
+        }
+      } finally {
+        // Nothing may still be using the caller's frame once this returns, even after a failure
+        for (var task : tasks) {
+          if (task != null) task.quietlyJoin();
+        }
+      }
+
+      if (failure != null) throw failure;
+
+      return callee.call(calleeFrame, budget);
+    };
+  }
+
+  /**
+   * Whether it is worth evaluating some expressions concurrently, which requires more than one of
+   * them to be expensive and none of them to have side effects.
+   */
+  boolean isForkable(List<RValueExprAst> asts) {
+    if (!parallel) return false;
+
+    var expensiveCount = 0;
+    for (var ast : asts) {
+      if (isExpensive(ast)) expensiveCount++;
+      if (containsAssignment(ast)) return false;
+    }
+
+    return expensiveCount >= 2;
+  }
+
+  private static boolean isExpensive(RValueExprAst ast) {
+    return ast instanceof CallExprAst || ast.findDescendant(CallExprAst.class) != null;
+  }
+
+  private static boolean containsAssignment(RValueExprAst ast) {
+    return ast instanceof AssignmentExprAst
+        || ast.findDescendant(AssignmentExprAst.class) != null;
+  }
+
+  /** Evaluates the right-hand side on another thread while the left is evaluated on this one. */
+  private IntClosure compileForkedBinary(
+      RValueExprAst lhsAst, RValueExprAst rhsAst, IntBinaryOperator operator)
+      throws InterpretException {
+    var lhs = compileExpr(lhsAst);
+    var rhs = compileExpr(rhsAst);
+
+    return (frame, budget) -> {
+      if (!ForkedEval.worthForking()) {
+        return operator.applyAsInt(lhs.eval(frame, budget), rhs.eval(frame, budget));
+      }
+
+      var task = new ForkedEval(rhs, frame, budget.split());
+      task.fork();
+
+      int lhsValue;
+      try {
+        lhsValue = lhs.eval(frame, budget);
+      } catch (Throwable e) {
+        // The left-hand side comes first, so its error wins, but the right must not outlive this
+        task.quietlyJoin();
+        throw e;
+      }
+
+      return operator.applyAsInt(lhsValue, task.joinInt());
+    };
+  }
+
+  private IntClosure compileAdd(AddExprAst add) throws InterpretException {
+    if (isForkable(List.of(add.getLhs(), add.getRhs()))) {
+      return compileForkedBinary(add.getLhs(), add.getRhs(), Integer::sum);
+    }
+
+    var lhs = compileExpr(add.getLhs());
+
+    // Adding a constant is common enough (e.g. n - 1 or i + 1) to be worth specializing
+    if (add.getRhs() instanceof IntLiteralExprAst literal) {
+      var value = literal.getValue();
+      return (frame, budget) -> lhs.eval(frame, budget) + value;
+    }
+
+    var rhs = compileExpr(add.getRhs());
+    return (frame, budget) -> lhs.eval(frame, budget) + rhs.eval(frame, budget);
+  }
+
+  private IntClosure compileSub(SubExprAst sub) throws InterpretException {
+    if (isForkable(List.of(sub.getLhs(), sub.getRhs()))) {
+      return compileForkedBinary(sub.getLhs(), sub.getRhs(), (lhs, rhs) -> lhs - rhs);
+    }
+
+    var lhs = compileExpr(sub.getLhs());
+
+    if (sub.getRhs() instanceof IntLiteralExprAst literal) {
+      var value = literal.getValue();
+      return (frame, budget) -> lhs.eval(frame, budget) - value;
+    }
+
+    var rhs = compileExpr(sub.getRhs());
+    return (frame, budget) -> lhs.eval(frame, budget) - rhs.eval(frame, budget);
+  }
+
+  private IntClosure compileMul(MulExprAst mul) throws InterpretException {
+    if (isForkable(List.of(mul.getLhs(), mul.getRhs()))) {
+      return compileForkedBinary(mul.getLhs(), mul.getRhs(), (lhs, rhs) -> lhs * rhs);
+    }
+
+    var lhs = compileExpr(mul.getLhs());
+    var rhs = compileExpr(mul.getRhs());
+    return (frame, budget) -> lhs.eval(frame, budget) * rhs.eval(frame, budget);
+  }
+
+  private IntClosure compileDiv(DivExprAst div) throws InterpretException {
+    var lhs = compileExpr(div.getLhs());
+    var rhs = compileExpr(div.getRhs());
+
+    return (frame, budget) -> {
+      var dividend = lhs.eval(frame, budget);
+      var divisor = rhs.eval(frame, budget);
+      if (divisor == 0) throw new InterpretException("division by zero");
+      return dividend / divisor;
+    };
+  }
+
+  private IntClosure compileNeg(NegExprAst neg) throws InterpretException {
+    var expr = compileExpr(neg.getExpr());
+    return (frame, budget) -> -expr.eval(frame, budget);
+  }
+
+  private IntClosure compileLogicalAnd(LogicalAndExprAst logicalAnd) throws InterpretException {
+    var lhs = compileExpr(logicalAnd.getLhs());
+    var rhs = compileExpr(logicalAnd.getRhs());
+
+    return (frame, budget) -> {
+      var value = lhs.eval(frame, budget);
+      return value == 0 ? value : rhs.eval(frame, budget);
+    };
+  }
+
+  private IntClosure compileLogicalOr(LogicalOrExprAst logicalOr) throws InterpretException {
+    var lhs = compileExpr(logicalOr.getLhs());
+    var rhs = compileExpr(logicalOr.getRhs());
+
+    return (frame, budget) -> {
+      var value = lhs.eval(frame, budget);
+      return value != 0 ? value : rhs.eval(frame, budget);
+    };
+  }
+
+  private IntClosure compileTernary(TernaryExprAst ternary) throws InterpretException {
+    var condition = compileExpr(ternary.getCondition());
+    var trueCase = compileExpr(ternary.getTrueCase());
+    var falseCase = compileExpr(ternary.getFalseCase());
+    return (frame, budget) ->
+        condition.eval(frame, budget) != 0
+            ? trueCase.eval(frame, budget)
+            : falseCase.eval(frame, budget);
+  }
+}
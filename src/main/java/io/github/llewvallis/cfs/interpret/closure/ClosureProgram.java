@@ -0,0 +1,94 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.ExecutionEngine;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/** A program produced by a {@link ClosureCompiler}, ready to be run. */
+public class ClosureProgram implements ExecutionEngine {
+
+  private final Map<String, CompiledFunction> functions;
+
+  /** The pool that parallel programs are run in, or null if the program is sequential. */
+  private final ForkJoinPool pool;
+
+  private final ExecutionLimits defaultLimits;
+
+  ClosureProgram(
+      Map<String, CompiledFunction> functions, ForkJoinPool pool, ExecutionLimits defaultLimits) {
+    this.functions = functions;
+    this.pool = pool;
+    this.defaultLimits = defaultLimits;
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, defaultLimits);
+  }
+
+  /**
+   * Runs a function within the given limits. Limits are checked when calls start, so a run may
+   * overshoot its timeout by a few thousand calls, like an interpreted one. In parallel, every
+   * thread draws from the same fuel, and the depth is counted along each path through the calls.
+   */
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    var budget = pool == null ? new ExecutionBudget(limits) : ExecutionBudget.shared(limits);
+    return run(name, args, budget);
+  }
+
+  private RValue run(String name, List<RValue> args, ExecutionBudget budget)
+      throws InterpretException {
+    var function = functions.get(name);
+    if (function == null) {
+      throw new InterpretException("no function called " + name);
+    }
+
+    if (function.getParamCount() != args.size()) {
+      throw new InterpretException("wrong number of arguments for " + name);
+    }
+
+    var frame = new int[function.getFrameSize()];
+    for (var i = 0; i < args.size(); i++) {
+      frame[i] = args.get(i).castToInt().getValue();
+    }
+
+    try {
+      if (pool == null) {
+        return new IntValue(function.call(frame, budget));
+      }
+
+      var task = new ForkedEval(function::call, frame, budget);
+      pool.execute(task);
+      awaitInterruptibly(task, budget);
+      return new IntValue(task.joinInt());
+    } catch (StackOverflowError e) {
+      // Closures call each other directly, so deep recursion runs out of the thread's own stack
+      throw new InterpretException("stack overflow");
+    }
+  }
+
+  /**
+   * Waits for a run in the pool to finish, or for this thread to be interrupted. Joining a task
+   * ignores interrupts, and the pool's threads can't see this one's, so an interrupt is passed on
+   * to them through the budget instead. The run then stops soon after.
+   */
+  private static void awaitInterruptibly(ForkedEval task, ExecutionBudget budget) {
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      budget.interrupt();
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // Rethrown when the task is joined
+    }
+  }
+}
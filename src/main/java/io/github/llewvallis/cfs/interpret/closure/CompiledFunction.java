@@ -0,0 +1,36 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import io.github.llewvallis.cfs.interpret.CallTarget;
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import lombok.Getter;
+
+/**
+ * A function converted into closures. Functions are created before any of their bodies are
+ * compiled, so that calls can link directly to their callee even when functions are recursive.
+ */
+class CompiledFunction implements CallTarget {
+
+  @Getter private final String name;
+
+  @Getter private final int paramCount;
+
+  @Getter private final int frameSize;
+
+  private CallTarget body;
+
+  CompiledFunction(String name, int paramCount, int frameSize) {
+    this.name = name;
+    this.paramCount = paramCount;
+    this.frameSize = frameSize;
+  }
+
+  void setBody(CallTarget body) {
+    this.body = body;
+  }
+
+  @Override
+  public int call(int[] frame, ExecutionBudget budget) throws InterpretException {
+    return body.call(frame, budget);
+  }
+}
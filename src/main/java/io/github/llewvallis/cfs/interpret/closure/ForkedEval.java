@@ -0,0 +1,56 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a closure as a fork-join task. The result is kept as an unboxed {@code int}, and an
+ * {@link InterpretException} is rethrown by {@link #joinInt()} rather than being wrapped.
+ */
+class ForkedEval extends RecursiveAction {
+
+  /**
+   * Forking stops while a worker already has this many more tasks queued than it is likely to be
+   * able to give away. This adapts to the shape of the program far better than any fixed depth.
+   */
+  private static final int MAX_SURPLUS_TASKS = 2;
+
+  private final IntClosure closure;
+
+  private final int[] frame;
+
+  private final ExecutionBudget budget;
+
+  private int result;
+
+  private InterpretException exception;
+
+  ForkedEval(IntClosure closure, int[] frame, ExecutionBudget budget) {
+    this.closure = closure;
+    this.frame = frame;
+    this.budget = budget;
+  }
+
+  /** Whether there are idle workers that forking more work could keep busy. */
+  static boolean worthForking() {
+    return ForkJoinTask.inForkJoinPool()
+        && ForkJoinTask.getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS;
+  }
+
+  @Override
+  protected void compute() {
+    try {
+      result = closure.eval(frame, budget);
+    } catch (InterpretException e) {
+      exception = e;
+    }
+  }
+
+  int joinInt() throws InterpretException {
+    join();
+    if (exception != null) throw exception;
+    return result;
+  }
+}
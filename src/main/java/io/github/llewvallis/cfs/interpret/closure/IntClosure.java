@@ -0,0 +1,14 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+
+/**
+ * A compiled piece of a function, evaluated against the frame of the current call. The budget of
+ * the run is passed along to any calls it makes.
+ */
+@FunctionalInterface
+interface IntClosure {
+
+  int eval(int[] frame, ExecutionBudget budget) throws InterpretException;
+}
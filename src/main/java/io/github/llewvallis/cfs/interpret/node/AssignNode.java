@@ -0,0 +1,44 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+
+class AssignNode extends UnaryNode {
+
+  private final int slot;
+
+  /** The variable's initialization flag, or -1 if it does not have one. */
+  private final int initSlot;
+
+  AssignNode(int slot, int initSlot, Node value) {
+    super(value);
+    this.slot = slot;
+    this.initSlot = initSlot;
+  }
+
+  @Override
+  public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+    var value = operand.execute(frame, budget);
+    if (initSlot >= 0) frame[initSlot] = 1;
+    return frame[slot] = value;
+  }
+
+  /** Assigns a variable whose declaration might not have run yet, which fails. */
+  static class Checked extends UnaryNode {
+
+    private final int slot;
+    private final int initSlot;
+
+    Checked(int slot, int initSlot, Node value) {
+      super(value);
+      this.slot = slot;
+      this.initSlot = initSlot;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      if (frame[initSlot] == 0) throw new InterpretException("uninitialized variable");
+      return frame[slot] = operand.execute(frame, budget);
+    }
+  }
+}
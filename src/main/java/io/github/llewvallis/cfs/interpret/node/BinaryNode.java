@@ -0,0 +1,31 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import java.util.List;
+
+/** A node with two operands, which are evaluated from left to right. */
+abstract class BinaryNode extends Node {
+
+  protected Node lhs;
+  protected Node rhs;
+
+  protected BinaryNode(Node lhs, Node rhs) {
+    this.lhs = adopt(lhs);
+    this.rhs = adopt(rhs);
+  }
+
+  @Override
+  public List<Node> getChildren() {
+    return List.of(lhs, rhs);
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    if (child == lhs) {
+      lhs = replacement;
+    } else if (child == rhs) {
+      rhs = replacement;
+    } else {
+      super.replaceChild(child, replacement);
+    }
+  }
+}
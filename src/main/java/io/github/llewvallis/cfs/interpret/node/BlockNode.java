@@ -0,0 +1,75 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A function body: some statements run for their effects, followed by the returned value. */
+class BlockNode extends Node {
+
+  private final Node[] effects;
+
+  private Node result;
+
+  BlockNode(Node[] effects, Node result) {
+    this.effects = effects;
+    this.result = adopt(result);
+    for (var effect : effects) adopt(effect);
+  }
+
+  @Override
+  public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+    for (var effect : effects) effect.execute(frame, budget);
+    return result.execute(frame, budget);
+  }
+
+  @Override
+  public List<Node> getChildren() {
+    var children = new ArrayList<>(Arrays.asList(effects));
+    children.add(result);
+    return children;
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    if (child == result) {
+      result = replacement;
+      return;
+    }
+
+    for (var i = 0; i < effects.length; i++) {
+      if (effects[i] == child) {
+        effects[i] = replacement;
+        return;
+      }
+    }
+
+    super.replaceChild(child, replacement);
+  }
+
+  /** Clears a variable's initialization flag when its declaration is reached. */
+  static class ResetFlag extends Node {
+
+    private final int initSlot;
+
+    ResetFlag(int initSlot) {
+      this.initSlot = initSlot;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) {
+      return frame[initSlot] = 0;
+    }
+  }
+
+  /** Stands in for the result of a function that can end without returning. */
+  static class NoReturn extends Node {
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      throw new InterpretException("function did not return");
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The states a call moves through. On its first execution, an {@link Uninitialized} call either
+ * inlines a copy of its callee's body, if the callee is tiny, or links directly to it.
+ */
+abstract class CallNode extends Node {
+
+  protected final Node[] args;
+
+  protected CallNode(Node[] args) {
+    this.args = args;
+    for (var arg : args) adopt(arg);
+  }
+
+  @Override
+  public List<Node> getChildren() {
+    return Arrays.asList(args);
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    for (var i = 0; i < args.length; i++) {
+      if (args[i] == child) {
+        args[i] = replacement;
+        return;
+      }
+    }
+
+    super.replaceChild(child, replacement);
+  }
+
+  /** Evaluates the arguments into a fresh frame for the callee. */
+  protected final int[] calleeFrame(int[] frame, ExecutionBudget budget, int frameSize)
+      throws InterpretException {
+    var calleeFrame = new int[frameSize];
+    for (var i = 0; i < args.length; i++) calleeFrame[i] = args[i].execute(frame, budget);
+    return calleeFrame;
+  }
+
+  static class Uninitialized extends CallNode {
+
+    private final FunctionNode callee;
+
+    private final NodeBuilder builder;
+
+    Uninitialized(FunctionNode callee, Node[] args, NodeBuilder builder) {
+      super(args);
+      this.callee = callee;
+      this.builder = builder;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      var ast = callee.getAst();
+
+      CallNode replacement;
+      if (NodeBuilder.isInlinable(ast)) {
+        var body = builder.buildBody(ast.getBody());
+        replacement = new Inlined(callee.getName(), args, body, ast.getFrameSize());
+      } else {
+        replacement = new Direct(callee, args);
+      }
+
+      return replace(replacement).execute(frame, budget);
+    }
+  }
+
+  static class Direct extends CallNode {
+
+    private final FunctionNode callee;
+
+    Direct(FunctionNode callee, Node[] args) {
+      super(args);
+      this.callee = callee;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return callee.execute(calleeFrame(frame, budget, callee.getFrameSize()), budget);
+    }
+
+    @Override
+    public String toString() {
+      return "Direct(" + callee.getName() + ")";
+    }
+  }
+
+  /**
+   * A call from a function to itself whose value is returned directly. Rather than calling the
+   * function again, this replaces the arguments and sets the restart flag checked by {@link
+   * FunctionNode}. The value it returns is never used.
+   */
+  static class SelfTail extends CallNode {
+
+    private final int tailCallSlot;
+
+    SelfTail(Node[] args, int tailCallSlot) {
+      super(args);
+      this.tailCallSlot = tailCallSlot;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      // The arguments may read the current parameters, so they are all evaluated before any of
+      // them is overwritten
+      var values = new int[args.length];
+      for (var i = 0; i < args.length; i++) values[i] = args[i].execute(frame, budget);
+      System.arraycopy(values, 0, frame, 0, values.length);
+
+      return frame[tailCallSlot] = 1;
+    }
+  }
+
+  /**
+   * A call with its own copy of the callee's body. Besides skipping the call itself, the copy
+   * specializes to how this particular call site uses the callee.
+   */
+  static class Inlined extends CallNode {
+
+    private final String name;
+
+    private Node body;
+
+    private final int frameSize;
+
+    Inlined(String name, Node[] args, Node body, int frameSize) {
+      super(args);
+      this.name = name;
+      this.body = adopt(body);
+      this.frameSize = frameSize;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      // Inlining removes the call, but not what it costs the budget
+      var calleeFrame = calleeFrame(frame, budget, frameSize);
+      budget.enter();
+      var result = body.execute(calleeFrame, budget);
+      budget.exit();
+      return result;
+    }
+
+    @Override
+    public List<Node> getChildren() {
+      var children = new ArrayList<>(super.getChildren());
+      children.add(body);
+      return children;
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+      if (child == body) {
+        body = replacement;
+      } else {
+        super.replaceChild(child, replacement);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Inlined(" + name + ")";
+    }
+  }
+}
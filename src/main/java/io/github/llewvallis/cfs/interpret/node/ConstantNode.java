@@ -0,0 +1,19 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+
+import lombok.Getter;
+
+class ConstantNode extends Node {
+
+  @Getter private final int value;
+
+  ConstantNode(int value) {
+    this.value = value;
+  }
+
+  @Override
+  public int execute(int[] frame, ExecutionBudget budget) {
+    return value;
+  }
+}
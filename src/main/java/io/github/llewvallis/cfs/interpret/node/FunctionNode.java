@@ -0,0 +1,86 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+
+/** The root of a function's tree. Its body is built lazily, the first time it is called. */
+public class FunctionNode extends Node {
+
+  @Getter private final FunctionAst ast;
+
+  @Getter private final String name;
+
+  @Getter private final int frameSize;
+
+  private final NodeBuilder builder;
+
+  private Node body;
+
+  FunctionNode(FunctionAst ast, NodeBuilder builder) {
+    this.ast = ast;
+    this.name = ast.getName().getContent();
+    this.frameSize = ast.getFrameSize();
+    this.builder = builder;
+  }
+
+  /**
+   * Runs the function in a frame whose parameter slots have already been filled in, charging the
+   * budget for the call and for each self tail call.
+   */
+  @Override
+  public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+    if (body == null) {
+      body = adopt(builder.buildBody(ast.getBody()));
+    }
+
+    budget.enter();
+
+    var tailCallSlot = ast.getTailCallSlot();
+    while (true) {
+      var result = body.execute(frame, budget);
+
+      if (tailCallSlot < 0 || frame[tailCallSlot] == 0) {
+        budget.exit();
+        return result;
+      }
+
+      Arrays.fill(frame, ast.getParams().size(), frameSize, 0);
+      budget.startBody();
+    }
+  }
+
+  @Override
+  public List<Node> getChildren() {
+    return body == null ? List.of() : List.of(body);
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    if (child == body) {
+      body = replacement;
+    } else {
+      super.replaceChild(child, replacement);
+    }
+  }
+
+  /** Prints the current state of the tree, one node per line, for debugging. */
+  public String dump() {
+    var builder = new StringBuilder();
+    dump(this, 0, builder);
+    return builder.toString();
+  }
+
+  private static void dump(Node node, int depth, StringBuilder builder) {
+    builder.append("  ".repeat(depth)).append(node).append('\n');
+    for (var child : node.getChildren()) dump(child, depth + 1, builder);
+  }
+
+  @Override
+  public String toString() {
+    return "Function(" + name + ")";
+  }
+}
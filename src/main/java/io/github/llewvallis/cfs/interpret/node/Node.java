@@ -0,0 +1,60 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.List;
+
+/**
+ * A node in an executable tree. Unlike the AST, nodes may replace themselves with a more
+ * specialized node based on what they see while the program runs, so the tree gradually adapts to
+ * how the program actually behaves.
+ *
+ * <p>Nodes are not thread-safe, since any execution may rewrite the tree.
+ */
+public abstract class Node {
+
+  private Node parent;
+
+  /** The node that took this one's place in the tree, or null if it is still there. */
+  private Node replacedBy;
+
+  public abstract int execute(int[] frame, ExecutionBudget budget) throws InterpretException;
+
+  public List<Node> getChildren() {
+    return List.of();
+  }
+
+  /** Substitutes a new node in place of one of this node's children. */
+  protected void replaceChild(Node child, Node replacement) {
+    throw new IllegalArgumentException(child + " is not a child of " + this);
+  }
+
+  /** Marks this node as the parent of a child, and returns the child. */
+  protected final <T extends Node> T adopt(T child) {
+    ((Node) child).parent = this;
+    return child;
+  }
+
+  /** Replaces this node in its parent, and returns the replacement. */
+  protected final <T extends Node> T replace(T replacement) {
+    parent.replaceChild(this, replacement);
+    replacedBy = replacement;
+    return parent.adopt(replacement);
+  }
+
+  /**
+   * The node now in this one's place, which is this node unless it has been replaced. A node that
+   * rewrites itself after running a child must check this first, since the child may have recursed
+   * back into the same node and already replaced it.
+   */
+  protected final Node current() {
+    var node = this;
+    while (node.replacedBy != null) node = node.replacedBy;
+    return node;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,153 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Builds the initial, unspecialized node tree for a function body.
+ *
+ * <p>Adding or subtracting a literal is specialized immediately, since the literal cannot change at
+ * runtime. Everything that depends on runtime behaviour starts out in an uninitialized state and is
+ * specialized by the nodes themselves.
+ */
+class NodeBuilder {
+
+  /** Functions whose body has at most this many AST nodes may be inlined. */
+  private static final int INLINE_SIZE_LIMIT = 16;
+
+  private final Map<FunctionAst, FunctionNode> functions;
+
+  NodeBuilder(Map<FunctionAst, FunctionNode> functions) {
+    this.functions = functions;
+  }
+
+  /**
+   * Whether a function is small enough to inline. Such a function must consist of a single return
+   * statement containing no calls, which also rules out inlining anything recursively.
+   */
+  static boolean isInlinable(FunctionAst ast) {
+    var stmts = ast.getBody().getStmts();
+    return stmts.size() == 1
+        && stmts.get(0) instanceof ReturnStmtAst returnStmt
+        && returnStmt.getValue().findDescendant(CallExprAst.class) == null
+        && size(returnStmt.getValue()) <= INLINE_SIZE_LIMIT;
+  }
+
+  private static int size(Ast ast) {
+    var size = 1;
+    for (var child : ast.getChildren()) size += size(child);
+    return size;
+  }
+
+  Node buildBody(BlockAst ast) {
+    var effects = new ArrayList<Node>();
+    Node result = null;
+
+    for (var stmt : ast.getStmts()) {
+      switch (stmt) {
+        case VarDeclStmtAst varDecl -> {
+          var initSlot = varDecl.getDecl().getInitSlot();
+          if (initSlot >= 0) effects.add(new BlockNode.ResetFlag(initSlot));
+        }
+        case ReturnStmtAst returnStmt -> result = buildTailExpr(returnStmt.getValue());
+        case ExprStmtAst exprStmt -> effects.add(buildExpr(exprStmt.getExpr()));
+      }
+
+      // Anything after a return statement can never run
+      if (result != null) break;
+    }
+
+    if (result == null) result = new BlockNode.NoReturn();
+    if (effects.isEmpty()) return result;
+
+    return new BlockNode(effects.toArray(Node[]::new), result);
+  }
+
+  /** Builds an expression whose value is returned, which may contain self tail calls. */
+  private Node buildTailExpr(RValueExprAst ast) {
+    return switch (ast) {
+      case CallExprAst call when call.isTailCall() ->
+          new CallNode.SelfTail(buildArgs(call), call.getFunctionDecl().getTailCallSlot());
+      case TernaryExprAst ternary ->
+          new TernaryNode.Uninitialized(
+              buildExpr(ternary.getCondition()),
+              buildTailExpr(ternary.getTrueCase()),
+              buildTailExpr(ternary.getFalseCase()));
+      case LogicalAndExprAst logicalAnd ->
+          new OperatorNode.LogicalAnd(
+              buildExpr(logicalAnd.getLhs()), buildTailExpr(logicalAnd.getRhs()));
+      case LogicalOrExprAst logicalOr ->
+          new OperatorNode.LogicalOr(
+              buildExpr(logicalOr.getLhs()), buildTailExpr(logicalOr.getRhs()));
+      default -> buildExpr(ast);
+    };
+  }
+
+  private Node buildExpr(RValueExprAst ast) {
+    return switch (ast) {
+      case IntoRValueExprAst intoRValue -> buildLValueRead(intoRValue.getLValue());
+      case IntLiteralExprAst intLiteral -> new ConstantNode(intLiteral.getValue());
+      case AssignmentExprAst assignment -> buildAssignment(assignment);
+      case CallExprAst call -> buildCall(call);
+      case AddExprAst add ->
+          add.getRhs() instanceof IntLiteralExprAst literal
+              ? new OperatorNode.AddConstant(buildExpr(add.getLhs()), literal.getValue())
+              : new OperatorNode.Add(buildExpr(add.getLhs()), buildExpr(add.getRhs()));
+      case SubExprAst sub ->
+          sub.getRhs() instanceof IntLiteralExprAst literal
+              ? new OperatorNode.AddConstant(buildExpr(sub.getLhs()), -literal.getValue())
+              : new OperatorNode.Sub(buildExpr(sub.getLhs()), buildExpr(sub.getRhs()));
+      case MulExprAst mul -> new OperatorNode.Mul(buildExpr(mul.getLhs()), buildExpr(mul.getRhs()));
+      case DivExprAst div -> new OperatorNode.Div(buildExpr(div.getLhs()), buildExpr(div.getRhs()));
+      case NegExprAst neg -> new OperatorNode.Neg(buildExpr(neg.getExpr()));
+      case LogicalAndExprAst logicalAnd ->
+          new OperatorNode.LogicalAnd(
+              buildExpr(logicalAnd.getLhs()), buildExpr(logicalAnd.getRhs()));
+      case LogicalOrExprAst logicalOr ->
+          new OperatorNode.LogicalOr(buildExpr(logicalOr.getLhs()), buildExpr(logicalOr.getRhs()));
+      case TernaryExprAst ternary ->
+          new TernaryNode.Uninitialized(
+              buildExpr(ternary.getCondition()),
+              buildExpr(ternary.getTrueCase()),
+              buildExpr(ternary.getFalseCase()));
+    };
+  }
+
+  private Node buildLValueRead(LValueExprAst ast) {
+    return switch (ast) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        yield var.isCheckInitialized()
+            ? new ReadVarNode.Checked(decl.getSlot(), decl.getInitSlot())
+            : new ReadVarNode(decl.getSlot());
+      }
+    };
+  }
+
+  private Node buildAssignment(AssignmentExprAst assignment) {
+    return switch (assignment.getLhs()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        var value = buildExpr(assignment.getRhs());
+        yield var.isCheckInitialized()
+            ? new AssignNode.Checked(decl.getSlot(), decl.getInitSlot(), value)
+            : new AssignNode(decl.getSlot(), decl.getInitSlot(), value);
+      }
+    };
+  }
+
+  private Node buildCall(CallExprAst call) {
+    return new CallNode.Uninitialized(functions.get(call.getFunctionDecl()), buildArgs(call), this);
+  }
+
+  private Node[] buildArgs(CallExprAst call) {
+    var args = new Node[call.getArgs().size()];
+    for (var i = 0; i < args.length; i++) {
+      args[i] = buildExpr(call.getArgs().get(i));
+    }
+
+    return args;
+  }
+}
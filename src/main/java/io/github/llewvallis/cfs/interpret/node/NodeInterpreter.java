@@ -0,0 +1,80 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.ast.FunctionAst;
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.ExecutionEngine;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a program as a tree of self-specializing {@link Node}s. The tree for each function is built
+ * from its AST on the first call, and rewrites itself as it runs, so that frequently executed code
+ * ends up with nodes that only handle what actually happens. The JVM's JIT can then compile each
+ * node's {@code execute} method to much tighter code than a generic tree-walker gets.
+ */
+public class NodeInterpreter implements ExecutionEngine {
+
+  private final Map<String, FunctionNode> functions = new HashMap<>();
+
+  private final ExecutionLimits defaultLimits;
+
+  public NodeInterpreter(ProgramAst ast) {
+    this(ast, ExecutionLimits.DEFAULT);
+  }
+
+  /** Creates an interpreter whose runs use {@code defaultLimits} unless they give their own. */
+  public NodeInterpreter(ProgramAst ast, ExecutionLimits defaultLimits) {
+    this.defaultLimits = defaultLimits;
+
+    var byAst = new IdentityHashMap<FunctionAst, FunctionNode>();
+    var builder = new NodeBuilder(byAst);
+
+    for (var function : ast.getFunctions()) {
+      var node = new FunctionNode(function, builder);
+      byAst.put(function, node);
+      functions.put(node.getName(), node);
+    }
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, defaultLimits);
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    var function = getFunction(name);
+    if (function.getAst().getParams().size() != args.size()) {
+      throw new InterpretException("wrong number of arguments for " + name);
+    }
+
+    var frame = new int[function.getFrameSize()];
+    for (var i = 0; i < args.size(); i++) {
+      frame[i] = args.get(i).castToInt().getValue();
+    }
+
+    try {
+      return new IntValue(function.execute(frame, new ExecutionBudget(limits)));
+    } catch (StackOverflowError e) {
+      // Nodes execute each other recursively, so deep recursion runs out of the thread's own stack
+      throw new InterpretException("stack overflow");
+    }
+  }
+
+  public FunctionNode getFunction(String name) throws InterpretException {
+    var function = functions.get(name);
+    if (function == null) {
+      throw new InterpretException("no function called " + name);
+    }
+
+    return function;
+  }
+}
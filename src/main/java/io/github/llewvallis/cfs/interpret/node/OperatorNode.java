@@ -0,0 +1,120 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+
+/** Nodes for the arithmetic and logical operators. */
+final class OperatorNode {
+
+  private OperatorNode() {}
+
+  static class Add extends BinaryNode {
+
+    Add(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return lhs.execute(frame, budget) + rhs.execute(frame, budget);
+    }
+  }
+
+  /** Adds a constant, which also covers subtracting one. */
+  static class AddConstant extends UnaryNode {
+
+    private final int value;
+
+    AddConstant(Node operand, int value) {
+      super(operand);
+      this.value = value;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return operand.execute(frame, budget) + value;
+    }
+
+    @Override
+    public String toString() {
+      return "AddConstant(" + value + ")";
+    }
+  }
+
+  static class Sub extends BinaryNode {
+
+    Sub(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return lhs.execute(frame, budget) - rhs.execute(frame, budget);
+    }
+  }
+
+  static class Mul extends BinaryNode {
+
+    Mul(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return lhs.execute(frame, budget) * rhs.execute(frame, budget);
+    }
+  }
+
+  static class Div extends BinaryNode {
+
+    Div(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      var dividend = lhs.execute(frame, budget);
+      var divisor = rhs.execute(frame, budget);
+      if (divisor == 0) throw new InterpretException("division by zero");
+      return dividend / divisor;
+    }
+  }
+
+  static class Neg extends UnaryNode {
+
+    Neg(Node operand) {
+      super(operand);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      return -operand.execute(frame, budget);
+    }
+  }
+
+  static class LogicalAnd extends BinaryNode {
+
+    LogicalAnd(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      var value = lhs.execute(frame, budget);
+      return value == 0 ? value : rhs.execute(frame, budget);
+    }
+  }
+
+  static class LogicalOr extends BinaryNode {
+
+    LogicalOr(Node lhs, Node rhs) {
+      super(lhs, rhs);
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      var value = lhs.execute(frame, budget);
+      return value != 0 ? value : rhs.execute(frame, budget);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+
+class ReadVarNode extends Node {
+
+  private final int slot;
+
+  ReadVarNode(int slot) {
+    this.slot = slot;
+  }
+
+  @Override
+  public int execute(int[] frame, ExecutionBudget budget) {
+    return frame[slot];
+  }
+
+  /** Reads a variable that might not have been assigned yet. */
+  static class Checked extends Node {
+
+    private final int slot;
+    private final int initSlot;
+
+    Checked(int slot, int initSlot) {
+      this.slot = slot;
+      this.initSlot = initSlot;
+    }
+
+    @Override
+    public int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+      if (frame[initSlot] == 0) throw new InterpretException("uninitialized variable");
+      return frame[slot];
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.List;
+
+/**
+ * The states a ternary moves through. It starts {@link Uninitialized}, becomes a {@link
+ * SingleBranch} once it has seen a condition, and only becomes {@link Generic} if the condition
+ * ever goes the other way.
+ */
+abstract class TernaryNode extends Node {
+
+  protected Node condition;
+  protected Node trueCase;
+  protected Node falseCase;
+
+  protected TernaryNode(Node condition, Node trueCase, Node falseCase) {
+    this.condition = adopt(condition);
+    this.trueCase = adopt(trueCase);
+    this.falseCase = adopt(falseCase);
+  }
+
+  @Override
+  public final int execute(int[] frame, ExecutionBudget budget) throws InterpretException {
+    var taken = condition.execute(frame, budget) != 0;
+
+    // The condition may have called back into this ternary, which replaced it and left this node's
+    // children out of date, so whatever is in the tree now carries on instead
+    return ((TernaryNode) current()).execute(taken, frame, budget);
+  }
+
+  /** Runs the branch chosen by the condition, specializing this node if needed. */
+  protected abstract int execute(boolean taken, int[] frame, ExecutionBudget budget)
+      throws InterpretException;
+
+  @Override
+  public List<Node> getChildren() {
+    return List.of(condition, trueCase, falseCase);
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    if (child == condition) {
+      condition = replacement;
+    } else if (child == trueCase) {
+      trueCase = replacement;
+    } else if (child == falseCase) {
+      falseCase = replacement;
+    } else {
+      super.replaceChild(child, replacement);
+    }
+  }
+
+  static class Uninitialized extends TernaryNode {
+
+    Uninitialized(Node condition, Node trueCase, Node falseCase) {
+      super(condition, trueCase, falseCase);
+    }
+
+    @Override
+    protected int execute(boolean taken, int[] frame, ExecutionBudget budget)
+        throws InterpretException {
+      var replacement = replace(new SingleBranch(condition, trueCase, falseCase, taken));
+      return replacement.executeBranch(taken, frame, budget);
+    }
+  }
+
+  /** A ternary whose condition has always been the same so far. */
+  static class SingleBranch extends TernaryNode {
+
+    private final boolean expected;
+
+    SingleBranch(Node condition, Node trueCase, Node falseCase, boolean expected) {
+      super(condition, trueCase, falseCase);
+      this.expected = expected;
+    }
+
+    @Override
+    protected int execute(boolean taken, int[] frame, ExecutionBudget budget)
+        throws InterpretException {
+      if (taken == expected) {
+        return expected ? trueCase.execute(frame, budget) : falseCase.execute(frame, budget);
+      }
+
+      var replacement = replace(new Generic(condition, trueCase, falseCase));
+      return replacement.executeBranch(taken, frame, budget);
+    }
+
+    @Override
+    public String toString() {
+      return "SingleBranch(" + expected + ")";
+    }
+  }
+
+  static class Generic extends TernaryNode {
+
+    Generic(Node condition, Node trueCase, Node falseCase) {
+      super(condition, trueCase, falseCase);
+    }
+
+    @Override
+    protected int execute(boolean taken, int[] frame, ExecutionBudget budget)
+        throws InterpretException {
+      return executeBranch(taken, frame, budget);
+    }
+  }
+
+  protected final int executeBranch(boolean taken, int[] frame, ExecutionBudget budget)
+      throws InterpretException {
+    return taken ? trueCase.execute(frame, budget) : falseCase.execute(frame, budget);
+  }
+}
@@ -0,0 +1,27 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import java.util.List;
+
+/** A node with a single operand. */
+abstract class UnaryNode extends Node {
+
+  protected Node operand;
+
+  protected UnaryNode(Node operand) {
+    this.operand = adopt(operand);
+  }
+
+  @Override
+  public List<Node> getChildren() {
+    return List.of(operand);
+  }
+
+  @Override
+  protected void replaceChild(Node child, Node replacement) {
+    if (child == operand) {
+      operand = replacement;
+    } else {
+      super.replaceChild(child, replacement);
+    }
+  }
+}
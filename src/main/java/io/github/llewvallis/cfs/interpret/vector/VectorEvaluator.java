@@ -0,0 +1,315 @@
+package io.github.llewvallis.cfs.interpret.vector;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.util.Arrays;
+
+/**
+ * Evaluates a function over many rows of arguments at once. Arguments are given as columns, one
+ * {@code int[]} per parameter, and each expression is evaluated for every row before moving on to
+ * the next. The inner loops are simple enough for the JIT to compile them to SIMD instructions.
+ *
+ * <p>Ternaries and logical operators are evaluated with masks: each branch is evaluated with only
+ * the rows that take it active. Rows that are not active may compute garbage, but never assign
+ * variables, fail, or make calls. A call is made once for all the active rows, which are packed
+ * together first. This means recursive functions do work, since the rows still recursing shrink at
+ * each level, but they are not what this is designed for and each level uses the Java stack.
+ *
+ * <p>Columns are never modified once computed, and assigning a variable replaces its column. So
+ * reading a variable can share its column instead of copying it, even if it is assigned later.
+ */
+public class VectorEvaluator {
+
+  /** Rows are evaluated in chunks this size, so that every column stays in cache. */
+  private static final int CHUNK_SIZE = 1024;
+
+  /** A mask with no active rows. A null mask has every row active. */
+  private static final boolean[] NONE = new boolean[0];
+
+  private final ProgramAst ast;
+
+  public VectorEvaluator(ProgramAst ast) {
+    this.ast = ast;
+  }
+
+  /**
+   * Calls a function once per row, where {@code columns[i][row]} is the {@code i}th argument of
+   * the call for that row. If the call fails for any row, the whole evaluation fails.
+   *
+   * @return the result of each row's call
+   */
+  public int[] evaluate(String name, int[]... columns) throws InterpretException {
+    var function = ast.getFunction(name);
+    if (function == null) {
+      throw new InterpretException("no function called " + name);
+    }
+
+    if (function.getParams().size() != columns.length) {
+      throw new InterpretException("wrong number of arguments for " + name);
+    }
+
+    var rows = columns.length == 0 ? 0 : columns[0].length;
+    for (var column : columns) {
+      if (column.length != rows) {
+        throw new InterpretException("argument columns have different lengths");
+      }
+    }
+
+    var results = new int[rows];
+
+    for (var start = 0; start < rows; start += CHUNK_SIZE) {
+      var end = Math.min(rows, start + CHUNK_SIZE);
+
+      var args = new int[columns.length][];
+      for (var i = 0; i < columns.length; i++) {
+        args[i] = Arrays.copyOfRange(columns[i], start, end);
+      }
+
+      System.arraycopy(call(function, args, end - start), 0, results, start, end - start);
+    }
+
+    return results;
+  }
+
+  /** The slots of a call in progress, each a column with one value per row. */
+  private record Frame(int[][] slots, int size) {}
+
+  private int[] call(FunctionAst function, int[][] args, int size) throws InterpretException {
+    var slots = new int[function.getFrameSize()][];
+    System.arraycopy(args, 0, slots, 0, args.length);
+
+    // Locals and initialization flags start zeroed. Columns are never modified, so can be shared
+    Arrays.fill(slots, args.length, slots.length, new int[size]);
+
+    var frame = new Frame(slots, size);
+
+    for (var stmt : function.getBody().getStmts()) {
+      switch (stmt) {
+        case VarDeclStmtAst varDecl -> {
+          var initSlot = varDecl.getDecl().getInitSlot();
+          if (initSlot >= 0) slots[initSlot] = new int[size];
+        }
+        case ReturnStmtAst returnStmt -> {
+          return eval(returnStmt.getValue(), frame, null);
+        }
+        case ExprStmtAst exprStmt -> eval(exprStmt.getExpr(), frame, null);
+      }
+    }
+
+    throw new InterpretException("function did not return");
+  }
+
+  /** Evaluates an expression for the rows active in a mask, which must not be {@link #NONE}. */
+  private int[] eval(RValueExprAst ast, Frame frame, boolean[] mask) throws InterpretException {
+    return switch (ast) {
+      case IntoRValueExprAst intoRValue -> evalLValue(intoRValue.getLValue(), frame, mask);
+      case IntLiteralExprAst intLiteral -> constant(frame.size(), intLiteral.getValue());
+      case AssignmentExprAst assignment -> evalAssignment(assignment, frame, mask);
+      case CallExprAst call -> evalCall(call, frame, mask);
+      case AddExprAst add -> {
+        var lhs = eval(add.getLhs(), frame, mask);
+        var rhs = eval(add.getRhs(), frame, mask);
+        var result = new int[frame.size()];
+        for (var i = 0; i < result.length; i++) result[i] = lhs[i] + rhs[i];
+        yield result;
+      }
+      case SubExprAst sub -> {
+        var lhs = eval(sub.getLhs(), frame, mask);
+        var rhs = eval(sub.getRhs(), frame, mask);
+        var result = new int[frame.size()];
+        for (var i = 0; i < result.length; i++) result[i] = lhs[i] - rhs[i];
+        yield result;
+      }
+      case MulExprAst mul -> {
+        var lhs = eval(mul.getLhs(), frame, mask);
+        var rhs = eval(mul.getRhs(), frame, mask);
+        var result = new int[frame.size()];
+        for (var i = 0; i < result.length; i++) result[i] = lhs[i] * rhs[i];
+        yield result;
+      }
+      case DivExprAst div -> evalDiv(div, frame, mask);
+      case NegExprAst neg -> {
+        var value = eval(neg.getExpr(), frame, mask);
+        var result = new int[frame.size()];
+        for (var i = 0; i < result.length; i++) result[i] = -value[i];
+        yield result;
+      }
+      case LogicalAndExprAst logicalAnd -> {
+        // The right-hand side is only evaluated, and only used, where the left is non-zero
+        var lhs = eval(logicalAnd.getLhs(), frame, mask);
+        var rhsMask = narrow(mask, lhs, true);
+        if (rhsMask == NONE) yield lhs;
+
+        var rhs = eval(logicalAnd.getRhs(), frame, rhsMask);
+        yield select(lhs, rhs, lhs);
+      }
+      case LogicalOrExprAst logicalOr -> {
+        var lhs = eval(logicalOr.getLhs(), frame, mask);
+        var rhsMask = narrow(mask, lhs, false);
+        if (rhsMask == NONE) yield lhs;
+
+        var rhs = eval(logicalOr.getRhs(), frame, rhsMask);
+        yield select(lhs, lhs, rhs);
+      }
+      case TernaryExprAst ternary -> {
+        var condition = eval(ternary.getCondition(), frame, mask);
+
+        var trueMask = narrow(mask, condition, true);
+        if (trueMask == NONE) yield eval(ternary.getFalseCase(), frame, mask);
+
+        var falseMask = narrow(mask, condition, false);
+        if (falseMask == NONE) yield eval(ternary.getTrueCase(), frame, mask);
+
+        var trueCase = eval(ternary.getTrueCase(), frame, trueMask);
+        var falseCase = eval(ternary.getFalseCase(), frame, falseMask);
+        yield select(condition, trueCase, falseCase);
+      }
+    };
+  }
+
+  private int[] evalLValue(LValueExprAst ast, Frame frame, boolean[] mask)
+      throws InterpretException {
+    return switch (ast) {
+      case VarExprAst var -> {
+        checkInitialized(var, frame, mask);
+        yield frame.slots()[var.getDecl().getSlot()];
+      }
+    };
+  }
+
+  private void checkInitialized(VarExprAst var, Frame frame, boolean[] mask)
+      throws InterpretException {
+    if (!var.isCheckInitialized()) return;
+
+    var initialized = frame.slots()[var.getDecl().getInitSlot()];
+    for (var i = 0; i < initialized.length; i++) {
+      if (initialized[i] == 0 && isActive(mask, i)) {
+        throw new InterpretException("uninitialized variable");
+      }
+    }
+  }
+
+  private int[] evalAssignment(AssignmentExprAst assignment, Frame frame, boolean[] mask)
+      throws InterpretException {
+    return switch (assignment.getLhs()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+        var slots = frame.slots();
+
+        // An assignment before the variable's declaration fails before its value is evaluated
+        checkInitialized(var, frame, mask);
+        var value = eval(assignment.getRhs(), frame, mask);
+
+        slots[decl.getSlot()] = merge(mask, value, slots[decl.getSlot()]);
+
+        if (decl.getInitSlot() >= 0) {
+          var initSlot = decl.getInitSlot();
+          slots[initSlot] = merge(mask, constant(frame.size(), 1), slots[initSlot]);
+        }
+
+        yield value;
+      }
+    };
+  }
+
+  private int[] evalCall(CallExprAst call, Frame frame, boolean[] mask)
+      throws InterpretException {
+    var callArgs = call.getArgs();
+    var args = new int[callArgs.size()][];
+
+    for (var i = 0; i < args.length; i++) {
+      args[i] = eval(callArgs.get(i), frame, mask);
+    }
+
+    if (mask == null) {
+      return call(call.getFunctionDecl(), args, frame.size());
+    }
+
+    // Pack the active rows together, so the callee only does work for them
+    var rows = new int[frame.size()];
+    var count = 0;
+    for (var i = 0; i < mask.length; i++) {
+      if (mask[i]) rows[count++] = i;
+    }
+
+    var packed = new int[args.length][count];
+    for (var arg = 0; arg < args.length; arg++) {
+      for (var j = 0; j < count; j++) packed[arg][j] = args[arg][rows[j]];
+    }
+
+    var packedResult = call(call.getFunctionDecl(), packed, count);
+
+    var result = new int[frame.size()];
+    for (var j = 0; j < count; j++) result[rows[j]] = packedResult[j];
+    return result;
+  }
+
+  private int[] evalDiv(DivExprAst div, Frame frame, boolean[] mask) throws InterpretException {
+    var lhs = eval(div.getLhs(), frame, mask);
+    var rhs = eval(div.getRhs(), frame, mask);
+
+    for (var i = 0; i < rhs.length; i++) {
+      if (rhs[i] == 0 && isActive(mask, i)) {
+        throw new InterpretException("division by zero");
+      }
+    }
+
+    var result = new int[frame.size()];
+
+    if (mask == null) {
+      for (var i = 0; i < result.length; i++) result[i] = lhs[i] / rhs[i];
+    } else {
+      // Inactive rows may divide by zero, so divide them by one instead
+      for (var i = 0; i < result.length; i++) result[i] = lhs[i] / (mask[i] ? rhs[i] : 1);
+    }
+
+    return result;
+  }
+
+  private static boolean isActive(boolean[] mask, int row) {
+    return mask == null || mask[row];
+  }
+
+  /**
+   * The rows active in {@code mask} where {@code condition} is non-zero, or zero if {@code nonZero}
+   * is false. This returns null if every row is active, and {@link #NONE} if none are.
+   */
+  private static boolean[] narrow(boolean[] mask, int[] condition, boolean nonZero) {
+    var result = new boolean[condition.length];
+    var count = 0;
+
+    for (var i = 0; i < result.length; i++) {
+      var active = (condition[i] != 0) == nonZero && isActive(mask, i);
+      result[i] = active;
+      if (active) count++;
+    }
+
+    if (count == 0) return NONE;
+    if (count == result.length) return null;
+    return result;
+  }
+
+  /** Picks {@code ifTrue} where the condition is non-zero, and {@code ifFalse} elsewhere. */
+  private static int[] select(int[] condition, int[] ifTrue, int[] ifFalse) {
+    var result = new int[condition.length];
+    for (var i = 0; i < result.length; i++) {
+      result[i] = condition[i] != 0 ? ifTrue[i] : ifFalse[i];
+    }
+    return result;
+  }
+
+  /** Takes {@code value} for the rows active in {@code mask}, and {@code old} for the rest. */
+  private static int[] merge(boolean[] mask, int[] value, int[] old) {
+    if (mask == null) return value;
+
+    var result = new int[value.length];
+    for (var i = 0; i < result.length; i++) result[i] = mask[i] ? value[i] : old[i];
+    return result;
+  }
+
+  private static int[] constant(int size, int value) {
+    var result = new int[size];
+    Arrays.fill(result, value);
+    return result;
+  }
+}
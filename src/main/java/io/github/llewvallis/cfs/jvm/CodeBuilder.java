@@ -0,0 +1,290 @@
+package io.github.llewvallis.cfs.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Emits the JVM instructions of a single method and produces its {@code Code} attribute.
+ *
+ * <p>Every stack entry in the methods we generate is an {@code int}, and so is every local but
+ * one, which holds a reference of a fixed class. This keeps the stack map frames needed by the
+ * verifier simple: each one is just the number of locals and the depth of the stack. The depth is
+ * tracked as instructions are emitted.
+ */
+class CodeBuilder {
+
+  private static final int ICONST_0 = 0x03;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ILOAD = 0x15;
+  private static final int ALOAD = 0x19;
+  private static final int ISTORE = 0x36;
+  private static final int POP = 0x57;
+  private static final int DUP = 0x59;
+  private static final int GOTO = 0xa7;
+  private static final int IRETURN = 0xac;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESTATIC = 0xb8;
+  private static final int ATHROW = 0xbf;
+  private static final int WIDE = 0xc4;
+
+  public static final int IADD = 0x60;
+  public static final int ISUB = 0x64;
+  public static final int IMUL = 0x68;
+  public static final int IDIV = 0x6c;
+  public static final int INEG = 0x74;
+  public static final int IFEQ = 0x99;
+  public static final int IFNE = 0x9a;
+
+  private static final int ITEM_INTEGER = 1;
+  private static final int ITEM_OBJECT = 7;
+  private static final int FULL_FRAME = 255;
+
+  /** Branch offsets are signed 16-bit values, so no method can be longer than this. */
+  private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+  private final ConstantPool pool;
+
+  private final int localCount;
+
+  /** The local holding a reference rather than an {@code int}. */
+  private final int referenceLocal;
+
+  /** The constant pool index of the class of {@link #referenceLocal}. */
+  private final int referenceClass;
+
+  private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+  /** The stack depth at each offset that needs a stack map frame. */
+  private final TreeMap<Integer, Integer> frames = new TreeMap<>();
+
+  private final List<Label> labels = new ArrayList<>();
+
+  private int stackDepth = 0;
+  private int maxStackDepth = 0;
+
+  /** Set after an instruction that never falls through to the next one, like {@code goto}. */
+  private boolean unreachable = false;
+
+  public CodeBuilder(ConstantPool pool, int localCount, int referenceLocal, int referenceClass) {
+    this.pool = pool;
+    this.localCount = localCount;
+    this.referenceLocal = referenceLocal;
+    this.referenceClass = referenceClass;
+  }
+
+  /** A position in the code that can be jumped to before it is known. */
+  public static class Label {
+
+    private int offset = -1;
+
+    private int stackDepth = -1;
+
+    /** The offsets of branch instructions that jump to this label. */
+    private final List<Integer> branches = new ArrayList<>();
+  }
+
+  public Label newLabel() {
+    var label = new Label();
+    labels.add(label);
+    return label;
+  }
+
+  public void bind(Label label) {
+    label.offset = code.size();
+
+    if (unreachable) {
+      stackDepth = label.stackDepth;
+      unreachable = false;
+    }
+
+    frames.put(label.offset, stackDepth);
+  }
+
+  public void pushInt(int value) {
+    if (value >= -1 && value <= 5) {
+      op(ICONST_0 + value, 1);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      op(BIPUSH, 1);
+      code.write(value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      op(SIPUSH, 1);
+      writeShort(value);
+    } else {
+      op(LDC_W, 1);
+      writeShort(pool.integer(value));
+    }
+  }
+
+  public void load(int local) {
+    localOp(ILOAD, local, 1);
+  }
+
+  public void store(int local) {
+    localOp(ISTORE, local, -1);
+  }
+
+  /** Pushes the reference local, which is only ever passed straight to a method. */
+  public void loadReference() {
+    localOp(ALOAD, referenceLocal, 1);
+  }
+
+  private void localOp(int opcode, int local, int stackChange) {
+    if (local <= 0xff) {
+      op(opcode, stackChange);
+      code.write(local);
+    } else {
+      code.write(WIDE);
+      op(opcode, stackChange);
+      writeShort(local);
+    }
+  }
+
+  public void pop() {
+    op(POP, -1);
+  }
+
+  public void dup() {
+    op(DUP, 1);
+  }
+
+  /** Emits an instruction with no operands, such as {@code iadd}. */
+  public void arithmetic(int opcode) {
+    op(opcode, opcode == INEG ? 0 : -1);
+  }
+
+  /** Emits a conditional branch, either {@link #IFEQ} or {@link #IFNE}. */
+  public void branch(int opcode, Label target) {
+    jump(opcode, -1, target);
+  }
+
+  public void jump(Label target) {
+    jump(GOTO, 0, target);
+    unreachable = true;
+  }
+
+  private void jump(int opcode, int stackChange, Label target) {
+    var offset = code.size();
+    op(opcode, stackChange);
+    writeShort(0);
+
+    target.stackDepth = stackDepth;
+    target.branches.add(offset);
+  }
+
+  public void invokeStatic(String owner, String name, String descriptor, int stackChange) {
+    op(INVOKESTATIC, stackChange);
+    writeShort(pool.methodRef(owner, name, descriptor));
+  }
+
+  public void invokeVirtual(String owner, String name, String descriptor, int stackChange) {
+    op(INVOKEVIRTUAL, stackChange);
+    writeShort(pool.methodRef(owner, name, descriptor));
+  }
+
+  public void returnInt() {
+    op(IRETURN, -1);
+    unreachable = true;
+  }
+
+  public void throwException() {
+    op(ATHROW, -1);
+    unreachable = true;
+  }
+
+  private void op(int opcode, int stackChange) {
+    code.write(opcode);
+    stackDepth += stackChange;
+    maxStackDepth = Math.max(maxStackDepth, stackDepth);
+  }
+
+  private void writeShort(int value) {
+    code.write(value >>> 8);
+    code.write(value);
+  }
+
+  /**
+   * Produces the body of the method's {@code Code} attribute, resolving all branches.
+   *
+   * @throws IllegalStateException if the method is too large to be represented
+   */
+  public byte[] build() {
+    var bytes = code.toByteArray();
+
+    if (bytes.length > MAX_CODE_LENGTH) {
+      throw new IllegalStateException("method is too large");
+    }
+
+    for (var label : labels) {
+      for (var branch : label.branches) {
+        var delta = label.offset - branch;
+        bytes[branch + 1] = (byte) (delta >>> 8);
+        bytes[branch + 2] = (byte) delta;
+      }
+    }
+
+    try {
+      var result = new ByteArrayOutputStream();
+      var out = new DataOutputStream(result);
+
+      out.writeShort(maxStackDepth);
+      out.writeShort(localCount);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+
+      // No exception table
+      out.writeShort(0);
+
+      if (frames.isEmpty()) {
+        out.writeShort(0);
+      } else {
+        out.writeShort(1);
+        writeStackMapTable(out);
+      }
+
+      return result.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private void writeStackMapTable(DataOutputStream out) throws IOException {
+    var table = new ByteArrayOutputStream();
+    var tableOut = new DataOutputStream(table);
+
+    tableOut.writeShort(frames.size());
+
+    var previous = -1;
+    for (var entry : frames.entrySet()) {
+      var offset = entry.getKey();
+      var depth = entry.getValue();
+
+      tableOut.writeByte(FULL_FRAME);
+      tableOut.writeShort(offset - previous - 1);
+
+      tableOut.writeShort(localCount);
+      for (var i = 0; i < localCount; i++) {
+        if (i == referenceLocal) {
+          tableOut.writeByte(ITEM_OBJECT);
+          tableOut.writeShort(referenceClass);
+        } else {
+          tableOut.writeByte(ITEM_INTEGER);
+        }
+      }
+
+      tableOut.writeShort(depth);
+      for (var i = 0; i < depth; i++) tableOut.writeByte(ITEM_INTEGER);
+
+      previous = offset;
+    }
+
+    out.writeShort(pool.utf8("StackMapTable"));
+    out.writeInt(table.size());
+    table.writeTo(out);
+  }
+}
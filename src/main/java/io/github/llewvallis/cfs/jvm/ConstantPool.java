@@ -0,0 +1,107 @@
+package io.github.llewvallis.cfs.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Builds the constant pool of a class file, reusing entries that have already been added. */
+class ConstantPool {
+
+  private static final int UTF8 = 1;
+  private static final int INTEGER = 3;
+  private static final int CLASS = 7;
+  private static final int METHOD_REF = 10;
+  private static final int NAME_AND_TYPE = 12;
+
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private final DataOutputStream out = new DataOutputStream(bytes);
+
+  /** Existing entries, keyed by their tag and contents. */
+  private final Map<String, Integer> entries = new HashMap<>();
+
+  /** Constant pool indices start from one. */
+  private int nextIndex = 1;
+
+  public int utf8(String value) {
+    return entry(
+        "utf8 " + value,
+        () -> {
+          out.writeByte(UTF8);
+          out.writeUTF(value);
+        });
+  }
+
+  public int integer(int value) {
+    return entry(
+        "integer " + value,
+        () -> {
+          out.writeByte(INTEGER);
+          out.writeInt(value);
+        });
+  }
+
+  public int classRef(String internalName) {
+    var name = utf8(internalName);
+    return entry(
+        "class " + internalName,
+        () -> {
+          out.writeByte(CLASS);
+          out.writeShort(name);
+        });
+  }
+
+  public int methodRef(String owner, String name, String descriptor) {
+    var ownerIndex = classRef(owner);
+    var nameAndType = nameAndType(name, descriptor);
+    return entry(
+        "method " + owner + "." + name + descriptor,
+        () -> {
+          out.writeByte(METHOD_REF);
+          out.writeShort(ownerIndex);
+          out.writeShort(nameAndType);
+        });
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    var nameIndex = utf8(name);
+    var descriptorIndex = utf8(descriptor);
+    return entry(
+        "nameAndType " + name + descriptor,
+        () -> {
+          out.writeByte(NAME_AND_TYPE);
+          out.writeShort(nameIndex);
+          out.writeShort(descriptorIndex);
+        });
+  }
+
+  private interface EntryWriter {
+
+    void write() throws IOException;
+  }
+
+  private int entry(String key, EntryWriter writer) {
+    var existing = entries.get(key);
+    if (existing != null) return existing;
+
+    try {
+      writer.write();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+
+    var index = nextIndex++;
+    entries.put(key, index);
+    return index;
+  }
+
+  /** The value of the class file's {@code constant_pool_count} field. */
+  public int count() {
+    return nextIndex;
+  }
+
+  public byte[] toByteArray() {
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,398 @@
+package io.github.llewvallis.cfs.jvm;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compiles an analyzed program to JVM bytecode. Each function becomes a static method of a single
+ * generated class, and calls between functions are plain {@code invokestatic} instructions. This
+ * lets the JVM's JIT compilers inline and optimize guest code exactly as if it were Java.
+ *
+ * <p>Every method takes the run's {@link ExecutionBudget} as an extra last parameter, which it
+ * charges on entry and passes on to its callees, so runs are held to their limits.
+ *
+ * <p>The class file is written directly and then loaded as a hidden class, so that it can be
+ * unloaded again once the program is no longer referenced.
+ */
+public class JvmCompiler {
+
+  /** Hidden classes must be in the same package as the lookup used to define them. */
+  private static final String CLASS_NAME = "io/github/llewvallis/cfs/jvm/GuestProgram";
+
+  private static final String RUNTIME_NAME = JvmRuntime.class.getName().replace('.', '/');
+
+  private static final String BUDGET_NAME = ExecutionBudget.class.getName().replace('.', '/');
+
+  private static final String EXCEPTION_DESCRIPTOR =
+      "()L" + InterpretException.class.getName().replace('.', '/') + ";";
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final int JAVA_21 = 65;
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private final ConstantPool pool = new ConstantPool();
+
+  private CodeBuilder code;
+
+  private FunctionAst function;
+
+  /** The start of the current function's body, which self tail calls jump back to. */
+  private CodeBuilder.Label start;
+
+  public JvmProgram compile(ProgramAst ast) throws InterpretException {
+    return compile(ast, ExecutionLimits.DEFAULT);
+  }
+
+  /** Compiles a program whose runs use {@code defaultLimits} unless they give their own. */
+  public JvmProgram compile(ProgramAst ast, ExecutionLimits defaultLimits)
+      throws InterpretException {
+    return define(ast, compileClass(ast), defaultLimits);
+  }
+
+  /** Loads a class produced by {@link #compileClass(ProgramAst)} and finds its methods. */
+  static JvmProgram define(ProgramAst ast, byte[] bytes, ExecutionLimits defaultLimits) {
+    try {
+      var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+      var handles = new HashMap<String, MethodHandle>();
+
+      for (var function : ast.getFunctions()) {
+        var name = function.getName().getContent();
+        var type = methodType(function.getParams().size());
+        handles.put(name, lookup.findStatic(lookup.lookupClass(), name, type));
+      }
+
+      return new JvmProgram(handles, defaultLimits);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      throw new AssertionError("generated invalid class", e);
+    }
+  }
+
+  /** Produces the bytes of a class file containing one static method per function. */
+  byte[] compileClass(ProgramAst ast) throws InterpretException {
+    var methods = new ByteArrayOutputStream();
+    var methodsOut = new DataOutputStream(methods);
+
+    try {
+      for (var function : ast.getFunctions()) {
+        compileMethod(methodsOut, function);
+      }
+
+      var thisClass = pool.classRef(CLASS_NAME);
+      var superClass = pool.classRef("java/lang/Object");
+
+      var result = new ByteArrayOutputStream();
+      var out = new DataOutputStream(result);
+
+      out.writeInt(MAGIC);
+      out.writeShort(0);
+      out.writeShort(JAVA_21);
+
+      out.writeShort(pool.count());
+      out.write(pool.toByteArray());
+
+      out.writeShort(ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+
+      // No interfaces or fields
+      out.writeShort(0);
+      out.writeShort(0);
+
+      out.writeShort(ast.getFunctions().size());
+      methods.writeTo(out);
+
+      // No class attributes
+      out.writeShort(0);
+
+      return result.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static MethodType methodType(int paramCount) {
+    var params = new Class<?>[paramCount + 1];
+    Arrays.fill(params, int.class);
+    params[paramCount] = ExecutionBudget.class;
+    return MethodType.methodType(int.class, params);
+  }
+
+  private static String descriptor(int paramCount) {
+    return "(" + "I".repeat(paramCount) + "L" + BUDGET_NAME + ";)I";
+  }
+
+  /**
+   * The JVM local for a slot of the current function. The budget parameter comes straight after
+   * the other parameters, so every slot after them moves up by one.
+   */
+  private int local(int slot) {
+    return slot < function.getParams().size() ? slot : slot + 1;
+  }
+
+  private void compileMethod(DataOutputStream out, FunctionAst ast)
+      throws IOException, InterpretException {
+    var paramCount = ast.getParams().size();
+    code = new CodeBuilder(pool, ast.getFrameSize() + 1, paramCount, pool.classRef(BUDGET_NAME));
+    function = ast;
+
+    callBudget("enter");
+
+    // The verifier needs every local to hold an int before any branch, and locals other than the
+    // parameters (including initialization flags) have to start at zero anyway
+    clearLocals();
+
+    start = code.newLabel();
+    if (ast.getTailCallSlot() >= 0) code.bind(start);
+
+    compileBody(ast.getBody());
+
+    byte[] body;
+    try {
+      body = code.build();
+    } catch (IllegalStateException e) {
+      throw new InterpretException("function " + ast.getName().getContent() + " is too large");
+    }
+
+    out.writeShort(ACC_PUBLIC | ACC_STATIC);
+    out.writeShort(pool.utf8(ast.getName().getContent()));
+    out.writeShort(pool.utf8(descriptor(ast.getParams().size())));
+
+    out.writeShort(1);
+    out.writeShort(pool.utf8("Code"));
+    out.writeInt(body.length);
+    out.write(body);
+  }
+
+  private void compileBody(BlockAst ast) {
+    for (var stmt : ast.getStmts()) {
+      switch (stmt) {
+        case VarDeclStmtAst varDecl -> {
+          var initSlot = varDecl.getDecl().getInitSlot();
+
+          if (initSlot >= 0) {
+            code.pushInt(0);
+            code.store(local(initSlot));
+          }
+        }
+        case ReturnStmtAst returnStmt -> {
+          compileReturn(returnStmt.getValue());
+          // Anything after a return statement can never run
+          return;
+        }
+        case ExprStmtAst exprStmt -> {
+          if (exprStmt.getExpr() instanceof AssignmentExprAst assignment) {
+            compileAssignment(assignment, false);
+          } else {
+            compileExpr(exprStmt.getExpr());
+            code.pop();
+          }
+        }
+      }
+    }
+
+    throwFromRuntime("noReturn");
+  }
+
+  private void clearLocals() {
+    for (var slot = function.getParams().size(); slot < function.getFrameSize(); slot++) {
+      code.pushInt(0);
+      code.store(local(slot));
+    }
+  }
+
+  /**
+   * Compiles an expression whose value is returned. Each branch of a ternary or logical operator
+   * gets its own {@code ireturn}, so that self tail calls in any branch can jump back to the start
+   * of the method with an empty stack.
+   */
+  private void compileReturn(RValueExprAst ast) {
+    switch (ast) {
+      case CallExprAst call when call.isTailCall() -> {
+        for (var arg : call.getArgs()) {
+          compileExpr(arg);
+        }
+
+        // The last argument is on top of the stack
+        for (var slot = call.getArgs().size() - 1; slot >= 0; slot--) {
+          code.store(slot);
+        }
+
+        clearLocals();
+        callBudget("startBody");
+        code.jump(start);
+      }
+      case TernaryExprAst ternary -> {
+        var falseCase = code.newLabel();
+
+        compileExpr(ternary.getCondition());
+        code.branch(CodeBuilder.IFEQ, falseCase);
+        compileReturn(ternary.getTrueCase());
+
+        code.bind(falseCase);
+        compileReturn(ternary.getFalseCase());
+      }
+      case LogicalAndExprAst logicalAnd ->
+          compileShortCircuitReturn(CodeBuilder.IFNE, logicalAnd.getLhs(), logicalAnd.getRhs());
+      case LogicalOrExprAst logicalOr ->
+          compileShortCircuitReturn(CodeBuilder.IFEQ, logicalOr.getLhs(), logicalOr.getRhs());
+      default -> {
+        compileExpr(ast);
+        returnInt();
+      }
+    }
+  }
+
+  /** Returns the left-hand side unless the branch is taken, in which case the right is returned. */
+  private void compileShortCircuitReturn(int branchOpcode, RValueExprAst lhs, RValueExprAst rhs) {
+    var rhsCase = code.newLabel();
+
+    compileExpr(lhs);
+    code.dup();
+    code.branch(branchOpcode, rhsCase);
+    returnInt();
+
+    code.bind(rhsCase);
+    code.pop();
+    compileReturn(rhs);
+  }
+
+  private void compileExpr(RValueExprAst ast) {
+    switch (ast) {
+      case IntoRValueExprAst intoRValue -> compileLValueRead(intoRValue.getLValue());
+      case IntLiteralExprAst intLiteral -> code.pushInt(intLiteral.getValue());
+      case AssignmentExprAst assignment -> compileAssignment(assignment, true);
+      case CallExprAst call -> compileCall(call);
+      case AddExprAst add -> compileBinary(CodeBuilder.IADD, add.getLhs(), add.getRhs());
+      case SubExprAst sub -> compileBinary(CodeBuilder.ISUB, sub.getLhs(), sub.getRhs());
+      case MulExprAst mul -> compileBinary(CodeBuilder.IMUL, mul.getLhs(), mul.getRhs());
+      case DivExprAst div -> compileBinary(CodeBuilder.IDIV, div.getLhs(), div.getRhs());
+      case NegExprAst neg -> {
+        compileExpr(neg.getExpr());
+        code.arithmetic(CodeBuilder.INEG);
+      }
+      case LogicalAndExprAst logicalAnd ->
+          compileShortCircuit(CodeBuilder.IFEQ, logicalAnd.getLhs(), logicalAnd.getRhs());
+      case LogicalOrExprAst logicalOr ->
+          compileShortCircuit(CodeBuilder.IFNE, logicalOr.getLhs(), logicalOr.getRhs());
+      case TernaryExprAst ternary -> compileTernary(ternary);
+    }
+  }
+
+  private void compileLValueRead(LValueExprAst ast) {
+    switch (ast) {
+      case VarExprAst var -> {
+        checkInitialized(var);
+        code.load(local(var.getDecl().getSlot()));
+      }
+    }
+  }
+
+  private void checkInitialized(VarExprAst var) {
+    if (!var.isCheckInitialized()) return;
+
+    var initialized = code.newLabel();
+    code.load(local(var.getDecl().getInitSlot()));
+    code.branch(CodeBuilder.IFNE, initialized);
+    throwFromRuntime("uninitializedVariable");
+    code.bind(initialized);
+  }
+
+  private void compileAssignment(AssignmentExprAst assignment, boolean keepValue) {
+    switch (assignment.getLhs()) {
+      case VarExprAst var -> {
+        var decl = var.getDecl();
+
+        // An assignment before the variable's declaration fails before its value is evaluated
+        checkInitialized(var);
+
+        compileExpr(assignment.getRhs());
+        if (keepValue) code.dup();
+        code.store(local(decl.getSlot()));
+
+        if (decl.getInitSlot() >= 0) {
+          code.pushInt(1);
+          code.store(local(decl.getInitSlot()));
+        }
+      }
+    }
+  }
+
+  private void compileCall(CallExprAst call) {
+    for (var arg : call.getArgs()) {
+      compileExpr(arg);
+    }
+
+    var callee = call.getFunctionDecl();
+    var paramCount = callee.getParams().size();
+    var name = callee.getName().getContent();
+
+    code.loadReference();
+    code.invokeStatic(CLASS_NAME, name, descriptor(paramCount), -paramCount);
+  }
+
+  private void compileBinary(int opcode, RValueExprAst lhs, RValueExprAst rhs) {
+    compileExpr(lhs);
+    compileExpr(rhs);
+    code.arithmetic(opcode);
+  }
+
+  private void compileShortCircuit(int branchOpcode, RValueExprAst lhs, RValueExprAst rhs) {
+    var end = code.newLabel();
+
+    // If the branch is taken, the left-hand side's value is left on the stack as the result
+    compileExpr(lhs);
+    code.dup();
+    code.branch(branchOpcode, end);
+
+    code.pop();
+    compileExpr(rhs);
+    code.bind(end);
+  }
+
+  private void compileTernary(TernaryExprAst ternary) {
+    var falseCase = code.newLabel();
+    var end = code.newLabel();
+
+    compileExpr(ternary.getCondition());
+    code.branch(CodeBuilder.IFEQ, falseCase);
+
+    compileExpr(ternary.getTrueCase());
+    code.jump(end);
+
+    code.bind(falseCase);
+    compileExpr(ternary.getFalseCase());
+    code.bind(end);
+  }
+
+  /** Returns the value on top of the stack, ending the call in the budget first. */
+  private void returnInt() {
+    callBudget("exit");
+    code.returnInt();
+  }
+
+  /** Calls one of the methods of the budget that take no arguments. */
+  private void callBudget(String method) {
+    code.loadReference();
+    code.invokeVirtual(BUDGET_NAME, method, "()V", -1);
+  }
+
+  /** Throws the exception returned by one of the factory methods in {@link JvmRuntime}. */
+  private void throwFromRuntime(String method) {
+    code.invokeStatic(RUNTIME_NAME, method, EXCEPTION_DESCRIPTOR, 1);
+    code.throwException();
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.llewvallis.cfs.jvm;
+
+import io.github.llewvallis.cfs.interpret.ExecutionBudget;
+import io.github.llewvallis.cfs.interpret.ExecutionEngine;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** A program compiled by a {@link JvmCompiler}, with a handle to the method for each function. */
+public class JvmProgram implements ExecutionEngine {
+
+  private final Map<String, MethodHandle> functions;
+
+  private final ExecutionLimits defaultLimits;
+
+  JvmProgram(Map<String, MethodHandle> functions, ExecutionLimits defaultLimits) {
+    this.functions = functions;
+    this.defaultLimits = defaultLimits;
+  }
+
+  @Override
+  public RValue run(String name, List<RValue> args) throws InterpretException {
+    return run(name, args, defaultLimits);
+  }
+
+  /**
+   * Runs a function within the given limits, which generated code checks whenever a call starts.
+   * Deep recursion may still run out of the thread's stack before reaching the maximum depth.
+   */
+  @Override
+  public RValue run(String name, List<RValue> args, ExecutionLimits limits)
+      throws InterpretException {
+    var function = functions.get(name);
+    if (function == null) {
+      throw new InterpretException("no function called " + name);
+    }
+
+    // The last parameter is the budget
+    if (function.type().parameterCount() - 1 != args.size()) {
+      throw new InterpretException("wrong number of arguments for " + name);
+    }
+
+    var values = new ArrayList<Object>();
+    for (var arg : args) values.add(arg.castToInt().getValue());
+    values.add(new ExecutionBudget(limits));
+
+    try {
+      return new IntValue((int) function.invokeWithArguments(values));
+    } catch (InterpretException e) {
+      throw e;
+    } catch (ArithmeticException e) {
+      // Integer division is the only thing in generated code that can throw this
+      throw new InterpretException("division by zero");
+    } catch (StackOverflowError e) {
+      // Guest calls are JVM calls, so deep recursion runs out of the thread's own stack
+      throw new InterpretException("stack overflow");
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+}
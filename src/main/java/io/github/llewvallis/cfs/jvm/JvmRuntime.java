@@ -0,0 +1,20 @@
+package io.github.llewvallis.cfs.jvm;
+
+import io.github.llewvallis.cfs.interpret.InterpretException;
+
+/**
+ * Support methods called from generated code. Generated methods throw the exceptions these
+ * return, which keeps the exception construction out of the generated bytecode.
+ */
+public final class JvmRuntime {
+
+  private JvmRuntime() {}
+
+  public static InterpretException uninitializedVariable() {
+    return new InterpretException("uninitialized variable");
+  }
+
+  public static InterpretException noReturn() {
+    return new InterpretException("function did not return");
+  }
+}
@@ -1,159 +1,301 @@
 package io.github.llewvallis.cfs.parser;
 
+import io.github.llewvallis.cfs.ast.SymbolTable;
 import io.github.llewvallis.cfs.reporting.Span;
 import io.github.llewvallis.cfs.token.*;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import lombok.Getter;
 
 /**
- * Given an input string, a lexer can produce tokens one by one. A lexer keeps tracks and mutates
- * its position in the input. Once the input is exhausted, the lexer produces an infinite sequence
- * of {@link EofToken}.
+ * Given an input, a lexer can produce tokens one by one. A lexer keeps tracks and mutates its
+ * position in the input. Once the input is exhausted, the lexer produces an infinite sequence of
+ * {@link EofToken}.
+ *
+ * <p>The input is read through a window which slides along as tokens are lexed, so only the current
+ * token and a little read-ahead are ever held in memory. Positions still count from the start of
+ * the input.
+ *
+ * <p>Each token is recognized by looking up the class of its first character in a table, which
+ * decides what kind of token it can be without trying the alternatives one by one. Characters
+ * outside of ASCII never start a symbol, but may be letters or digits.
+ *
+ * <p>{@link #nextKind()} lexes without allocating anything, leaving the token's position and value
+ * in the lexer to be read back. {@link #next()} wraps it up as a {@link Token} instead.
  *
  * <p>Generally you want to use a {@link TokenStream} instead, since a token stream is able to
  * rewind and gracefully handle errors.
  */
 public class Lexer {
 
-  /** Characters completely ignored by the lexer */
-  private static final Set<Character> WHITESPACE = Set.of(' ', '\t', '\n', '\r');
-
-  private static final Map<String, TokenFactory> SYMBOLS =
-      Map.ofEntries(
-          Map.entry("(", OpenParenToken::new),
-          Map.entry(")", CloseParenToken::new),
-          Map.entry("{", OpenBraceToken::new),
-          Map.entry("}", CloseBraceToken::new),
-          Map.entry("?", QuestionToken::new),
-          Map.entry(":", ColonToken::new),
-          Map.entry(";", SemicolonToken::new),
-          Map.entry(",", CommaToken::new),
-          Map.entry("=", EqualsToken::new),
-          Map.entry("+", PlusToken::new),
-          Map.entry("-", MinusToken::new),
-          Map.entry("*", StarToken::new),
-          Map.entry("/", SlashToken::new),
-          Map.entry("&&", AndAndToken::new),
-          Map.entry("||", OrOrToken::new));
-
-  /** If an identifier matches one of these, we replace it using this table. */
-  private static final Map<String, TokenFactory> KEYWORDS =
-      Map.of(
-          "int", KwIntToken::new,
-          "return", KwReturnToken::new);
-
-  private final String input;
+  private static final byte OTHER = 0;
+  private static final byte WHITESPACE = 1;
+  private static final byte LETTER = 2;
+  private static final byte DIGIT = 3;
+  private static final byte SYMBOL = 4;
+
+  /** The class of each ASCII character. */
+  private static final byte[] CLASSES = new byte[128];
+
+  static {
+    for (var c : " \t\n\r".toCharArray()) CLASSES[c] = WHITESPACE;
+    for (var c : "(){}?:;,=+-*/&|".toCharArray()) CLASSES[c] = SYMBOL;
+    for (var c = 'a'; c <= 'z'; c++) CLASSES[c] = LETTER;
+    for (var c = 'A'; c <= 'Z'; c++) CLASSES[c] = LETTER;
+    for (var c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+  }
+
+  /**
+   * Keywords, placed by {@link #keywordHash(int, char)}. The hash is perfect for the keywords we
+   * have, so a word can only be a keyword if it matches the single entry at its hash.
+   */
+  private static final Keyword[] KEYWORDS = new Keyword[8];
+
+  static {
+    addKeyword("int", TokenKind.KW_INT);
+    addKeyword("return", TokenKind.KW_RETURN);
+  }
+
+  private static final int WINDOW_SIZE = 8192;
+
+  private final Reader reader;
+
+  /** The length of the input if it is known up front, otherwise -1. */
+  @Getter private final int lengthHint;
+
+  /** The characters read but not yet discarded, starting at {@link #windowStart}. */
+  private char[] window = new char[WINDOW_SIZE];
+
+  /** The position of the first character in the window. */
+  private int windowStart = 0;
+
+  /** The position after the last character in the window. */
+  private int windowEnd = 0;
+
+  private boolean exhausted = false;
 
   private int position = 0;
 
+  /** Where the last token lexed starts. */
+  @Getter private int tokenStart;
+
+  /** Where the last token lexed ends. */
+  @Getter private int tokenEnd;
+
+  /** The value of the last token lexed, if it was an integer literal. */
+  @Getter private int tokenValue;
+
   public Lexer(String input) {
-    this.input = input;
+    this(new StringReader(input), input.length());
   }
 
-  private interface TokenFactory {
-
-    Token createToken(Span span);
+  /** Creates a lexer which reads its input as it goes. The reader is not closed. */
+  public Lexer(Reader reader) {
+    this(reader, -1);
   }
 
-  public Token next() throws LexException {
-    skipWhitespace();
+  private Lexer(Reader reader, int lengthHint) {
+    this.reader = reader;
+    this.lengthHint = lengthHint;
+  }
 
-    if (position >= input.length()) {
-      return new EofToken(Span.point(input.length()));
-    }
+  private record Keyword(String text, TokenKind kind) {}
 
-    Token symbol = lexSymbol();
-    if (symbol != null) {
-      return symbol;
-    }
+  private static void addKeyword(String text, TokenKind kind) {
+    var hash = keywordHash(text.length(), text.charAt(0));
+    if (KEYWORDS[hash] != null) throw new IllegalStateException("keyword hash collision: " + text);
+    KEYWORDS[hash] = new Keyword(text, kind);
+  }
 
-    Token word = lexWord();
-    if (word != null) {
-      return word;
-    }
+  private static int keywordHash(int length, char first) {
+    return (length * 7 + first) & 7;
+  }
 
-    Token literal = lexIntLiteral();
-    if (literal != null) {
-      return literal;
-    }
+  private static byte classOf(char c) {
+    if (c < 128) return CLASSES[c];
 
-    throw new LexException(position++, "unknown token");
+    // Identifiers and literals may be written in other scripts too
+    if (Character.isAlphabetic(c)) return LETTER;
+    if (Character.isDigit(c)) return DIGIT;
+    return OTHER;
   }
 
-  /** Lex anything in the symbols table. */
-  private Token lexSymbol() {
-    for (var entry : SYMBOLS.entrySet()) {
-      if (stringMatches(entry.getKey())) {
-        var end = position + entry.getKey().length();
-        var span = new Span(position, end);
+  public Token next() throws LexException {
+    var kind = nextKind();
+    var span = new Span(tokenStart, tokenEnd);
+    var text =
+        kind == TokenKind.IDENT
+            ? new String(window, tokenStart - windowStart, tokenEnd - tokenStart)
+            : null;
+    return kind.createToken(span, text, tokenValue);
+  }
 
-        position = end;
+  /**
+   * Lexes the next token, whose position and value can then be read from the lexer. The text of
+   * the token is only available until the next call.
+   */
+  public TokenKind nextKind() throws LexException {
+    skipWhitespace();
 
-        return entry.getValue().createToken(span);
-      }
+    if (!has(position)) {
+      tokenStart = position;
+      tokenEnd = position;
+      return TokenKind.EOF;
     }
 
-    return null;
+    return switch (classOf(at(position))) {
+      case SYMBOL -> lexSymbol();
+      case LETTER -> lexWord();
+      case DIGIT -> lexIntLiteral();
+      default -> throw new LexException(position++, "unknown token");
+    };
   }
 
-  private boolean stringMatches(String symbol) {
-    for (var i = 0; i < symbol.length(); i++) {
-      if (position + i >= input.length()) return false;
-      if (symbol.charAt(i) != input.charAt(position + i)) return false;
-    }
+  /** Takes the next {@code length} characters as a token of the given kind. */
+  private TokenKind advance(int length, TokenKind kind) {
+    tokenStart = position;
+    tokenEnd = position + length;
+    position = tokenEnd;
+    return kind;
+  }
 
-    return true;
+  private TokenKind lexSymbol() throws LexException {
+    return switch (at(position)) {
+      case '(' -> advance(1, TokenKind.OPEN_PAREN);
+      case ')' -> advance(1, TokenKind.CLOSE_PAREN);
+      case '{' -> advance(1, TokenKind.OPEN_BRACE);
+      case '}' -> advance(1, TokenKind.CLOSE_BRACE);
+      case '?' -> advance(1, TokenKind.QUESTION);
+      case ':' -> advance(1, TokenKind.COLON);
+      case ';' -> advance(1, TokenKind.SEMICOLON);
+      case ',' -> advance(1, TokenKind.COMMA);
+      case '=' -> advance(1, TokenKind.EQUALS);
+      case '+' -> advance(1, TokenKind.PLUS);
+      case '-' -> advance(1, TokenKind.MINUS);
+      case '*' -> advance(1, TokenKind.STAR);
+      case '/' -> advance(1, TokenKind.SLASH);
+      case '&' -> {
+        if (!nextCharIs('&')) throw new LexException(position++, "unknown token");
+        yield advance(2, TokenKind.AND_AND);
+      }
+      case '|' -> {
+        if (!nextCharIs('|')) throw new LexException(position++, "unknown token");
+        yield advance(2, TokenKind.OR_OR);
+      }
+      default -> throw new IllegalStateException("not a symbol: " + at(position));
+    };
+  }
+
+  private boolean nextCharIs(char c) {
+    return has(position + 1) && at(position + 1) == c;
   }
 
   /** Lex either an identifier or keyword. */
-  private Token lexWord() {
-    var currentPosition = this.position;
-    while (currentPosition < input.length()
-        && Character.isAlphabetic(input.charAt(currentPosition))) {
-      currentPosition++;
+  private TokenKind lexWord() {
+    var end = position + 1;
+    while (has(end) && classOf(at(end)) == LETTER) {
+      end++;
     }
 
-    if (currentPosition == this.position) {
-      return null;
+    var length = end - position;
+    var keyword = KEYWORDS[keywordHash(length, at(position))];
+
+    if (keyword != null && keyword.text().length() == length && matches(keyword.text())) {
+      return advance(length, keyword.kind());
     }
 
-    var content = input.substring(this.position, currentPosition);
-    var span = new Span(position, currentPosition);
+    return advance(length, TokenKind.IDENT);
+  }
 
-    this.position = currentPosition;
+  /** Whether the input at the current position starts with {@code text}. */
+  private boolean matches(String text) {
+    var offset = position - windowStart;
 
-    var keyword = KEYWORDS.get(content);
-    if (keyword == null) {
-      return new IdentToken(span, content);
-    } else {
-      return keyword.createToken(span);
+    for (var i = 0; i < text.length(); i++) {
+      if (window[offset + i] != text.charAt(i)) return false;
     }
+
+    return true;
   }
 
-  private Token lexIntLiteral() {
-    var currentPosition = this.position;
+  /** Interns the text of the last token lexed, which must have been an identifier. */
+  public int intern(SymbolTable symbols) {
+    return symbols.intern(window, tokenStart - windowStart, tokenEnd - tokenStart);
+  }
+
+  private TokenKind lexIntLiteral() {
+    var end = position;
     var value = 0;
 
-    while (currentPosition < input.length() && Character.isDigit(input.charAt(currentPosition))) {
-      int digit = Character.digit(input.charAt(currentPosition), 10);
-      value = value * 10 + digit;
+    while (has(end)) {
+      var c = at(end);
 
-      currentPosition++;
-    }
+      int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 128 && Character.isDigit(c)) {
+        digit = Character.digit(c, 10);
+      } else {
+        break;
+      }
 
-    if (currentPosition == this.position) {
-      return null;
+      value = value * 10 + digit;
+      end++;
     }
 
-    var span = new Span(position, currentPosition);
-    this.position = currentPosition;
-
-    return new IntLiteralToken(span, value);
+    tokenValue = value;
+    return advance(end - position, TokenKind.INT_LITERAL);
   }
 
   private void skipWhitespace() {
-    while (position < input.length() && WHITESPACE.contains(input.charAt(position))) {
+    while (has(position) && isWhitespace(at(position))) {
       position++;
     }
   }
+
+  private char at(int index) {
+    return window[index - windowStart];
+  }
+
+  /** Whether there is a character at {@code index}, reading more of the input if needed. */
+  private boolean has(int index) {
+    return index < windowEnd || fill(index);
+  }
+
+  private boolean fill(int index) {
+    while (index >= windowEnd) {
+      if (exhausted) return false;
+
+      // Everything before the token being lexed has been dealt with, so it can be discarded
+      var kept = windowEnd - position;
+      System.arraycopy(window, position - windowStart, window, 0, kept);
+      windowStart = position;
+
+      // A single token may not fit, in which case the window has to grow. Readers may not be able
+      // to split a surrogate pair, so there always needs to be room for at least two characters
+      if (window.length - kept < 2) window = Arrays.copyOf(window, window.length * 2);
+
+      int read;
+      try {
+        read = reader.read(window, kept, window.length - kept);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      if (read < 0) {
+        exhausted = true;
+      } else {
+        windowEnd += read;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c < 128 && CLASSES[c] == WHITESPACE;
+  }
 }
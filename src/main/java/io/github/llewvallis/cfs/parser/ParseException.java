@@ -3,14 +3,27 @@ package io.github.llewvallis.cfs.parser;
 import io.github.llewvallis.cfs.token.Token;
 import lombok.Getter;
 
+/**
+ * Thrown when the parser finds a token it did not expect. The parser throws these whenever it tries
+ * a rule that turns out not to match, so they are cheap to create: they have no stack trace, and
+ * the unexpected token is only turned into an object if it is asked for.
+ */
 public class ParseException extends Exception {
 
   @Getter private final String expected;
 
-  @Getter private final Token actual;
+  private final TokenBuffer tokens;
 
-  public ParseException(String expected, Token actual) {
+  private final int index;
+
+  public ParseException(String expected, TokenBuffer tokens, int index) {
+    super(null, null, false, false);
     this.expected = expected;
-    this.actual = actual;
+    this.tokens = tokens;
+    this.index = index;
+  }
+
+  public Token getActual() {
+    return tokens.token(index);
   }
 }
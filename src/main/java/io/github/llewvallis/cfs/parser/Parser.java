@@ -1,12 +1,17 @@
 package io.github.llewvallis.cfs.parser;
 
 import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.events.Events;
+import io.github.llewvallis.cfs.events.LexEvent;
+import io.github.llewvallis.cfs.events.ParseEvent;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
 import io.github.llewvallis.cfs.reporting.NotAnLValueError;
 import io.github.llewvallis.cfs.reporting.ParseError;
-import io.github.llewvallis.cfs.token.*;
+import io.github.llewvallis.cfs.reporting.PipelineStats;
+import io.github.llewvallis.cfs.token.TokenKind;
 import io.github.llewvallis.cfs.util.Once;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,7 +25,7 @@ public class Parser {
 
   private boolean hasErrors = false;
 
-  private TokenStream tokens;
+  private final TokenStream tokens;
 
   public Parser(ErrorReporter reporter, TokenStream tokens) {
     this.reporter = reporter;
@@ -46,23 +51,23 @@ public class Parser {
    */
   private record BindingPower(int power, boolean rightAssociative) {
 
-    public static BindingPower prefix(Token token) {
-      return switch (token) {
-        case MinusToken ignored -> new BindingPower(7, true);
+    public static BindingPower prefix(TokenKind kind) {
+      return switch (kind) {
+        case MINUS -> new BindingPower(7, true);
         default -> null;
       };
     }
 
-    public static BindingPower continuing(Token token) {
-      return switch (token) {
-        case EqualsToken ignored -> new BindingPower(1, true);
-        case QuestionToken ignored -> new BindingPower(2, true);
-        case AndAndToken ignored -> new BindingPower(3, false);
-        case OrOrToken ignored -> new BindingPower(4, false);
-        case PlusToken ignored -> new BindingPower(5, false);
-        case MinusToken ignored -> new BindingPower(5, false);
-        case StarToken ignored -> new BindingPower(6, false);
-        case SlashToken ignored -> new BindingPower(6, false);
+    public static BindingPower continuing(TokenKind kind) {
+      return switch (kind) {
+        case EQUALS -> new BindingPower(1, true);
+        case QUESTION -> new BindingPower(2, true);
+        case AND_AND -> new BindingPower(3, false);
+        case OR_OR -> new BindingPower(4, false);
+        case PLUS -> new BindingPower(5, false);
+        case MINUS -> new BindingPower(5, false);
+        case STAR -> new BindingPower(6, false);
+        case SLASH -> new BindingPower(6, false);
         default -> null;
       };
     }
@@ -79,8 +84,91 @@ public class Parser {
   private record SpeculateResult<T>(T value, boolean success) {}
 
   public static ProgramAst parse(ErrorReporter reporter, String syntax) {
+    return parse(reporter, syntax, new PipelineStats());
+  }
+
+  /**
+   * Lexes and parses a program, recording how long each stage took in {@code stats}. The token
+   * stream lexes the whole input as it is built, so the lex stage covers both lexing and filling
+   * the token buffer.
+   */
+  public static ProgramAst parse(ErrorReporter reporter, String syntax, PipelineStats stats) {
+    var recording = Events.isRecorderRunning();
+
+    var lexTimer = stats.begin("lex");
+    var lexEvent = recording ? new LexEvent() : null;
+    if (recording) lexEvent.begin();
+    var errorsBefore = reporter.getErrors().size();
+
     var tokens = new TokenStream(reporter, new Lexer(syntax));
-    return new Parser(reporter, tokens).parse();
+
+    lexTimer.end(tokens.size(), "tokens");
+    if (recording) lexEvent.end();
+    if (recording && lexEvent.shouldCommit()) {
+      lexEvent.sourceLength = syntax.length();
+      lexEvent.tokens = tokens.size();
+      lexEvent.errors = reporter.getErrors().size() - errorsBefore;
+      lexEvent.commit();
+    }
+
+    var parseTimer = stats.begin("parse");
+    var parseEvent = recording ? new ParseEvent() : null;
+    if (recording) parseEvent.begin();
+    errorsBefore = reporter.getErrors().size();
+
+    var ast = new Parser(reporter, tokens).parse();
+
+    // Trees with syntax errors are missing nodes, so they can't be walked
+    var errors = reporter.getErrors().size() - errorsBefore;
+    var nodes = errors == 0 ? Events.countNodes(ast) : 0;
+
+    parseTimer.end(nodes, "nodes");
+    if (recording) parseEvent.end();
+    if (recording && parseEvent.shouldCommit()) {
+      parseEvent.nodes = nodes;
+      parseEvent.errors = errors;
+      parseEvent.commit();
+    }
+
+    return ast;
+  }
+
+  /**
+   * Lexes and parses a program while it is being read, without ever holding all of its source or
+   * tokens in memory. Errors from lexing are reported as the parser reaches them, rather than all
+   * before any parse errors. The reader is not closed.
+   */
+  public static ProgramAst parse(ErrorReporter reporter, Reader source) {
+    return parse(reporter, source, new PipelineStats());
+  }
+
+  /**
+   * Same as {@link #parse(ErrorReporter, Reader)}, but records how long it took in {@code stats}.
+   * Lexing happens bit by bit while parsing, so it is not timed as a stage of its own.
+   */
+  public static ProgramAst parse(ErrorReporter reporter, Reader source, PipelineStats stats) {
+    var recording = Events.isRecorderRunning();
+
+    var parseTimer = stats.begin("parse");
+    var parseEvent = recording ? new ParseEvent() : null;
+    if (recording) parseEvent.begin();
+    var errorsBefore = reporter.getErrors().size();
+
+    var tokens = TokenStream.streaming(reporter, new Lexer(source));
+    var ast = new Parser(reporter, tokens).parse();
+
+    var errors = reporter.getErrors().size() - errorsBefore;
+    var nodes = errors == 0 ? Events.countNodes(ast) : 0;
+
+    parseTimer.end(nodes, "nodes");
+    if (recording) parseEvent.end();
+    if (recording && parseEvent.shouldCommit()) {
+      parseEvent.nodes = nodes;
+      parseEvent.errors = errors;
+      parseEvent.commit();
+    }
+
+    return ast;
   }
 
   public static ProgramAst parseOrThrow(String syntax) throws CompileErrorsException {
@@ -100,20 +188,24 @@ public class Parser {
     return ast;
   }
 
-  /** Attempts to parse a token or throws if the wrong token was found instead. */
-  @SuppressWarnings("unchecked")
-  private <T extends Token> T expect(Class<T> cls) throws ParseException {
-    var next = tokens.peek();
-
-    if (!cls.isInstance(next)) {
-      throw new ParseException(cls.getSimpleName(), next);
+  /**
+   * Attempts to parse a token or throws if the wrong token was found instead. Returns the index of
+   * the token, which can be used to look up its value.
+   */
+  private int expect(TokenKind kind) throws ParseException {
+    if (tokens.peekKind() != kind) {
+      throw unexpected(kind.getTokenClass().getSimpleName());
     }
 
     // We don't want to report two adjacent errors, but if there is at least one valid token between
     // them, then we should report them both
     errorGuard.reset();
 
-    return (T) tokens.next();
+    return tokens.advance();
+  }
+
+  private ParseException unexpected(String expected) {
+    return new ParseException(expected, tokens.getBuffer(), tokens.index());
   }
 
   /**
@@ -122,16 +214,18 @@ public class Parser {
    * choice between different rules, we can try one rule and then another if the first fails.
    */
   private <T> SpeculateResult<T> speculate(ParseFunction<T> f) {
-    var oldTokens = new TokenStream(tokens);
+    var mark = tokens.mark();
     var oldErrorGuard = new Once(errorGuard);
 
     try {
       var result = f.parse(this);
       return new SpeculateResult<>(result, true);
     } catch (ParseException e) {
-      tokens = oldTokens;
+      tokens.reset(mark);
       errorGuard = oldErrorGuard;
       return new SpeculateResult<>(null, false);
+    } finally {
+      tokens.release();
     }
   }
 
@@ -142,7 +236,7 @@ public class Parser {
       if (result.success) return result.value;
     }
 
-    throw new ParseException(expected, tokens.peek());
+    throw unexpected(expected);
   }
 
   /**
@@ -171,8 +265,8 @@ public class Parser {
     return recover(f, null);
   }
 
-  private <T extends Token> T recover(Class<T> cls) {
-    return recover(parser -> parser.expect(cls));
+  private void recover(TokenKind kind) {
+    recover(parser -> parser.expect(kind));
   }
 
   /**
@@ -181,14 +275,13 @@ public class Parser {
    *
    * <p>Rules are required to consume at least one token when they complete successfully.
    */
-  private <T> List<T> repeat(
-      Class<? extends Token> until, Class<? extends Token> sep, ParseFunction<T> f) {
+  private <T> List<T> repeat(TokenKind until, TokenKind sep, ParseFunction<T> f) {
     var results = new ArrayList<T>();
     // This tracks whether we should request a separator token on the next iteration
     var needsSeparator = false;
 
     // We also need to bail out on EOF
-    while (!until.isInstance(tokens.peek()) && !(tokens.peek() instanceof EofToken)) {
+    while (tokens.peekKind() != until && tokens.peekKind() != TokenKind.EOF) {
       if (needsSeparator) {
         recover(sep);
         needsSeparator = false;
@@ -206,18 +299,18 @@ public class Parser {
       // There are some edge-cases where an infinite loop would occur, e.g. if the repeated rule
       // fails without consuming input
       if (!madeProgress) {
-        tokens.next();
+        tokens.advance();
       }
     }
 
     return results;
   }
 
-  /** Same as {@link #repeat(Class, Class, ParseFunction)} but without the separator token. */
-  private <T> List<T> repeat(Class<? extends Token> until, ParseFunction<T> f) {
+  /** Same as {@link #repeat(TokenKind, TokenKind, ParseFunction)} but without the separator. */
+  private <T> List<T> repeat(TokenKind until, ParseFunction<T> f) {
     var results = new ArrayList<T>();
 
-    while (!until.isInstance(tokens.peek()) && !(tokens.peek() instanceof EofToken)) {
+    while (tokens.peekKind() != until && tokens.peekKind() != TokenKind.EOF) {
       var before = tokens.getNextPosition();
       var result = recover(f);
       var madeProgress = tokens.getNextPosition() != before;
@@ -227,7 +320,7 @@ public class Parser {
       }
 
       if (!madeProgress) {
-        tokens.next();
+        tokens.advance();
       }
     }
 
@@ -246,8 +339,8 @@ public class Parser {
 
   public ProgramAst parseProgram() {
     var span = new SpanTracker(tokens);
-    var functions = repeat(EofToken.class, Parser::parseFunction);
-    return new ProgramAst(span.finish(), functions);
+    var functions = repeat(TokenKind.EOF, Parser::parseFunction);
+    return new ProgramAst(span.finish(), functions, tokens.getBuffer().getSymbols());
   }
 
   private FunctionAst parseFunction() {
@@ -262,9 +355,9 @@ public class Parser {
   }
 
   private List<VarDeclAst> parseParams() throws ParseException {
-    expect(OpenParenToken.class);
-    var params = repeat(CloseParenToken.class, CommaToken.class, Parser::parseVarDecl);
-    recover(CloseParenToken.class);
+    expect(TokenKind.OPEN_PAREN);
+    var params = repeat(TokenKind.CLOSE_PAREN, TokenKind.COMMA, Parser::parseVarDecl);
+    recover(TokenKind.CLOSE_PAREN);
     return params;
   }
 
@@ -283,16 +376,16 @@ public class Parser {
 
   private IntTyAst parseIntTy() throws ParseException {
     var span = new SpanTracker(tokens);
-    expect(KwIntToken.class);
+    expect(TokenKind.KW_INT);
     return new IntTyAst(span.finish());
   }
 
   private BlockAst parseBlock() throws ParseException {
     var span = new SpanTracker(tokens);
 
-    expect(OpenBraceToken.class);
-    var stmts = repeat(CloseBraceToken.class, Parser::parseStmt);
-    recover(CloseBraceToken.class);
+    expect(TokenKind.OPEN_BRACE);
+    var stmts = repeat(TokenKind.CLOSE_BRACE, Parser::parseStmt);
+    recover(TokenKind.CLOSE_BRACE);
 
     return new BlockAst(span.finish(), stmts);
   }
@@ -306,7 +399,7 @@ public class Parser {
     var span = new SpanTracker(tokens);
 
     var decl = parseVarDecl();
-    recover(SemicolonToken.class);
+    recover(TokenKind.SEMICOLON);
 
     return new VarDeclStmtAst(span.finish(), decl);
   }
@@ -314,9 +407,9 @@ public class Parser {
   private ReturnStmtAst parseReturnStmt() throws ParseException {
     var span = new SpanTracker(tokens);
 
-    expect(KwReturnToken.class);
+    expect(TokenKind.KW_RETURN);
     var expr = recover(Parser::parseExpr);
-    recover(SemicolonToken.class);
+    recover(TokenKind.SEMICOLON);
 
     return new ReturnStmtAst(span.finish(), expr);
   }
@@ -325,7 +418,7 @@ public class Parser {
     var span = new SpanTracker(tokens);
 
     var expr = parseExpr();
-    recover(SemicolonToken.class);
+    recover(TokenKind.SEMICOLON);
 
     return new ExprStmtAst(span.finish(), expr);
   }
@@ -340,7 +433,7 @@ public class Parser {
     var expr = parsePrefixedExpr();
 
     while (true) {
-      var power = BindingPower.continuing(tokens.peek());
+      var power = BindingPower.continuing(tokens.peekKind());
 
       if (power == null || power.left() < minBindingPower) {
         return expr;
@@ -353,24 +446,24 @@ public class Parser {
   private ExprAst parsePrefixedExpr() throws ParseException {
     var span = new SpanTracker(tokens);
 
-    var power = BindingPower.prefix(tokens.peek());
+    var power = BindingPower.prefix(tokens.peekKind());
     if (power == null) return parseAtomicExpr();
 
-    var op = tokens.next();
+    var op = tokens.getBuffer().kind(tokens.advance());
     var rhs = recover(parser -> parser.parseExpr(power.right()));
 
     return switch (op) {
-      case MinusToken ignored -> new NegExprAst(span.finish(), rhs);
+      case MINUS -> new NegExprAst(span.finish(), rhs);
       default -> throw new AssertionError();
     };
   }
 
   private ExprAst continueExpr(SpanTracker span, ExprAst lhs, int rhsPower) {
-    var op = tokens.next();
+    var op = tokens.getBuffer().kind(tokens.advance());
 
-    if (op instanceof QuestionToken) {
+    if (op == TokenKind.QUESTION) {
       var ifTrue = recover(parser -> parseExpr(0));
-      recover(ColonToken.class);
+      recover(TokenKind.COLON);
       var ifFalse = recover(parser -> parseExpr(rhsPower));
       return new TernaryExprAst(span.finish(), lhs, ifTrue, ifFalse);
     }
@@ -378,13 +471,13 @@ public class Parser {
     var rhs = recover(parser -> parser.parseExpr(rhsPower));
 
     return switch (op) {
-      case PlusToken ignored -> new AddExprAst(span.finish(), lhs, rhs);
-      case MinusToken ignored -> new SubExprAst(span.finish(), lhs, rhs);
-      case StarToken ignored -> new MulExprAst(span.finish(), lhs, rhs);
-      case SlashToken ignored -> new DivExprAst(span.finish(), lhs, rhs);
-      case AndAndToken ignored -> new LogicalAndExprAst(span.finish(), lhs, rhs);
-      case OrOrToken ignored -> new LogicalOrExprAst(span.finish(), lhs, rhs);
-      case EqualsToken ignored -> new AssignmentExprAst(span.finish(), requireLValue(lhs), rhs);
+      case PLUS -> new AddExprAst(span.finish(), lhs, rhs);
+      case MINUS -> new SubExprAst(span.finish(), lhs, rhs);
+      case STAR -> new MulExprAst(span.finish(), lhs, rhs);
+      case SLASH -> new DivExprAst(span.finish(), lhs, rhs);
+      case AND_AND -> new LogicalAndExprAst(span.finish(), lhs, rhs);
+      case OR_OR -> new LogicalOrExprAst(span.finish(), lhs, rhs);
+      case EQUALS -> new AssignmentExprAst(span.finish(), requireLValue(lhs), rhs);
       default -> throw new AssertionError();
     };
   }
@@ -399,18 +492,18 @@ public class Parser {
   }
 
   private ExprAst parseParenExpr() throws ParseException {
-    expect(OpenParenToken.class);
+    expect(TokenKind.OPEN_PAREN);
     var expr = recover(Parser::parseExpr);
-    recover(CloseParenToken.class);
+    recover(TokenKind.CLOSE_PAREN);
     return expr;
   }
 
   private CallExprAst parseCallExpr() throws ParseException {
     var span = new SpanTracker(tokens);
     var ident = parseIdent();
-    expect(OpenParenToken.class);
-    var args = repeat(CloseParenToken.class, CommaToken.class, Parser::parseExpr);
-    recover(CloseParenToken.class);
+    expect(TokenKind.OPEN_PAREN);
+    var args = repeat(TokenKind.CLOSE_PAREN, TokenKind.COMMA, Parser::parseExpr);
+    recover(TokenKind.CLOSE_PAREN);
 
     return new CallExprAst(span.finish(), ident, args);
   }
@@ -423,13 +516,14 @@ public class Parser {
 
   private IntLiteralExprAst parseIntLiteralExpr() throws ParseException {
     var span = new SpanTracker(tokens);
-    var token = expect(IntLiteralToken.class);
-    return new IntLiteralExprAst(span.finish(), token.getValue());
+    var token = expect(TokenKind.INT_LITERAL);
+    return new IntLiteralExprAst(span.finish(), tokens.getBuffer().value(token));
   }
 
   private IdentAst parseIdent() throws ParseException {
     var span = new SpanTracker(tokens);
-    var token = expect(IdentToken.class);
-    return new IdentAst(span.finish(), token.getContent());
+    var token = expect(TokenKind.IDENT);
+    var buffer = tokens.getBuffer();
+    return new IdentAst(span.finish(), buffer.getSymbols(), buffer.value(token));
   }
 }
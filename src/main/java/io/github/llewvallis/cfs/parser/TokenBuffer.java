@@ -0,0 +1,126 @@
+package io.github.llewvallis.cfs.parser;
+
+import io.github.llewvallis.cfs.ast.SymbolTable;
+import io.github.llewvallis.cfs.reporting.Span;
+import io.github.llewvallis.cfs.token.Token;
+import io.github.llewvallis.cfs.token.TokenKind;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * The tokens of a source file, packed into parallel arrays rather than stored as one object per
+ * token. This takes a fraction of the memory, which matters for very large sources. {@link Token}
+ * objects can still be created for individual tokens when they are needed.
+ *
+ * <p>Each token is referred to by its index. Identifiers are interned into {@link #getSymbols()} by
+ * the lexer, and their symbol is stored as their value.
+ *
+ * <p>A buffer holds every token unless told it may {@link #discardBefore(int)} some index, in which
+ * case the tokens before it may be dropped to make room for new ones, sliding the rest down. Only
+ * the indices of tokens still held are valid.
+ */
+public class TokenBuffer {
+
+  @Getter private final SymbolTable symbols = new SymbolTable();
+
+  /** The {@link TokenKind#ordinal()} of each token. */
+  private byte[] kinds;
+
+  private int[] starts;
+
+  private int[] ends;
+
+  /** The value of each integer literal, the symbol of each identifier, and zero otherwise. */
+  private int[] values;
+
+  /** The index of the first token held, which is stored at the start of the arrays. */
+  private int base = 0;
+
+  /** The index after the last token held. */
+  private int size = 0;
+
+  private int discardable = 0;
+
+  public TokenBuffer(int capacity) {
+    capacity = Math.max(16, capacity);
+    kinds = new byte[capacity];
+    starts = new int[capacity];
+    ends = new int[capacity];
+    values = new int[capacity];
+  }
+
+  void add(TokenKind kind, int start, int end, int value) {
+    if (size - base == kinds.length) makeRoom();
+
+    var offset = size - base;
+    kinds[offset] = (byte) kind.ordinal();
+    starts[offset] = start;
+    ends[offset] = end;
+    values[offset] = value;
+    size++;
+  }
+
+  /** Allows the tokens before {@code index} to be dropped. */
+  void discardBefore(int index) {
+    discardable = Math.max(discardable, index);
+  }
+
+  private void makeRoom() {
+    var dropped = discardable - base;
+
+    // Sliding down is only worth it if it frees a good chunk of the arrays, otherwise we would
+    // slide again almost straight away
+    if (dropped >= kinds.length / 2) {
+      var kept = size - discardable;
+      System.arraycopy(kinds, dropped, kinds, 0, kept);
+      System.arraycopy(starts, dropped, starts, 0, kept);
+      System.arraycopy(ends, dropped, ends, 0, kept);
+      System.arraycopy(values, dropped, values, 0, kept);
+      base = discardable;
+    } else {
+      var capacity = kinds.length * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  /** The number of tokens added so far, including any that have been dropped. */
+  public int size() {
+    return size;
+  }
+
+  /** The number of tokens that can be held before the arrays have to be grown. */
+  int capacity() {
+    return kinds.length;
+  }
+
+  public TokenKind kind(int index) {
+    return TokenKind.fromOrdinal(kinds[index - base]);
+  }
+
+  public int start(int index) {
+    return starts[index - base];
+  }
+
+  public int end(int index) {
+    return ends[index - base];
+  }
+
+  public int value(int index) {
+    return values[index - base];
+  }
+
+  /** The name of an identifier token. */
+  public String text(int index) {
+    return symbols.name(value(index));
+  }
+
+  /** Creates an object for a token, for when the packed representation is inconvenient. */
+  public Token token(int index) {
+    var kind = kind(index);
+    var text = kind == TokenKind.IDENT ? text(index) : null;
+    return kind.createToken(new Span(start(index), end(index)), text, value(index));
+  }
+}
@@ -2,28 +2,99 @@ package io.github.llewvallis.cfs.parser;
 
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
 import io.github.llewvallis.cfs.reporting.TokenError;
-import io.github.llewvallis.cfs.token.EofToken;
 import io.github.llewvallis.cfs.token.Token;
+import io.github.llewvallis.cfs.token.TokenKind;
 import io.github.llewvallis.cfs.util.Once;
-import java.util.ArrayList;
-import java.util.List;
+import lombok.Getter;
 
+/**
+ * A cursor over the tokens of a program. A position can be remembered with {@link #mark()} and
+ * rewound to later, which is how the parser backtracks.
+ *
+ * <p>The parser works with the kind and index of each token, and only asks for {@link Token}
+ * objects when reporting errors.
+ *
+ * <p>A {@linkplain #streaming(ErrorReporter, Lexer) streaming} stream lexes tokens as they are
+ * needed, and forgets them once they are behind both the cursor and every {@link #mark()}. Its
+ * memory use then depends on how far the parser may backtrack, rather than on the size of the
+ * input.
+ */
 public class TokenStream {
 
-  private final List<Token> tokens;
+  private static final int INITIAL_CAPACITY = 256;
+
+  @Getter private final TokenBuffer buffer;
+
+  private final ErrorReporter reporter;
+
+  /** Where tokens come from, or null once the end of the input has been lexed. */
+  private Lexer lexer;
+
+  private final Once errorGuard = new Once();
+
+  private final boolean streaming;
+
   private int index = 0;
 
+  /** The number of marks which have not been released yet. */
+  private int marks = 0;
+
+  /** The position of the first mark which has not been released yet. */
+  private int oldestMark = 0;
+
+  /** Lexes the whole input up front. */
   public TokenStream(ErrorReporter reporter, Lexer lexer) {
-    tokens = new ArrayList<>();
+    // Real programs have a token every few characters, so this rarely needs to grow more than once
+    this(reporter, lexer, false, lexer.getLengthHint() / 4);
+    while (this.lexer != null) pull();
+  }
 
-    var errorGuard = new Once();
+  private TokenStream(ErrorReporter reporter, Lexer lexer, boolean streaming, int capacity) {
+    this.buffer = new TokenBuffer(Math.max(INITIAL_CAPACITY, capacity));
+    this.reporter = reporter;
+    this.lexer = lexer;
+    this.streaming = streaming;
+    pull();
+  }
+
+  /** Creates a stream which only lexes tokens as the parser reaches them. */
+  public static TokenStream streaming(ErrorReporter reporter, Lexer lexer) {
+    return new TokenStream(reporter, lexer, true, INITIAL_CAPACITY);
+  }
+
+  /**
+   * Copies a stream, which must have already lexed all of its input. The copy shares the same
+   * tokens, but moves independently.
+   */
+  public TokenStream(TokenStream other) {
+    if (other.lexer != null) {
+      throw new IllegalStateException("cannot copy a stream which is still lexing");
+    }
+
+    this.buffer = other.buffer;
+    this.reporter = other.reporter;
+    this.streaming = false;
+    this.index = other.index;
+  }
+
+  /** Lexes one more token into the buffer. */
+  private void pull() {
+    if (streaming) {
+      // The token before the oldest position is kept too, for getLastPosition
+      var keepFrom = marks > 0 ? oldestMark : index;
+      buffer.discardBefore(keepFrom - 1);
+    }
 
     while (true) {
       try {
-        var token = lexer.next();
-        tokens.add(token);
+        var kind = lexer.nextKind();
+        var value =
+            kind == TokenKind.IDENT ? lexer.intern(buffer.getSymbols()) : lexer.getTokenValue();
+        buffer.add(kind, lexer.getTokenStart(), lexer.getTokenEnd(), value);
         errorGuard.reset();
-        if (token instanceof EofToken) break;
+
+        if (kind == TokenKind.EOF) lexer = null;
+        return;
       } catch (LexException e) {
         if (errorGuard.once()) {
           var error = new TokenError(e.getPosition());
@@ -33,28 +104,63 @@ public class TokenStream {
     }
   }
 
-  public TokenStream(TokenStream other) {
-    this.tokens = other.tokens;
-    this.index = other.index;
+  /** The number of tokens lexed so far, including the final {@link TokenKind#EOF} if reached. */
+  public int size() {
+    return buffer.size();
   }
 
-  public Token next() {
-    var result = peek();
-    if (index + 1 < tokens.size()) index++;
+  public TokenKind peekKind() {
+    return buffer.kind(index);
+  }
+
+  /** Moves past the next token, unless it is the end of the input, and returns its index. */
+  public int advance() {
+    var result = index;
+    if (index + 1 == buffer.size() && lexer != null) pull();
+    if (index + 1 < buffer.size()) index++;
     return result;
   }
 
+  /** The index of the next token in {@link #getBuffer()}. */
+  public int index() {
+    return index;
+  }
+
+  /**
+   * Remembers the current position so that it can be returned to with {@link #reset(int)}. Tokens
+   * from the mark onwards are kept until it is released with {@link #release()}. Marks must be
+   * released in the opposite order they were made.
+   */
+  public int mark() {
+    if (marks++ == 0) oldestMark = index;
+    return index;
+  }
+
+  /** Returns to a position from {@link #mark()}, which must not have been released yet. */
+  public void reset(int mark) {
+    index = mark;
+  }
+
+  /** Releases the most recent {@link #mark()}. */
+  public void release() {
+    marks--;
+  }
+
+  public Token next() {
+    return buffer.token(advance());
+  }
+
   public Token peek() {
-    return tokens.get(index);
+    return buffer.token(index);
   }
 
   public int getNextPosition() {
-    return peek().getSpan().start();
+    return buffer.start(index);
   }
 
   public int getLastPosition() {
     if (index != 0) {
-      return tokens.get(index - 1).getSpan().end();
+      return buffer.end(index - 1);
     } else {
       return 0;
     }
@@ -0,0 +1,106 @@
+package io.github.llewvallis.cfs.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 text straight out of a byte buffer, such as a memory-mapped file, decoding only as
+ * much as is asked for at a time. Combined with a {@link Lexer}, this lexes a file without ever
+ * copying the whole of it onto the heap.
+ *
+ * <p>Malformed input is replaced with U+FFFD, as {@link String#String(byte[],
+ * java.nio.charset.Charset)} does, so positions agree with those in the decoded string.
+ */
+public class Utf8Reader extends Reader {
+
+  private final ByteBuffer bytes;
+
+  private final CharsetDecoder decoder =
+      StandardCharsets.UTF_8
+          .newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /** Room to decode a single code point into, for reads with space for only one character. */
+  private final CharBuffer pair = CharBuffer.allocate(2);
+
+  /**
+   * The second half of a surrogate pair that didn't fit into the last read, or zero if there is
+   * none. It is returned first by the next read.
+   */
+  private char pendingLow = 0;
+
+  public Utf8Reader(ByteBuffer bytes) {
+    this.bytes = bytes;
+  }
+
+  /** Maps a file into memory for reading. The file does not need to stay open. */
+  public static Utf8Reader map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to compile");
+      }
+
+      return new Utf8Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @Override
+  public int read(char[] chars, int offset, int length) {
+    if (length == 0) return 0;
+
+    var end = offset + length;
+    var i = offset;
+
+    if (pendingLow != 0) {
+      chars[i++] = pendingLow;
+      pendingLow = 0;
+    }
+
+    if (!bytes.hasRemaining()) return i == offset ? -1 : i - offset;
+
+    // Source is almost always ASCII, where each byte is a character as it is
+    var position = bytes.position();
+    var limit = bytes.limit();
+
+    while (i < end && position < limit) {
+      var b = bytes.get(position);
+      if (b < 0) break;
+
+      chars[i++] = (char) b;
+      position++;
+    }
+
+    bytes.position(position);
+
+    if (i < end && position < limit) {
+      var out = CharBuffer.wrap(chars, i, end - i);
+      decoder.decode(bytes, out, true);
+      i = out.position();
+    }
+
+    // A code point outside the BMP doesn't fit into a single char, so the decoder makes no progress
+    // when that is all the space left. Decode it on its own and hold on to the second half
+    if (i == offset && bytes.hasRemaining()) {
+      pair.clear();
+      decoder.decode(bytes, pair, true);
+      pair.flip();
+
+      chars[i++] = pair.get();
+      if (pair.hasRemaining()) pendingLow = pair.get();
+    }
+
+    return i - offset;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,84 @@
+package io.github.llewvallis.cfs.reporting;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How long each stage of compiling and running a program took, and how much it allocated. Stages
+ * are recorded in the order they finished.
+ *
+ * <p>Allocations are only counted on the thread running a stage, so work a stage hands off to
+ * other threads is not included.
+ */
+public class PipelineStats {
+
+  /**
+   * @param allocatedBytes the bytes allocated by the thread running the stage, or -1 if the JVM
+   *     cannot measure allocations
+   * @param items the number of things the stage produced or processed, described by {@code unit}
+   */
+  public record Stage(String name, long nanos, long allocatedBytes, long items, String unit) {}
+
+  /** A stage that has started, but not yet been recorded. */
+  public class Timer {
+
+    private final String name;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startBytes = allocatedBytes();
+
+    private Timer(String name) {
+      this.name = name;
+    }
+
+    public void end(long items, String unit) {
+      var nanos = System.nanoTime() - startNanos;
+      var bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+      stages.add(new Stage(name, nanos, bytes, items, unit));
+    }
+  }
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final List<Stage> stages = new ArrayList<>();
+
+  public Timer begin(String name) {
+    return new Timer(name);
+  }
+
+  public List<Stage> getStages() {
+    return Collections.unmodifiableList(stages);
+  }
+
+  private static long allocatedBytes() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean threads
+        && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    return -1;
+  }
+
+  /** Renders the stages as a table, one stage per line. */
+  public String format() {
+    var result = new StringBuilder();
+    result.append(
+        String.format("%-20s %12s %12s %16s%n", "stage", "time ms", "alloc KiB", "items"));
+
+    for (var stage : stages) {
+      var allocated =
+          stage.allocatedBytes() < 0 ? "-" : String.format("%.1f", stage.allocatedBytes() / 1024.0);
+
+      result.append(
+          String.format(
+              "%-20s %12.3f %12s %16s%n",
+              stage.name(), stage.nanos() / 1e6, allocated, stage.items() + " " + stage.unit()));
+    }
+
+    return result.toString();
+  }
+}
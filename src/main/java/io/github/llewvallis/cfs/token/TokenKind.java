@@ -0,0 +1,77 @@
+package io.github.llewvallis.cfs.token;
+
+import io.github.llewvallis.cfs.reporting.Span;
+import lombok.Getter;
+
+/**
+ * What sort of token something is, without any of its data. This lets tokens be stored compactly as
+ * plain numbers, and only turned into {@link Token} objects when one is needed, such as for an
+ * error message.
+ */
+public enum TokenKind {
+  EOF(EofToken.class),
+  IDENT(IdentToken.class),
+  INT_LITERAL(IntLiteralToken.class),
+  KW_INT(KwIntToken.class),
+  KW_RETURN(KwReturnToken.class),
+  OPEN_PAREN(OpenParenToken.class),
+  CLOSE_PAREN(CloseParenToken.class),
+  OPEN_BRACE(OpenBraceToken.class),
+  CLOSE_BRACE(CloseBraceToken.class),
+  QUESTION(QuestionToken.class),
+  COLON(ColonToken.class),
+  SEMICOLON(SemicolonToken.class),
+  COMMA(CommaToken.class),
+  EQUALS(EqualsToken.class),
+  PLUS(PlusToken.class),
+  MINUS(MinusToken.class),
+  STAR(StarToken.class),
+  SLASH(SlashToken.class),
+  AND_AND(AndAndToken.class),
+  OR_OR(OrOrToken.class);
+
+  private static final TokenKind[] VALUES = values();
+
+  /** The class of tokens of this kind. */
+  @Getter private final Class<? extends Token> tokenClass;
+
+  TokenKind(Class<? extends Token> tokenClass) {
+    this.tokenClass = tokenClass;
+  }
+
+  /** The inverse of {@link #ordinal()}, without copying the array of values each time. */
+  public static TokenKind fromOrdinal(int ordinal) {
+    return VALUES[ordinal];
+  }
+
+  /**
+   * Creates a token of this kind.
+   *
+   * @param text the token's text, only used by identifiers
+   * @param value the token's value, only used by integer literals
+   */
+  public Token createToken(Span span, String text, int value) {
+    return switch (this) {
+      case EOF -> new EofToken(span);
+      case IDENT -> new IdentToken(span, text);
+      case INT_LITERAL -> new IntLiteralToken(span, value);
+      case KW_INT -> new KwIntToken(span);
+      case KW_RETURN -> new KwReturnToken(span);
+      case OPEN_PAREN -> new OpenParenToken(span);
+      case CLOSE_PAREN -> new CloseParenToken(span);
+      case OPEN_BRACE -> new OpenBraceToken(span);
+      case CLOSE_BRACE -> new CloseBraceToken(span);
+      case QUESTION -> new QuestionToken(span);
+      case COLON -> new ColonToken(span);
+      case SEMICOLON -> new SemicolonToken(span);
+      case COMMA -> new CommaToken(span);
+      case EQUALS -> new EqualsToken(span);
+      case PLUS -> new PlusToken(span);
+      case MINUS -> new MinusToken(span);
+      case STAR -> new StarToken(span);
+      case SLASH -> new SlashToken(span);
+      case AND_AND -> new AndAndToken(span);
+      case OR_OR -> new OrOrToken(span);
+    };
+  }
+}
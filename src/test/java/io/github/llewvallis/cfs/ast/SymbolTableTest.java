@@ -0,0 +1,80 @@
+package io.github.llewvallis.cfs.ast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SymbolTableTest {
+
+  @Test
+  void symbolsAreDenseAndStable() {
+    var symbols = new SymbolTable();
+
+    assertEquals(0, symbols.intern("foo"));
+    assertEquals(1, symbols.intern("bar"));
+    assertEquals(0, symbols.intern("foo"));
+    assertEquals(2, symbols.size());
+    assertEquals("bar", symbols.name(1));
+  }
+
+  @Test
+  void rangesAreInternedLikeStrings() {
+    var symbols = new SymbolTable();
+    var source = "int foo(int bar) { return foo; }".toCharArray();
+
+    var foo = symbols.intern(source, 4, 7 - 4);
+    assertEquals(foo, symbols.intern(source, 26, 29 - 26));
+    assertEquals(foo, symbols.lookup("foo"));
+    assertEquals(symbols.intern(source, 12, 15 - 12), symbols.lookup("bar"));
+    assertEquals(-1, symbols.lookup("baz"));
+  }
+
+  @Test
+  void surviveGrowing() {
+    var symbols = new SymbolTable();
+
+    for (var i = 0; i < 1000; i++) {
+      assertEquals(i, symbols.intern("name" + i));
+    }
+
+    for (var i = 0; i < 1000; i++) {
+      assertEquals(i, symbols.lookup("name" + i));
+      assertEquals("name" + i, symbols.name(i));
+    }
+  }
+
+  @Test
+  void parsedIdentifiersShareSymbols() throws CompileErrorsException {
+    var ast = Parser.parseOrThrow("int foo(int a) { return foo(a); }");
+    var function = ast.getFunction("foo");
+    var call = (CallExprAst) ((ReturnStmtAst) function.getBody().getStmts().get(0)).getValue();
+
+    var symbols = ast.getSymbols();
+    assertEquals(2, symbols.size());
+    assertEquals(symbols.lookup("foo"), call.getFunction().lookupIn(symbols));
+    assertSame(function.getName().getContent(), call.getFunction().getContent());
+  }
+
+  @Test
+  void identifiersFromElsewhereCompareByName() throws CompileErrorsException {
+    var ast = Parser.parseOrThrow("int foo() {}");
+    var other = Parser.parseOrThrow("int bar() {} int foo() {}");
+
+    var name = ast.getFunction("foo").getName();
+    assertEquals(new IdentAst(null, "foo"), name);
+    assertEquals(other.getFunction("foo").getName(), name);
+    assertNotEquals(other.getFunction("bar").getName(), name);
+  }
+
+  @Test
+  void handBuiltProgramsCanFindFunctions() {
+    var foo = new FunctionAst(null, new IdentAst(null, "foo"), List.of(), null, null);
+    var ast = new ProgramAst(null, List.of(foo));
+
+    assertSame(foo, ast.getFunction("foo"));
+    assertNull(ast.getFunction("bar"));
+  }
+}
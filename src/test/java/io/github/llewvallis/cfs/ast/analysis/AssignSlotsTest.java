@@ -0,0 +1,45 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.llewvallis.cfs.ast.VarDeclAst;
+import io.github.llewvallis.cfs.ast.VarDeclStmtAst;
+import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AssignSlotsTest {
+
+  @Test
+  void paramsAreAssignedBeforeLocals() throws CompileErrorsException {
+    var reporter = new ErrorReporter();
+    var ast = Parser.parseOrThrow("int main(int a, int b) { int c; int d; }");
+    ast.accept(new AssignSlots(reporter));
+    reporter.assertNoErrors();
+
+    var function = ast.getFunction("main");
+    var locals =
+        function.getBody().getStmts().stream()
+            .map(stmt -> ((VarDeclStmtAst) stmt).getDecl())
+            .toList();
+
+    assertEquals(List.of(0, 1), function.getParams().stream().map(VarDeclAst::getSlot).toList());
+    assertEquals(List.of(2, 3), locals.stream().map(VarDeclAst::getSlot).toList());
+    assertEquals(4, function.getFrameSize());
+  }
+
+  @Test
+  void slotsArePerFunction() throws CompileErrorsException {
+    var reporter = new ErrorReporter();
+    var ast =
+        Parser.parseOrThrow("int foo(int a, int b) {} int bar(int c) { int d; } int baz() {}");
+    ast.accept(new AssignSlots(reporter));
+
+    assertEquals(2, ast.getFunction("foo").getFrameSize());
+    assertEquals(2, ast.getFunction("bar").getFrameSize());
+    assertEquals(0, ast.getFunction("baz").getFrameSize());
+    assertEquals(0, ast.getFunction("bar").getParams().get(0).getSlot());
+  }
+}
@@ -0,0 +1,76 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CheckInitializationTest {
+
+  private static ProgramAst analyze(String source) throws CompileErrorsException {
+    var reporter = new ErrorReporter();
+    var ast = Parser.parseOrThrow(source);
+    new Analyzer(reporter).analyze(ast);
+    reporter.assertNoErrors();
+    return ast;
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int main(int a) { return a; }",
+        "int main() { int a; a = 1; return a; }",
+        "int main() { int a; 1 ? (a = 1) : (a = 2); return a; }",
+        "int main() { int a; (a = 1) && 0; return a; }",
+        "int main() { int a; a = 1; return 0 && a; }",
+      })
+  void definitelyAssignedReadsAreNotChecked(String source) throws CompileErrorsException {
+    var ast = analyze(source);
+    var function = ast.getFunction("main");
+    var read = ast.findDescendant(IntoRValueExprAst.class);
+
+    assertFalse(((VarExprAst) read.getLValue()).isCheckInitialized());
+    assertEquals(1, function.getFrameSize());
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int main() { int a; return a; }",
+        "int main() { int a; 1 ? (a = 1) : 0; return a; }",
+        "int main() { int a; 0 || (a = 1); return a; }",
+        "int main() { int a; return a = a; }",
+        "int main() { a = 1; int a; return a; }",
+      })
+  void possiblyUnassignedReadsAreChecked(String source) throws CompileErrorsException {
+    var ast = analyze(source);
+    var function = ast.getFunction("main");
+    var decl = ast.findDescendant(VarDeclAst.class);
+    var read = ast.findDescendant(IntoRValueExprAst.class);
+
+    assertTrue(((VarExprAst) read.getLValue()).isCheckInitialized());
+    assertEquals(1, decl.getInitSlot());
+    assertEquals(2, function.getFrameSize());
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int main() { return a; int a; }",
+        "int main() { a = 1; return a; int a; }",
+        "int main() { a = 1; int a; return a; }",
+        "int main() { return 0 && a; int a; }",
+      })
+  void usesBeforeDeclarationAreChecked(String source) throws CompileErrorsException {
+    var ast = analyze(source);
+
+    // Only uses that are reached fail, so the program still compiles
+    var early = ast.findDescendant(VarExprAst.class);
+    assertTrue(early.isCheckInitialized());
+    assertEquals(1, ast.findDescendant(VarDeclAst.class).getInitSlot());
+  }
+}
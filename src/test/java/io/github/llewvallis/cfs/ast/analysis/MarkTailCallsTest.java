@@ -0,0 +1,68 @@
+package io.github.llewvallis.cfs.ast.analysis;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.ast.*;
+import io.github.llewvallis.cfs.parser.Parser;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.ErrorReporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MarkTailCallsTest {
+
+  private static ProgramAst analyze(String source) throws CompileErrorsException {
+    var reporter = new ErrorReporter();
+    var ast = Parser.parseOrThrow(source);
+    new Analyzer(reporter).analyze(ast);
+    reporter.assertNoErrors();
+    return ast;
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int f(int n) { return f(n - 1); }",
+        "int f(int n) { return n ? f(n - 1) : 0; }",
+        "int f(int n) { return n ? 0 : (n ? 1 : f(n - 1)); }",
+        "int f(int n) { return n && f(n - 1); }",
+        "int f(int n) { return n || f(n - 1); }",
+      })
+  void selfCallsInTailPositionAreMarked(String source) throws CompileErrorsException {
+    var ast = analyze(source);
+    var function = ast.getFunction("f");
+
+    assertTrue(ast.findDescendant(CallExprAst.class).isTailCall());
+    assertEquals(1, function.getTailCallSlot());
+    assertEquals(2, function.getFrameSize());
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int f(int n) { return 1 + f(n - 1); }",
+        "int f(int n) { return f(n - 1) ? 1 : 0; }",
+        "int f(int n) { return f(n - 1) && 1; }",
+        "int f(int n) { f(n - 1); return 0; }",
+        "int f(int n) { return g(n); } int g(int n) { return n; }",
+      })
+  void otherCallsAreNotMarked(String source) throws CompileErrorsException {
+    var ast = analyze(source);
+    var function = ast.getFunction("f");
+
+    assertFalse(ast.findDescendant(CallExprAst.class).isTailCall());
+    assertEquals(-1, function.getTailCallSlot());
+    assertEquals(1, function.getFrameSize());
+  }
+
+  @Test
+  void restartFlagComesAfterOtherSlots() throws CompileErrorsException {
+    var ast = analyze("int f(int n) { int a; return n ? f(a) : 0; }");
+    var function = ast.getFunction("f");
+
+    // n, a, the initialization flag of a, then the restart flag
+    assertEquals(3, function.getTailCallSlot());
+    assertEquals(4, function.getFrameSize());
+  }
+}
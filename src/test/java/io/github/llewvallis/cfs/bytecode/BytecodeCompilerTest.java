@@ -0,0 +1,80 @@
+package io.github.llewvallis.cfs.bytecode;
+
+import static io.github.llewvallis.cfs.bytecode.Opcodes.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class BytecodeCompilerTest {
+
+  private static BytecodeProgram compile(String source) throws CompileErrorsException {
+    return new BytecodeCompiler().compile(new CompilerDriver(source).analyze());
+  }
+
+  private static List<Integer> opcodes(BytecodeFunction function) {
+    var results = new ArrayList<Integer>();
+
+    for (var pc = 0; pc < function.getCodeLength(); pc += length(function.getCode(pc))) {
+      results.add(function.getCode(pc));
+    }
+
+    return results;
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int main(int a) { return a ? 1 : 2; }",
+        "int main(int a) { return a && 1; }",
+        "int main(int a) { return a || 1; }"
+      })
+  void controlFlowCompilesToConditionalJumps(String source) throws CompileErrorsException {
+    var opcodes = opcodes(compile(source).getFunctions().get(0));
+    assertTrue(opcodes.contains(JUMP_IF_ZERO) || opcodes.contains(JUMP_IF_NOT_ZERO));
+  }
+
+  @Test
+  void callsReferToCalleeByIndex() throws CompileErrorsException {
+    var program = compile("int main() { return foo(1, 2); } int foo(int a, int b) { return a; }");
+    var main = program.getFunctions().get(0);
+
+    assertEquals(List.of(CONST, CONST, CALL, RETURN), opcodes(main));
+    assertEquals(1, main.getCode(6 + 2));
+    assertEquals(program.indexOf("foo"), 1);
+  }
+
+  @Test
+  void variablesLiveInTheirSlotRegisters() throws CompileErrorsException {
+    var program = compile("int main(int a) { int b; b = a; return b; }");
+    var main = program.getFunctions().get(0);
+
+    assertEquals(List.of(MOVE, RETURN), opcodes(main));
+    assertEquals(2, main.getSlotCount());
+    assertEquals(2, main.getRegisterCount());
+  }
+
+  @Test
+  void possiblyUninitializedReadsAreChecked() throws CompileErrorsException {
+    var program = compile("int main() { int a; return a; }");
+    assertEquals(List.of(CONST, CHECK_INIT, RETURN), opcodes(program.getFunctions().get(0)));
+  }
+
+  @Test
+  void disassemblyNamesFunctionsAndRegisters() throws CompileErrorsException {
+    var program = compile("int main(int a) { return main(a - 1); }");
+    var expected =
+        """
+        function main (params: 1, slots: 2, registers: 3)
+             0: add_imm r2, r0, -1
+             4: tail_call r2
+        """;
+
+    assertEquals(expected, Disassembler.disassemble(program));
+  }
+}
@@ -0,0 +1,88 @@
+package io.github.llewvallis.cfs.cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.EngineKind;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BatchRunnerTest {
+
+  private static final String SOURCE =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }"
+          + "int div(int a, int b) { return a / b; }"
+          + "int sum(int n) { return n ? n + sum(n - 1) : 0; }";
+
+  private static String runBatch(String function, String input, int threads) throws Exception {
+    return runBatch(EngineKind.INTERPRETER, function, input, threads);
+  }
+
+  private static String runBatch(EngineKind engine, String function, String input, int threads)
+      throws Exception {
+    var program = new CompilerDriver(SOURCE).compile(engine);
+    var out = new StringWriter();
+    var in = new BufferedReader(new StringReader(input));
+    new BatchRunner(program, function, threads).run(in, out);
+    return out.toString();
+  }
+
+  @Test
+  void outputKeepsInputOrder() throws Exception {
+    // Enough lines for many chunks, with the slowest inputs first so later chunks finish sooner
+    var input = new StringBuilder();
+    var expected = new StringBuilder();
+
+    for (var i = 0; i < 5000; i++) {
+      var n = i < 300 ? 20 : i % 10;
+      input.append(n).append('\n');
+      expected.append(fib(n)).append('\n');
+    }
+
+    assertEquals(expected.toString(), runBatch("fib", input.toString(), 4));
+  }
+
+  @Test
+  void argumentsMayBeSeparatedByCommasOrWhitespace() throws Exception {
+    assertEquals("5\n-3\n7\n", runBatch("div", "10, 2\n-9 3\n 14,\t2 \n", 2));
+  }
+
+  @Test
+  void failuresAreReportedOnTheirOwnLine() throws Exception {
+    var output = runBatch("div", "4,2\n1,0\nfoo,1\n9,3\n", 1);
+    assertEquals("2\nerror: division by zero\nerror: not an integer: foo\n3\n", output);
+  }
+
+  @Test
+  void stackOverflowsOnlyFailTheirOwnLine() throws Exception {
+    // Closures recurse on the Java stack, unlike the interpreter
+    var output = runBatch(EngineKind.CLOSURE, "sum", "10\n100000000\n3\n", 2);
+    assertEquals("55\nerror: stack overflow\n6\n", output);
+  }
+
+  @Test
+  void eachChunkIsFlushedOnceWritten() throws Exception {
+    var program = new CompilerDriver(SOURCE).compile(EngineKind.INTERPRETER);
+    var in = new BufferedReader(new StringReader("1\n".repeat(1000)));
+    var flushes = new AtomicInteger();
+
+    var out =
+        new StringWriter() {
+          @Override
+          public void flush() {
+            flushes.incrementAndGet();
+          }
+        };
+
+    new BatchRunner(program, "fib", 2).run(in, out);
+    assertEquals("1\n".repeat(1000), out.toString());
+    assertTrue(flushes.get() >= 4, "flushed " + flushes.get() + " times");
+  }
+
+  private static int fib(int n) {
+    return n < 2 ? n : fib(n - 1) + fib(n - 2);
+  }
+}
@@ -0,0 +1,122 @@
+package io.github.llewvallis.cfs.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import java.nio.file.Files;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+class EventsTest {
+
+  private static List<RecordedEvent> record(Executable action) throws Throwable {
+    var file = Files.createTempFile("cfs", ".jfr");
+
+    try (var recording = new Recording()) {
+      recording.enable(LexEvent.class);
+      recording.enable(ParseEvent.class);
+      recording.enable(AnalysisPassEvent.class);
+      recording.enable(GuestCallEvent.class);
+      recording.start();
+
+      action.execute();
+
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals("io.github.llewvallis.cfs." + name))
+        .toList();
+  }
+
+  @Test
+  void compileStagesAreRecorded() throws Throwable {
+    var events = record(() -> new CompilerDriver("int main() { return 1 + 2; }").analyze());
+
+    var lex = named(events, "Lex");
+    assertEquals(1, lex.size());
+    assertEquals(12, lex.getFirst().getInt("tokens"));
+    assertEquals(28, lex.getFirst().getInt("sourceLength"));
+    assertEquals(0, lex.getFirst().getInt("errors"));
+
+    var parse = named(events, "Parse");
+    assertEquals(1, parse.size());
+    assertTrue(parse.getFirst().getInt("nodes") > 5);
+
+    var passes = named(events, "AnalysisPass").stream().map(e -> e.getString("pass")).toList();
+    assertEquals(
+        List.of(
+            "CollectNames",
+            "ResolveNames",
+            "CheckCallArity",
+            "AssignSlots",
+            "CheckInitialization",
+            "MarkTailCalls"),
+        passes);
+  }
+
+  @Test
+  void errorsAreCountedAgainstTheirStage() throws Throwable {
+    var events =
+        record(
+            () ->
+                assertThrows(
+                    CompileErrorsException.class,
+                    () -> new CompilerDriver("int main() { return x; }").analyze()));
+
+    assertEquals(0, named(events, "Lex").getFirst().getInt("errors"));
+    assertEquals(0, named(events, "Parse").getFirst().getInt("errors"));
+
+    var errors = named(events, "AnalysisPass").stream().mapToInt(e -> e.getInt("errors")).sum();
+    assertEquals(1, errors);
+  }
+
+  @Test
+  void syntaxErrorsAreRecorded() throws Throwable {
+    var events =
+        record(
+            () ->
+                assertThrows(
+                    CompileErrorsException.class,
+                    () -> new CompilerDriver("int main() { return ; }").analyze()));
+
+    var parse = named(events, "Parse");
+    assertEquals(1, parse.size());
+    assertEquals(0, parse.getFirst().getInt("nodes"));
+    assertTrue(parse.getFirst().getInt("errors") > 0);
+  }
+
+  @Test
+  void guestCallsAreSampled() throws Throwable {
+    var source =
+        "int main() { return fib(20); } "
+            + "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+    var events =
+        record(
+            () ->
+                assertEquals(
+                    new IntValue(6765), new CompilerDriver(source).interpret("main", List.of())));
+
+    // fib(20) makes 21891 calls, of which one in every 4096 is sampled
+    var calls = named(events, "GuestCall");
+    assertEquals(5, calls.size());
+
+    for (var call : calls) {
+      assertEquals("fib", call.getString("function"));
+      assertTrue(call.getInt("depth") > 1);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class CompiledProgramTest {
+
+  private static final String FIB =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  private static final int[] FIBS = {0, 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377, 610};
+
+  @ParameterizedTest
+  @EnumSource(EngineKind.class)
+  void concurrentRunsOnVirtualThreads(EngineKind engine) throws Exception {
+    var program = new CompilerDriver(FIB).compile(engine);
+    var futures = new ArrayList<java.util.concurrent.Future<RValue>>();
+
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var i = 0; i < 200; i++) {
+        var n = i % FIBS.length;
+        futures.add(executor.submit(() -> program.run("fib", List.of(new IntValue(n)))));
+      }
+
+      for (var i = 0; i < futures.size(); i++) {
+        assertEquals(new IntValue(FIBS[i % FIBS.length]), futures.get(i).get());
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(EngineKind.class)
+  void runAsyncCompletesWithResultOrError(EngineKind engine) throws Exception {
+    var program = new CompilerDriver(FIB).compile(engine);
+
+    var result = program.runAsync("fib", List.of(new IntValue(15)));
+    assertEquals(new IntValue(610), result.get(10, TimeUnit.SECONDS));
+
+    var failure = program.runAsync("missing", List.of());
+    var e = assertThrows(Exception.class, () -> failure.get(10, TimeUnit.SECONDS));
+    assertInstanceOf(InterpretException.class, e.getCause());
+  }
+
+  @ParameterizedTest
+  @EnumSource(EngineKind.class)
+  void cancellingStopsARun(EngineKind engine) throws Exception {
+    // Every engine checks for interruption as it starts each function body, including tail calls
+    var program = new CompilerDriver("int spin(int n) { return spin(n + 1); }").compile(engine);
+
+    try (var executor = Executors.newSingleThreadExecutor()) {
+      var future = program.runAsync("spin", List.of(new IntValue(0)), executor);
+      Thread.sleep(50);
+
+      assertTrue(future.cancel(true));
+      assertThrows(CancellationException.class, future::join);
+
+      // The executor's only thread must be free again, and must not still be interrupted
+      var next = program.runAsync("spin", List.of(new IntValue(0)), executor);
+      var check = executor.submit(() -> Thread.currentThread().isInterrupted());
+      next.cancel(true);
+      assertFalse(check.get(10, TimeUnit.SECONDS));
+    }
+  }
+}
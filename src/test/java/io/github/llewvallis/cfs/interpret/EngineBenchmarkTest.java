@@ -0,0 +1,126 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.ast.ProgramAst;
+import io.github.llewvallis.cfs.interpret.vector.VectorEvaluator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the throughput of the execution engines on a call-heavy recursive program. These take a
+ * while, so they are excluded from normal test runs. Use {@code mvn test -Dgroups=benchmark
+ * -DexcludedGroups=} to run them.
+ */
+@Tag("benchmark")
+class EngineBenchmarkTest {
+
+  private static final String FIB =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  private static final List<RValue> ARGS = List.of(new IntValue(25));
+
+  /** The number of guest calls made by one run of {@code fib(25)}. */
+  private static final long CALLS_PER_RUN = 242785;
+
+  private static final Map<EngineKind, Double> callsPerSecond = new EnumMap<>(EngineKind.class);
+
+  @BeforeAll
+  static void measureAll() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+
+    for (var engine : EngineKind.values()) {
+      var throughput = measure(ast, engine);
+      callsPerSecond.put(engine, throughput);
+      System.out.printf("%-12s %,15.0f calls/s%n", engine, throughput);
+    }
+  }
+
+  private static double measure(ProgramAst ast, EngineKind kind) throws InterpretException {
+    var engine = kind.create(ast);
+
+    for (var i = 0; i < 20; i++) engine.run("fib", ARGS);
+
+    var runs = 0;
+    var start = System.nanoTime();
+    var elapsed = 0L;
+
+    while (elapsed < 2_000_000_000L) {
+      engine.run("fib", ARGS);
+      runs++;
+      elapsed = System.nanoTime() - start;
+    }
+
+    return runs * CALLS_PER_RUN / (elapsed / 1e9);
+  }
+
+  @Test
+  void vectorizedScoringIsFasterThanClosuresRowByRow() throws Exception {
+    var source =
+        "int score(int a, int b, int c) { return (a * 3 + b * 5 - c) / 7 + (a - b ? c * c : -c) +"
+            + " (b && c - a) + clamp(a * b); } int clamp(int x) { return x - 100 ? x : 100; }";
+    var ast = new CompilerDriver(source).analyze();
+
+    var rows = 1 << 20;
+    var columns = new int[3][rows];
+    var random = new Random(0);
+    for (var column : columns) {
+      for (var row = 0; row < rows; row++) column[row] = random.nextInt(200);
+    }
+
+    var evaluator = new VectorEvaluator(ast);
+    var vectorized = measureRows(rows, () -> evaluator.evaluate("score", columns));
+
+    var closures = EngineKind.CLOSURE.create(ast);
+    var perRow =
+        measureRows(
+            rows,
+            () -> {
+              for (var row = 0; row < rows; row++) {
+                var args =
+                    List.<RValue>of(
+                        new IntValue(columns[0][row]),
+                        new IntValue(columns[1][row]),
+                        new IntValue(columns[2][row]));
+                closures.run("score", args);
+              }
+            });
+
+    System.out.printf("%-12s %,15.0f rows/s%n", "VECTORIZED", vectorized);
+    System.out.printf("%-12s %,15.0f rows/s%n", "PER-ROW", perRow);
+    assertTrue(vectorized > perRow, "vectorized evaluation was only " + vectorized / perRow + "x");
+  }
+
+  private interface Batch {
+    void run() throws InterpretException;
+  }
+
+  private static double measureRows(int rows, Batch batch) throws InterpretException {
+    for (var i = 0; i < 5; i++) batch.run();
+
+    var runs = 0;
+    var start = System.nanoTime();
+    var elapsed = 0L;
+
+    while (elapsed < 2_000_000_000L) {
+      batch.run();
+      runs++;
+      elapsed = System.nanoTime() - start;
+    }
+
+    return (double) runs * rows / (elapsed / 1e9);
+  }
+
+  @Test
+  void closureEngineIsSeveralTimesFasterThanInterpreter() {
+    var speedup =
+        callsPerSecond.get(EngineKind.CLOSURE) / callsPerSecond.get(EngineKind.INTERPRETER);
+    assertTrue(speedup > 2, "closure engine was only " + speedup + "x faster");
+  }
+}
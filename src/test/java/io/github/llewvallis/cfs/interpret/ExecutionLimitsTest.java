@@ -0,0 +1,128 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class ExecutionLimitsTest {
+
+  private static final String SOURCE =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; } "
+          + "int loop(int n) { return n ? loop(n - 1) : 0; } "
+          + "int spin() { return spin(); }";
+
+  private static Interpreter interpreter() throws Exception {
+    return new Interpreter(new CompilerDriver(SOURCE).analyze());
+  }
+
+  @Test
+  void runningOutOfFuelFails() throws Exception {
+    var interpreter = interpreter();
+    var limits = ExecutionLimits.DEFAULT.withFuel(177);
+
+    // fib(10) makes exactly 177 calls
+    assertEquals(new IntValue(55), interpreter.run("fib", List.of(new IntValue(10)), limits));
+
+    var e =
+        assertThrows(
+            OutOfFuelException.class,
+            () -> interpreter.run("fib", List.of(new IntValue(11)), limits));
+    assertEquals(177, e.getFuel());
+    assertEquals("ran out of fuel after 177 calls", e.getMessage());
+  }
+
+  @Test
+  void selfTailCallsUseFuel() throws Exception {
+    var limits = ExecutionLimits.DEFAULT.withFuel(1000);
+    assertThrows(OutOfFuelException.class, () -> interpreter().run("spin", List.of(), limits));
+  }
+
+  @Test
+  void fuelIsRefilledForEachRun() throws Exception {
+    var interpreter = interpreter();
+    var limits = ExecutionLimits.DEFAULT.withFuel(6);
+
+    for (var i = 0; i < 3; i++) {
+      assertEquals(new IntValue(0), interpreter.run("loop", List.of(new IntValue(5)), limits));
+    }
+  }
+
+  @Test
+  void runningPastTheDeadlineFails() throws Exception {
+    var limits = ExecutionLimits.DEFAULT.withTimeout(Duration.ofMillis(50));
+    var start = System.nanoTime();
+
+    var e =
+        assertThrows(
+            DeadlineExceededException.class, () -> interpreter().run("spin", List.of(), limits));
+
+    assertEquals(Duration.ofMillis(50), e.getTimeout());
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+  }
+
+  @Test
+  void exceedingTheCallDepthFails() throws Exception {
+    var limits = ExecutionLimits.DEFAULT.withMaxDepth(10);
+
+    var e =
+        assertThrows(
+            CallDepthExceededException.class,
+            () -> interpreter().run("fib", List.of(new IntValue(20)), limits));
+    assertEquals(10, e.getMaxDepth());
+  }
+
+  @Test
+  void optionsSetTheDefaultLimits() throws Exception {
+    var limits = ExecutionLimits.DEFAULT.withFuel(100);
+    var options = InterpreterOptions.DEFAULT.withLimits(limits);
+    var interpreter = new Interpreter(new CompilerDriver(SOURCE).analyze(), options);
+
+    assertThrows(LimitExceededException.class, () -> interpreter.run("spin", List.of()));
+    assertEquals(new IntValue(0), interpreter.run("loop", List.of(new IntValue(10))));
+  }
+
+  @ParameterizedTest
+  @EnumSource
+  void everyEngineTakesDefaultLimitsFromTheOptions(EngineKind engine) throws Exception {
+    var limits = ExecutionLimits.DEFAULT.withFuel(100);
+    var options = InterpreterOptions.DEFAULT.withLimits(limits);
+    var program = engine.create(new CompilerDriver(SOURCE).analyze(), options);
+
+    assertThrows(OutOfFuelException.class, () -> program.run("spin", List.of()));
+    assertEquals(new IntValue(0), program.run("loop", List.of(new IntValue(10))));
+  }
+
+  @ParameterizedTest
+  @EnumSource
+  void everyEngineEnforcesLimits(EngineKind engine) throws Exception {
+    var program = new CompilerDriver(SOURCE).compile(engine);
+    var ten = List.<RValue>of(new IntValue(10));
+
+    var fuel = ExecutionLimits.DEFAULT.withFuel(177);
+    assertEquals(new IntValue(55), program.run("fib", ten, fuel));
+    assertThrows(
+        OutOfFuelException.class, () -> program.run("fib", List.of(new IntValue(11)), fuel));
+
+    // fib(10) nests 10 calls deep, while tail calls don't nest at all
+    var depth = ExecutionLimits.DEFAULT.withMaxDepth(10);
+    assertEquals(new IntValue(55), program.run("fib", ten, depth));
+    assertEquals(new IntValue(0), program.run("loop", List.of(new IntValue(100)), depth));
+    assertThrows(
+        CallDepthExceededException.class,
+        () -> program.run("fib", List.of(new IntValue(11)), depth));
+
+    var timeout = ExecutionLimits.DEFAULT.withTimeout(Duration.ofMillis(50));
+    assertThrows(DeadlineExceededException.class, () -> program.run("spin", List.of(), timeout));
+  }
+
+  @Test
+  void invalidLimitsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> ExecutionLimits.DEFAULT.withMaxDepth(0));
+    assertThrows(IllegalArgumentException.class, () -> ExecutionLimits.DEFAULT.withFuel(-1));
+  }
+}
@@ -5,22 +5,29 @@ import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import io.github.llewvallis.cfs.CompilerDriver;
 import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 class InterpreterTest {
 
+  private static final String FIB =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
   @ParameterizedTest
   @MethodSource
   void interpretationProducesCorrectValue(String source, RValue expected, List<RValue> args)
       throws InterpretException, CompileErrorsException {
-    var output = new CompilerDriver(source).interpret("main", args);
-    assertEquals(expected, output);
+    for (var engine : EngineKind.values()) {
+      var output = new CompilerDriver(source).interpret(engine, "main", args);
+      assertEquals(expected, output, engine.name());
+    }
   }
 
   static Stream<Arguments> interpretationProducesCorrectValue() {
@@ -38,7 +45,26 @@ class InterpreterTest {
         intProgram("int main() { return 1 ? 42 : (1 / 0); }", 42),
         intProgram("int main() { return 0 ? (1 / 0) : 42; }", 42),
         intProgram("int main() { return 0 && (1 / 0); }", 0),
-        intProgram("int main() { return 42 || (1 / 0); }", 42));
+        intProgram("int main() { return 42 || (1 / 0); }", 42),
+        intProgram("int main() { return 7 / 2; }", 3),
+        intProgram("int main() { int a; 1 ? (a = 1) : 0; return a; }", 1),
+        intProgram("int main() { int a; int b; b = (a = 2) * a; return a + b; }", 6),
+        intProgram("int main() { return fib(15); } " + FIB, 610),
+        intProgram("int main(int a) { return 1 + (a ? 2 : a || 3) * (a && 4); }", 9, 1),
+        intProgram("int main(int a) { return 100000 * a - 40000; }", 60000, 1),
+        intProgram("int main() { int a; return (a = 1) + (a = 2) + a; }", 5),
+        intProgram("int main(int n) { return n ? main(n - 1) : 42; }", 42, 1000000),
+        intProgram("int main(int a, int b) { return a ? main(a - 1, b + a) : b; }", 10, 4, 0),
+        intProgram("int main(int a, int b) { return a && main(b, a - 1); }", 0, 3, 5),
+        intProgram(
+            "int main(int a, int b, int n) { return n ? main(b, a, n - 1) : a * 10 + b; }",
+            21,
+            1,
+            2,
+            3),
+        intProgram("int main(int n) { int a; a = n; return n || main(a + 1); }", 1, 0),
+        intProgram("int main() { return 1 || a; int a; }", 1),
+        intProgram("int main() { return 0 && (a = 1); int a; }", 0));
   }
 
   private static Arguments intProgram(String program, int returns, int... args) {
@@ -51,9 +77,11 @@ class InterpreterTest {
   void interpretingErrorThrowsCorrectException(String source, List<RValue> args)
       throws CompileErrorsException {
     var ast = new CompilerDriver(source).analyze();
-    var interpreter = new Interpreter(ast);
 
-    assertThrows(InterpretException.class, () -> interpreter.run("main", args));
+    for (var engine : EngineKind.values()) {
+      assertThrows(
+          InterpretException.class, () -> engine.create(ast).run("main", args), engine.name());
+    }
   }
 
   static Stream<Arguments> interpretingErrorThrowsCorrectException() {
@@ -61,6 +89,59 @@ class InterpreterTest {
         arguments("int main() {}", List.of()),
         arguments("int main(int a) { return a; }", List.of()),
         arguments("int main() { int a; return a; }", List.of()),
-        arguments("int main() { 1 / 0; }", List.of()));
+        arguments("int main() { 1 / 0; }", List.of()),
+        arguments("int main() { return 1 / 0; }", List.of()),
+        arguments("int main() { int a; 0 ? (a = 1) : 0; return a; }", List.of()),
+        arguments("int main() { int a; 0 && (a = 1); return a; }", List.of()),
+        arguments("int main() { a = 1; int a; return a; }", List.of()),
+        arguments("int main() { a = 1; return a; int a; }", List.of()),
+        arguments("int main() { return a; int a; }", List.of()),
+        arguments(
+            "int main(int n) { int a; n ? (a = 1) : 0; return n ? main(n - 1) : a; }",
+            List.of(new IntValue(1))));
+  }
+
+  @Test
+  void deepRecursionDoesNotUseTheJavaStack() throws Exception {
+    var ast = new CompilerDriver("int main(int n) { return n ? 1 + main(n - 1) : 0; }").analyze();
+    var output = new Interpreter(ast).run("main", List.of(new IntValue(3_000_000)));
+    assertEquals(new IntValue(3_000_000), output);
+  }
+
+  @Test
+  void exceedingMaxDepthFailsCleanly() throws Exception {
+    var ast = new CompilerDriver("int main(int n) { return n ? 1 + main(n - 1) : 0; }").analyze();
+    var limits = ExecutionLimits.DEFAULT.withMaxDepth(100);
+    var interpreter = new Interpreter(ast, InterpreterOptions.DEFAULT.withLimits(limits));
+
+    assertEquals(new IntValue(99), interpreter.run("main", List.of(new IntValue(99))));
+
+    var e =
+        assertThrows(
+            CallDepthExceededException.class,
+            () -> interpreter.run("main", List.of(new IntValue(100))));
+    assertEquals("maximum call depth of 100 exceeded", e.getMessage());
+
+    // The interpreter is left in a usable state afterwards
+    assertEquals(new IntValue(5), interpreter.run("main", List.of(new IntValue(5))));
+  }
+
+  @Test
+  void steadyStateEvaluationDoesNotAllocate() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+    var interpreter = new Interpreter(ast);
+    var args = List.<RValue>of(new IntValue(20));
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Give the interpreter's stack a chance to grow and the JIT a chance to settle first
+    for (var i = 0; i < 10; i++) interpreter.run("fib", args);
+
+    var before = threads.getCurrentThreadAllocatedBytes();
+    interpreter.run("fib", args);
+    var allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+    // fib(20) makes over 20,000 calls, so allocating anything per call or per operation would show
+    // up as hundreds of kilobytes. Only the boxed result is expected
+    assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
   }
 }
@@ -0,0 +1,83 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MemoizationTest {
+
+  private static final String FIB =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  private static final InterpreterOptions MEMOIZED =
+      InterpreterOptions.DEFAULT.withMemoCapacity(64);
+
+  @Test
+  void exponentialRecursionBecomesLinear() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+    var interpreter = new Interpreter(ast, MEMOIZED);
+
+    assertEquals(new IntValue(832040), interpreter.run("fib", List.of(new IntValue(30))));
+
+    // Each of fib(0) to fib(29) misses once, and every other call hits
+    var table = interpreter.getMemoizer().getTables().get(ast.getFunction("fib"));
+    assertEquals(30, table.getMisses());
+    assertEquals(28, table.getHits());
+  }
+
+  @Test
+  void multipleArgumentsAreAllPartOfTheKey() throws Exception {
+    var source =
+        "int choose(int n, int k) { return k ? (n - k ? choose(n - 1, k - 1) + choose(n - 1, k)"
+            + " : 1) : 1; }";
+    var interpreter = new Interpreter(new CompilerDriver(source).analyze(), MEMOIZED);
+
+    var args = List.<RValue>of(new IntValue(30), new IntValue(15));
+    assertEquals(new IntValue(155117520), interpreter.run("choose", args));
+  }
+
+  @Test
+  void evictedResultsAreRecomputedCorrectly() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+    var options = InterpreterOptions.DEFAULT.withMemoCapacity(2);
+    var interpreter = new Interpreter(ast, options);
+
+    assertEquals(new IntValue(6765), interpreter.run("fib", List.of(new IntValue(20))));
+  }
+
+  @Test
+  void tailCallsCanHitTheTable() throws Exception {
+    var source =
+        "int main(int n) { return sum(n, 0) + sum(n, 0); } "
+            + "int sum(int n, int acc) { return n ? sum(n - 1, acc + n) : acc; }";
+    var interpreter = new Interpreter(new CompilerDriver(source).analyze(), MEMOIZED);
+
+    assertEquals(new IntValue(110), interpreter.run("main", List.of(new IntValue(10))));
+  }
+
+  @Test
+  void failingCallsAreNotRemembered() throws Exception {
+    var source = "int main(int n) { return div(n) + div(n); } int div(int n) { return 1 / n; }";
+    var interpreter = new Interpreter(new CompilerDriver(source).analyze(), MEMOIZED);
+
+    assertThrows(InterpretException.class, () -> interpreter.run("main", List.of(new IntValue(0))));
+    assertEquals(new IntValue(2), interpreter.run("main", List.of(new IntValue(1))));
+  }
+
+  @Test
+  void hugeCapacitiesAreClamped() throws Exception {
+    var options = InterpreterOptions.DEFAULT.withMemoCapacity(Integer.MAX_VALUE);
+    assertEquals(MemoTable.MAX_CAPACITY, options.memoCapacity());
+
+    var interpreter = new Interpreter(new CompilerDriver(FIB).analyze(), options);
+    assertEquals(new IntValue(832040), interpreter.run("fib", List.of(new IntValue(30))));
+  }
+
+  @Test
+  void negativeCapacitiesAreRejected() {
+    assertThrows(
+        IllegalArgumentException.class, () -> InterpreterOptions.DEFAULT.withMemoCapacity(-1));
+  }
+}
@@ -0,0 +1,116 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.ast.CallExprAst;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ProfilerTest {
+
+  private static final String SOURCE =
+      "int main() { return fib(10) + sq(3) + loop(5); } "
+          + "int sq(int x) { return x * x; } "
+          + "int loop(int n) { return n ? loop(n - 1) : 0; } "
+          + "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  private static Profiler profile(String source) throws Exception {
+    var profiler = new Profiler();
+    var options = InterpreterOptions.DEFAULT.withProfiler(profiler);
+    new Interpreter(new CompilerDriver(source).analyze(), options).run("main", List.of());
+    return profiler;
+  }
+
+  @Test
+  void countsCallsAndTimesEachFunction() throws Exception {
+    var profiler = profile(SOURCE);
+
+    var calls = new HashMap<String, Long>();
+    for (var function : profiler.getFunctions()) {
+      calls.put(function.getName(), function.getCalls());
+      assertTrue(function.getSelfNanos() <= function.getTotalNanos(), function.getName());
+    }
+
+    // Self tail calls reuse the frame, but still count as calls
+    assertEquals(Map.of("main", 1L, "fib", 177L, "sq", 1L, "loop", 6L), calls);
+
+    var main = profiler.getFunctions().stream().filter(f -> f.getName().equals("main")).findAny();
+    var total = profiler.getFunctions().stream().mapToLong(f -> f.getSelfNanos()).sum();
+    assertEquals(total, main.orElseThrow().getTotalNanos());
+  }
+
+  @Test
+  void countsExpressionHits() throws Exception {
+    var profiler = profile(SOURCE);
+
+    var callHits = new HashMap<String, Long>();
+    profiler
+        .getHits()
+        .forEach(
+            (node, hits) -> {
+              if (node instanceof CallExprAst call) {
+                callHits.merge(call.getFunctionDecl().getName().getContent(), hits, Long::sum);
+              }
+            });
+
+    assertEquals(Map.of("fib", 177L, "sq", 1L, "loop", 6L), callHits);
+  }
+
+  @Test
+  void foldedStacksFollowCallPaths() throws Exception {
+    var profiler = profile(SOURCE);
+
+    var stacks = new HashMap<String, Long>();
+    for (var line : profiler.toFoldedStacks().split("\n")) {
+      var space = line.lastIndexOf(' ');
+      stacks.put(line.substring(0, space), Long.parseLong(line.substring(space + 1)));
+    }
+
+    assertTrue(stacks.containsKey("main;sq"));
+    assertTrue(stacks.containsKey("main;loop"));
+    assertTrue(stacks.containsKey("main;fib;fib;fib"));
+    assertFalse(stacks.containsKey("main;loop;loop"));
+
+    var total = stacks.values().stream().mapToLong(Long::longValue).sum();
+    var main = profiler.getFunctions().stream().filter(f -> f.getName().equals("main")).findAny();
+    assertEquals(main.orElseThrow().getTotalNanos(), total);
+  }
+
+  @Test
+  void deepRecursionIsCutOffInFoldedStacks() throws Exception {
+    var profiler = new Profiler();
+    var source = "int main(int n) { return n ? 1 + main(n - 1) : 0; }";
+    var options = InterpreterOptions.DEFAULT.withProfiler(profiler);
+    var interpreter = new Interpreter(new CompilerDriver(source).analyze(), options);
+
+    assertEquals(new IntValue(100_000), interpreter.run("main", List.of(new IntValue(100_000))));
+
+    var main = profiler.getFunctions().getFirst();
+    assertEquals(100_001, main.getCalls());
+
+    var lines = profiler.toFoldedStacks().split("\n");
+    assertTrue(lines.length <= Profiler.MAX_PATH_DEPTH, lines.length + " lines");
+
+    var deepest = lines[lines.length - 1];
+    var total = 0L;
+    for (var line : lines) total += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+
+    assertTrue(deepest.startsWith("main;".repeat(Profiler.MAX_PATH_DEPTH - 1) + "main "), deepest);
+    assertEquals(main.getTotalNanos(), total);
+  }
+
+  @Test
+  void failedRunsLeaveNoCallsActive() throws Exception {
+    var profiler = new Profiler();
+    var source = "int main(int n) { return n ? main(n - 1) : 1 / n; }";
+    var options = InterpreterOptions.DEFAULT.withProfiler(profiler);
+    var interpreter = new Interpreter(new CompilerDriver(source).analyze(), options);
+
+    assertThrows(InterpretException.class, () -> interpreter.run("main", List.of(new IntValue(3))));
+    assertEquals(0, profiler.depth());
+    assertEquals(4, profiler.getFunctions().getFirst().getCalls());
+  }
+}
@@ -0,0 +1,69 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SamplingProfilerTest {
+
+  private static final String SOURCE =
+      """
+      int main() { return fib(27) + 1; }
+      int fib(int n) {
+        return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0;
+      }
+      """;
+
+  @Test
+  void samplesAreAttributedToFunctionsAndLines() throws Exception {
+    var ast = new CompilerDriver(SOURCE).analyze();
+    var sampler = new SamplingProfiler(Duration.ofNanos(100_000));
+
+    try (sampler) {
+      var options = InterpreterOptions.DEFAULT.withSampler(sampler);
+      var interpreter = new Interpreter(ast, options);
+
+      // Keep running until enough samples have been taken, however slow the machine is
+      while (sampler.getSamples() < 20) {
+        assertEquals(new IntValue(196419), interpreter.run("main", List.of()));
+      }
+    }
+
+    var samples = sampler.getSamples();
+    var fib = ast.getFunction("fib");
+    var main = ast.getFunction("main");
+
+    assertTrue(sampler.getSelfSamples().get(fib) > samples / 2);
+    assertTrue(sampler.getTotalSamples().get(fib) >= sampler.getSelfSamples().get(fib));
+
+    // Samples read the stack while it changes, so a few can miss main
+    assertTrue(sampler.getTotalSamples().get(main) >= samples * 9 / 10);
+
+    var lines = sampler.getLineSamples(new SourceMap(SOURCE));
+    assertTrue(lines.get(2) > samples / 2, "fib's body should be the hottest line: " + lines);
+  }
+
+  @Test
+  void intervalsMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> new SamplingProfiler(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> new SamplingProfiler(Duration.ofNanos(-1)));
+  }
+
+  @Test
+  void finishedRunsAreNoLongerSampled() throws Exception {
+    var ast = new CompilerDriver(SOURCE).analyze();
+
+    try (var sampler = new SamplingProfiler(Duration.ofNanos(100_000))) {
+      var options = InterpreterOptions.DEFAULT.withSampler(sampler);
+      new Interpreter(ast, options).run("fib", List.of(new IntValue(5)));
+
+      var before = sampler.getSamples();
+      Thread.sleep(20);
+      assertEquals(before, sampler.getSamples());
+    }
+  }
+}
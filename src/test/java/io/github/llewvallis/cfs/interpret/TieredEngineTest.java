@@ -0,0 +1,119 @@
+package io.github.llewvallis.cfs.interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TieredEngineTest {
+
+  private static final String FIB =
+      "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  @Test
+  void coldFunctionsAreNotCompiled() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+    var engine = new TieredEngine(ast, 1000, InterpreterOptions.DEFAULT);
+
+    assertEquals(new IntValue(55), engine.run("fib", List.of(new IntValue(10))));
+    assertFalse(engine.isCompiled("fib"));
+  }
+
+  @Test
+  void hotFunctionsArePromotedAndStillCorrect() throws Exception {
+    var source = "int main(int n) { return fib(n) + id(n); } int id(int n) { return n; } " + FIB;
+    var ast = new CompilerDriver(source).analyze();
+    var engine = new TieredEngine(ast, 100, InterpreterOptions.DEFAULT);
+
+    var deadline = System.nanoTime() + 10_000_000_000L;
+    while (!engine.isCompiled("fib")) {
+      assertTrue(System.nanoTime() < deadline, "fib was never compiled");
+      assertEquals(new IntValue(625), engine.run("main", List.of(new IntValue(15))));
+      Thread.sleep(1);
+    }
+
+    // Compiled fib is still called from the interpreted main, and id stays cold throughout
+    assertEquals(new IntValue(6785), engine.run("main", List.of(new IntValue(20))));
+    assertFalse(engine.isCompiled("id"));
+  }
+
+  @Test
+  void compiledCodeCanCallColdFunctions() throws Exception {
+    var source =
+        "int loop(int n) { return n ? leaf(n) + loop(n - 1) : 0; } int leaf(int n) { return n; }";
+    var ast = new CompilerDriver(source).analyze();
+    var engine = new TieredEngine(ast, 10, InterpreterOptions.DEFAULT);
+
+    var deadline = System.nanoTime() + 10_000_000_000L;
+    while (!engine.isCompiled("loop")) {
+      assertTrue(System.nanoTime() < deadline, "loop was never compiled");
+      assertEquals(new IntValue(15), engine.run("loop", List.of(new IntValue(5))));
+      Thread.sleep(1);
+    }
+
+    assertEquals(new IntValue(15), engine.run("loop", List.of(new IntValue(5))));
+  }
+
+  @Test
+  void selfTailCallsCountTowardsPromotion() throws Exception {
+    var ast = new CompilerDriver("int loop(int n) { return n ? loop(n - 1) : 7; }").analyze();
+    var engine = new TieredEngine(ast, 100, InterpreterOptions.DEFAULT);
+
+    // A single run enters loop once, but goes round it far more often than the threshold
+    assertEquals(new IntValue(7), engine.run("loop", List.of(new IntValue(1000))));
+
+    var deadline = System.nanoTime() + 10_000_000_000L;
+    while (!engine.isCompiled("loop")) {
+      assertTrue(System.nanoTime() < deadline, "loop was never compiled");
+      Thread.sleep(1);
+    }
+
+    assertEquals(new IntValue(7), engine.run("loop", List.of(new IntValue(1000))));
+  }
+
+  @Test
+  void limitsCoverEveryTierOfARun() throws Exception {
+    var ast = new CompilerDriver(FIB).analyze();
+    var engine = new TieredEngine(ast, 100, InterpreterOptions.DEFAULT);
+    var ten = List.<RValue>of(new IntValue(10));
+
+    var deadline = System.nanoTime() + 10_000_000_000L;
+    while (!engine.isCompiled("fib")) {
+      assertTrue(System.nanoTime() < deadline, "fib was never compiled");
+      engine.run("fib", ten);
+      Thread.sleep(1);
+    }
+
+    // The run starts in the interpreter and makes every other call in compiled code, which has to
+    // charge the same budget. fib(10) makes 177 calls
+    assertEquals(new IntValue(55), engine.run("fib", ten, ExecutionLimits.DEFAULT.withFuel(177)));
+
+    var fuel = ExecutionLimits.DEFAULT.withFuel(176);
+    assertThrows(OutOfFuelException.class, () -> engine.run("fib", ten, fuel));
+
+    var depth = ExecutionLimits.DEFAULT.withMaxDepth(5);
+    assertThrows(CallDepthExceededException.class, () -> engine.run("fib", ten, depth));
+  }
+
+  @Test
+  void deepRecursionInCompiledCodeIsAnInterpretException() throws Exception {
+    var source = "int main(int n) { return f(n); } int f(int n) { return n ? 1 + f(n - 1) : 0; }";
+    var ast = new CompilerDriver(source).analyze();
+    var engine = new TieredEngine(ast, 100, InterpreterOptions.DEFAULT);
+
+    var deadline = System.nanoTime() + 10_000_000_000L;
+    while (!engine.isCompiled("f")) {
+      assertTrue(System.nanoTime() < deadline, "f was never compiled");
+      assertEquals(new IntValue(200), engine.run("main", List.of(new IntValue(200))));
+      Thread.sleep(1);
+    }
+
+    var args = List.<RValue>of(new IntValue(100_000_000));
+    var e = assertThrows(InterpretException.class, () -> engine.run("main", args));
+    assertEquals("stack overflow", e.getMessage());
+
+    // The engine can still be used after the failed run
+    assertEquals(new IntValue(200), engine.run("main", List.of(new IntValue(200))));
+  }
+}
@@ -0,0 +1,90 @@
+package io.github.llewvallis.cfs.interpret.closure;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.ast.AddExprAst;
+import io.github.llewvallis.cfs.ast.MulExprAst;
+import io.github.llewvallis.cfs.ast.ReturnStmtAst;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+class ParallelEvaluationTest {
+
+  private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @AfterAll
+  static void shutdown() {
+    pool.shutdown();
+  }
+
+  private static ClosureProgram compile(String source) throws Exception {
+    return ClosureCompiler.compileProgram(new CompilerDriver(source).analyze(), pool);
+  }
+
+  @Test
+  void divideAndConquerProducesSameResult() throws Exception {
+    var program =
+        compile("int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }");
+    assertEquals(new IntValue(196418), program.run("fib", List.of(new IntValue(27))));
+  }
+
+  @Test
+  void expensiveArgumentsAreEvaluatedTogether() throws Exception {
+    var program =
+        compile(
+            "int main(int n) { return add(tri(n), tri(n - 1), 1); } "
+                + "int add(int a, int b, int c) { return a + b + c; } "
+                + "int tri(int n) { return n ? n + tri(n - 1) : 0; }");
+    assertEquals(new IntValue(10001), program.run("main", List.of(new IntValue(100))));
+  }
+
+  @Test
+  void errorsInForkedOperandsPropagate() throws Exception {
+    var program = compile("int f(int n) { return n ? f(n - 1) * f(n - 1) : 1 / n; }");
+
+    var args = List.<RValue>of(new IntValue(8));
+    var e = assertThrows(InterpretException.class, () -> program.run("f", args));
+    assertEquals("division by zero", e.getMessage());
+  }
+
+  @Test
+  void errorsAreReportedInSourceOrder() throws Exception {
+    // The second argument runs on the calling thread and fails straight away, but the first one's
+    // error is the one evaluating them in order would have hit
+    var program =
+        compile(
+            "int main() { return pair(none(1), 1 / id(0)); } int pair(int a, int b) { return a; }"
+                + " int none(int n) { n; } int id(int n) { return n; }");
+
+    for (var i = 0; i < 20; i++) {
+      var e = assertThrows(InterpretException.class, () -> program.run("main", List.of()));
+      assertEquals("function did not return", e.getMessage());
+    }
+  }
+
+  @Test
+  void operandsWithAssignmentsStayInOrder() throws Exception {
+    var source =
+        "int main() { int a; return (a = id(2)) * id(a + 1) + id(a) * id(3); }"
+            + " int id(int n) { return n; }";
+    var ast = new CompilerDriver(source).analyze();
+
+    var returned = ast.getFunction("main").getBody().getStmts().get(1);
+    var add = (AddExprAst) ((ReturnStmtAst) returned).getValue();
+    var assigning = (MulExprAst) add.getLhs();
+    var pure = (MulExprAst) add.getRhs();
+
+    var compiler = new ClosureCompiler(function -> null, true);
+    assertFalse(compiler.isForkable(List.of(assigning.getLhs(), assigning.getRhs())));
+    assertTrue(compiler.isForkable(List.of(pure.getLhs(), pure.getRhs())));
+
+    var program = ClosureCompiler.compileProgram(ast, pool);
+    assertEquals(new IntValue(12), program.run("main", List.of()));
+  }
+}
@@ -0,0 +1,77 @@
+package io.github.llewvallis.cfs.interpret.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NodeInterpreterTest {
+
+  private static NodeInterpreter interpreter(String source) throws Exception {
+    return new NodeInterpreter(new CompilerDriver(source).analyze());
+  }
+
+  @Test
+  void ternaryWithStableConditionOnlyKeepsOneBranch() throws Exception {
+    var interpreter = interpreter("int main(int a) { return a ? 1 : 2; }");
+
+    assertEquals(new IntValue(1), interpreter.run("main", List.of(new IntValue(5))));
+    assertEquals(new IntValue(1), interpreter.run("main", List.of(new IntValue(7))));
+    assertTrue(interpreter.getFunction("main").dump().contains("SingleBranch(true)"));
+
+    assertEquals(new IntValue(2), interpreter.run("main", List.of(new IntValue(0))));
+    assertTrue(interpreter.getFunction("main").dump().contains("Generic"));
+    assertEquals(new IntValue(1), interpreter.run("main", List.of(new IntValue(5))));
+  }
+
+  @Test
+  void ternaryReplacedByRecursionInItsConditionKeepsRunning() throws Exception {
+    // The inner ternary specializes in f(1) while f(2) is still evaluating its condition, and then
+    // goes the other way in f(2)
+    var interpreter = interpreter("int f(int n) { return n ? (f(n - 1) ? 1 : 2) : 0; }");
+
+    assertEquals(new IntValue(1), interpreter.run("f", List.of(new IntValue(2))));
+    assertTrue(interpreter.getFunction("f").dump().contains("Generic"));
+    assertEquals(new IntValue(2), interpreter.run("f", List.of(new IntValue(1))));
+  }
+
+  @Test
+  void tinyFunctionsAreInlined() throws Exception {
+    var interpreter =
+        interpreter("int main() { return sq(3) + sq(4); } int sq(int x) { return x * x; }");
+
+    assertEquals(new IntValue(25), interpreter.run("main", List.of()));
+
+    var dump = interpreter.getFunction("main").dump();
+    assertEquals(2, dump.split("Inlined\\(sq\\)", -1).length - 1, dump);
+    assertFalse(dump.contains("Direct"), dump);
+  }
+
+  @Test
+  void recursiveFunctionsAreCalledDirectly() throws Exception {
+    var interpreter =
+        interpreter("int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }");
+
+    assertEquals(new IntValue(55), interpreter.run("fib", List.of(new IntValue(10))));
+
+    var dump = interpreter.getFunction("fib").dump();
+    assertTrue(dump.contains("Direct(fib)"), dump);
+    assertTrue(dump.contains("AddConstant(-1)"), dump);
+    assertFalse(dump.contains("Inlined"), dump);
+  }
+
+  @Test
+  void inlinedBodiesSpecializePerCallSite() throws Exception {
+    var interpreter =
+        interpreter(
+            "int main() { return pick(1) + pick(0); } int pick(int c) { return c ? 1 : 2; }");
+
+    assertEquals(new IntValue(3), interpreter.run("main", List.of()));
+
+    var dump = interpreter.getFunction("main").dump();
+    assertTrue(dump.contains("SingleBranch(true)"), dump);
+    assertTrue(dump.contains("SingleBranch(false)"), dump);
+  }
+}
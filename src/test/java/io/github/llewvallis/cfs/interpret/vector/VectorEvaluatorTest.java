@@ -0,0 +1,104 @@
+package io.github.llewvallis.cfs.interpret.vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.Interpreter;
+import io.github.llewvallis.cfs.interpret.RValue;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class VectorEvaluatorTest {
+
+  /** Checks every row against the interpreter, over more rows than fit in one chunk. */
+  private static void assertMatchesInterpreter(String source, String function, int bound)
+      throws Exception {
+    var ast = new CompilerDriver(source).analyze();
+    var arity = ast.getFunction(function).getParams().size();
+    var random = new Random(42);
+
+    var rows = 10_000;
+    var columns = new int[arity][rows];
+    for (var column : columns) {
+      for (var row = 0; row < rows; row++) column[row] = random.nextInt(-bound, bound + 1);
+    }
+
+    var results = new VectorEvaluator(ast).evaluate(function, columns);
+    var interpreter = new Interpreter(ast);
+
+    for (var row = 0; row < rows; row++) {
+      var args = new ArrayList<RValue>();
+      for (var column : columns) args.add(new IntValue(column[row]));
+
+      var expected = interpreter.run(function, args);
+      assertEquals(expected, new IntValue(results[row]), "row " + row + " " + args);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int f(int a, int b) { return a * 3 - -b + a / 7; }",
+        "int f(int a, int b) { return a - 2 ? a + b : b * 5; }",
+        "int f(int a, int b) { return (a - 1 && b + 2) + (a || b - 1); }",
+        "int f(int a, int b) { return a ? (b ? a / b : -a) : (b || 99); }",
+        "int f(int a, int b) { int x; a ? (x = b) : (x = a + 1); return x * 2; }",
+        "int f(int a, int b) { int x; int y; x = a; y = x + (x = b); return x + y; }",
+        "int f(int a, int b) { return g(a) + (b ? g(b + 1) : 0); } int g(int n) { return n * n; }",
+        "int f(int a, int b) { return a * b ? f(a - 1, 0) * f(0, b - 1) : a + b + 1; }",
+      })
+  void matchesInterpreterRowByRow(String source) throws Exception {
+    assertMatchesInterpreter(source, "f", 5);
+  }
+
+  @Test
+  void recursionShrinksTheActiveRows() throws Exception {
+    var source = "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+    var evaluator = new VectorEvaluator(new CompilerDriver(source).analyze());
+
+    var results = evaluator.evaluate("fib", new int[] {0, 1, 2, 10, 20, 5});
+    assertArrayEquals(new int[] {0, 1, 1, 55, 6765, 5}, results);
+  }
+
+  @Test
+  void inactiveRowsDoNotFail() throws Exception {
+    var source = "int f(int a, int b) { int x; b ? (x = 1) : 0; return b ? a / b + x : 0; }";
+    var evaluator = new VectorEvaluator(new CompilerDriver(source).analyze());
+
+    var results = evaluator.evaluate("f", new int[] {6, 6, 6}, new int[] {2, 0, 3});
+    assertArrayEquals(new int[] {4, 0, 3}, results);
+  }
+
+  @Test
+  void failureInAnyRowFailsTheWholeBatch() throws Exception {
+    var source =
+        "int div(int a, int b) { return a / b; } "
+            + "int init(int a) { int x; a ? (x = 1) : 0; return x; }";
+    var evaluator = new VectorEvaluator(new CompilerDriver(source).analyze());
+
+    var e =
+        assertThrows(
+            InterpretException.class,
+            () -> evaluator.evaluate("div", new int[] {1, 1}, new int[] {1, 0}));
+    assertEquals("division by zero", e.getMessage());
+
+    assertArrayEquals(new int[] {1, 1}, evaluator.evaluate("init", new int[] {1, 2}));
+    e = assertThrows(InterpretException.class, () -> evaluator.evaluate("init", new int[] {1, 0}));
+    assertEquals("uninitialized variable", e.getMessage());
+  }
+
+  @Test
+  void columnsMustMatchTheParameters() throws Exception {
+    var source = "int f(int a, int b) { return a + b; }";
+    var evaluator = new VectorEvaluator(new CompilerDriver(source).analyze());
+
+    assertThrows(InterpretException.class, () -> evaluator.evaluate("f", new int[3]));
+    assertThrows(InterpretException.class, () -> evaluator.evaluate("f", new int[3], new int[2]));
+    assertArrayEquals(new int[0], evaluator.evaluate("f", new int[0], new int[0]));
+  }
+}
@@ -0,0 +1,119 @@
+package io.github.llewvallis.cfs.jvm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.ExecutionLimits;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.interpret.InterpretException;
+import io.github.llewvallis.cfs.interpret.RValue;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JvmCompilerTest {
+
+  private static JvmProgram compile(String source)
+      throws CompileErrorsException, InterpretException {
+    return new JvmCompiler().compile(new CompilerDriver(source).analyze());
+  }
+
+  private static int run(String source, int... args) throws Exception {
+    var values = new ArrayList<RValue>();
+    for (var arg : args) values.add(new IntValue(arg));
+    return compile(source).run("main", values).castToInt().getValue();
+  }
+
+  /** Identifiers can't contain digits, so variables are named with letters instead. */
+  private static String variable(int index) {
+    return "v" + (char) ('a' + index / 26 / 26) + (char) ('a' + index / 26 % 26)
+        + (char) ('a' + index % 26);
+  }
+
+  @Test
+  void localsPastSlot255UseWideInstructions() throws Exception {
+    var source = new StringBuilder("int main() {");
+    for (var i = 0; i < 300; i++) source.append(" int ").append(variable(i)).append(";");
+    for (var i = 0; i < 300; i++) {
+      source.append(" ").append(variable(i)).append(" = ").append(i).append(";");
+    }
+
+    source.append(" return ").append(variable(299)).append(" * 1000 + ");
+    source.append(variable(256)).append(" - ").append(variable(3)).append("; }");
+
+    assertEquals(299 * 1000 + 256 - 3, run(source.toString()));
+  }
+
+  @Test
+  void constantPoolIndicesPast255UseLdcW() throws Exception {
+    var source = new StringBuilder("int main() { return 0");
+    var expected = 0;
+
+    for (var i = 0; i < 300; i++) {
+      var value = 100_000 + i * 7;
+      source.append(" + ").append(value);
+      expected += value;
+    }
+
+    source.append("; }");
+    assertEquals(expected, run(source.toString()));
+  }
+
+  @Test
+  void tooLargeMethodsAreRejected() {
+    var source = new StringBuilder("int main(int a) {");
+    for (var i = 0; i < 10_000; i++) source.append(" a = a + 100000;");
+    source.append(" return a; }");
+
+    var e = assertThrows(InterpretException.class, () -> compile(source.toString()));
+    assertEquals("function main is too large", e.getMessage());
+  }
+
+  @Test
+  void controlFlowInEveryPositionVerifies() throws Exception {
+    var source =
+        """
+        int main(int a) {
+          int b;
+          b = (a ? a && 2 : a || 3) + (a ? 0 : 1);
+          return a ? (b ? main(a - 1) : b) : (b && 5) || 6;
+        }
+        """;
+
+    assertEquals(5, run(source, 3));
+  }
+
+  @Test
+  void classesFailingVerificationAreNotLoaded() throws Exception {
+    var ast = new CompilerDriver("int main() { return 1; }").analyze();
+    var bytes = new JvmCompiler().compileClass(ast);
+
+    // Replace the iconst_1 that is returned with a nop, so the return has nothing to pop. It is
+    // followed by aload and invokevirtual to end the call in the budget
+    var patched = false;
+    for (var i = 0; i + 3 < bytes.length; i++) {
+      if (bytes[i] == 0x04 && bytes[i + 1] == 0x19 && bytes[i + 2] == 0
+          && bytes[i + 3] == (byte) 0xb6) {
+        bytes[i] = 0x00;
+        patched = true;
+      }
+    }
+
+    assertTrue(patched);
+    var e =
+        assertThrows(
+            AssertionError.class, () -> JvmCompiler.define(ast, bytes, ExecutionLimits.DEFAULT));
+    assertInstanceOf(VerifyError.class, e.getCause());
+  }
+
+  @Test
+  void deepRecursionIsAnInterpretException() throws Exception {
+    var program = compile("int main(int n) { return n ? 1 + main(n - 1) : 0; }");
+
+    var args = List.<RValue>of(new IntValue(100_000_000));
+
+    var e = assertThrows(InterpretException.class, () -> program.run("main", args));
+    assertEquals("stack overflow", e.getMessage());
+  }
+}
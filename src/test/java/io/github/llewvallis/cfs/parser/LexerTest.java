@@ -2,7 +2,12 @@ package io.github.llewvallis.cfs.parser;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import io.github.llewvallis.cfs.reporting.Span;
 import io.github.llewvallis.cfs.token.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class LexerTest {
@@ -67,4 +72,109 @@ class LexerTest {
     var lexer = new Lexer("@");
     assertThrows(LexException.class, lexer::next);
   }
+
+  @Test
+  void symbolsHaveCorrectSpans() throws LexException {
+    var lexer = new Lexer("(){}?:;,=+-*/&&||");
+
+    var expected =
+        List.of(
+            OpenParenToken.class,
+            CloseParenToken.class,
+            OpenBraceToken.class,
+            CloseBraceToken.class,
+            QuestionToken.class,
+            ColonToken.class,
+            SemicolonToken.class,
+            CommaToken.class,
+            EqualsToken.class,
+            PlusToken.class,
+            MinusToken.class,
+            StarToken.class,
+            SlashToken.class);
+
+    for (var i = 0; i < expected.size(); i++) {
+      var token = lexer.next();
+      assertInstanceOf(expected.get(i), token);
+      assertEquals(new Span(i, i + 1), token.getSpan());
+    }
+
+    var and = lexer.next();
+    assertInstanceOf(AndAndToken.class, and);
+    assertEquals(new Span(13, 15), and.getSpan());
+
+    var or = lexer.next();
+    assertInstanceOf(OrOrToken.class, or);
+    assertEquals(new Span(15, 17), or.getSpan());
+  }
+
+  @Test
+  void halfOfATwoCharacterSymbolThrows() throws LexException {
+    var lexer = new Lexer("& |");
+
+    var e = assertThrows(LexException.class, lexer::next);
+    assertEquals(0, e.getPosition());
+
+    e = assertThrows(LexException.class, lexer::next);
+    assertEquals(2, e.getPosition());
+
+    assertInstanceOf(EofToken.class, lexer.next());
+  }
+
+  @Test
+  void wordsSimilarToKeywordsAreIdents() throws LexException {
+    var lexer = new Lexer("in Int returns retur tni");
+
+    for (var word : List.of("in", "Int", "returns", "retur", "tni")) {
+      assertEquals(word, ((IdentToken) lexer.next()).getContent());
+    }
+  }
+
+  @Test
+  void wordsEndAtDigits() throws LexException {
+    var lexer = new Lexer("return12");
+
+    assertEquals(new Span(0, 6), assertInstanceOf(KwReturnToken.class, lexer.next()).getSpan());
+    assertEquals(12, assertInstanceOf(IntLiteralToken.class, lexer.next()).getValue());
+  }
+
+  @Test
+  void identsAndLiteralsMayUseOtherScripts() throws LexException {
+    var lexer = new Lexer("größe \u0661\u0662");
+
+    assertEquals("größe", ((IdentToken) lexer.next()).getContent());
+    assertEquals(12, ((IntLiteralToken) lexer.next()).getValue());
+  }
+
+  @Test
+  void tokensMaySpanReads() throws LexException {
+    var longName = "x".repeat(20_000);
+    var source = "int " + longName + "(int a) { return a && 12345; }";
+
+    // Hands out the input a character at a time, so every token is split across reads
+    var reader =
+        new Reader() {
+          private final Reader inner = new StringReader(source);
+
+          @Override
+          public int read(char[] buffer, int offset, int length) throws IOException {
+            return inner.read(buffer, offset, Math.min(length, 1));
+          }
+
+          @Override
+          public void close() {}
+        };
+
+    var expected = new Lexer(source);
+    var actual = new Lexer(reader);
+
+    while (true) {
+      var token = expected.next();
+      assertEquals(token, actual.next());
+      assertEquals(token.getSpan(), new Span(actual.getTokenStart(), actual.getTokenEnd()));
+      if (token instanceof EofToken) break;
+    }
+
+    assertEquals(longName, ((IdentToken) new Lexer(source.substring(4)).next()).getContent());
+  }
 }
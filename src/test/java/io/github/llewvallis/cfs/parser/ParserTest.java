@@ -7,7 +7,9 @@ import static org.junit.jupiter.params.provider.Arguments.arguments;
 import io.github.llewvallis.cfs.ast.*;
 import io.github.llewvallis.cfs.reporting.*;
 import io.github.llewvallis.cfs.token.*;
+import java.io.StringReader;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -123,4 +125,25 @@ class ParserTest {
             "int main() { (); }",
             List.of(new ParseError("expression", new CloseParenToken(null)))));
   }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "int main() { return fib(20); } int fib(int n) { return n < 2 ? n : fib(n - 1); }",
+        "int main(int a, int b) { int c; c = a && b || -(a / b); return c; }",
+        "int main { a = 42 }",
+        "int main() { 1+; } int other() { @ 2; }",
+      })
+  void streamingParsesTheSame(String source) {
+    var reporter = new ErrorReporter();
+    var expected = Parser.parse(reporter, source);
+
+    var streamingReporter = new ErrorReporter();
+    var actual = Parser.parse(streamingReporter, new StringReader(source));
+
+    // Lexing errors are found as parsing goes, so they can be reported in a different order
+    assertEquals(expected, actual);
+    assertEquals(reporter.getErrors().size(), streamingReporter.getErrors().size());
+    assertEquals(Set.copyOf(reporter.getErrors()), Set.copyOf(streamingReporter.getErrors()));
+  }
 }
@@ -5,6 +5,9 @@ import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import io.github.llewvallis.cfs.reporting.ErrorReporter;
 import io.github.llewvallis.cfs.reporting.TokenError;
+import io.github.llewvallis.cfs.token.IdentToken;
+import io.github.llewvallis.cfs.token.SemicolonToken;
+import io.github.llewvallis.cfs.token.TokenKind;
 import java.util.List;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
@@ -39,10 +42,74 @@ class TokenStreamTest {
     assertEquals(copy.next(), original.next());
   }
 
+  @Test
+  void packedTokensMatchTheLexer() throws LexException {
+    var source = "int main() { return foo(12, -x) && 3; }";
+    var stream = new TokenStream(new ErrorReporter(), new Lexer(source));
+    var lexer = new Lexer(source);
+
+    for (var i = 0; i < stream.size(); i++) {
+      var expected = lexer.next();
+      var index = stream.index();
+
+      assertEquals(expected.getClass(), stream.peekKind().getTokenClass());
+      assertEquals(expected.getSpan().start(), stream.getBuffer().start(index));
+      assertEquals(expected.getSpan().end(), stream.getBuffer().end(index));
+
+      var actual = stream.next();
+      assertEquals(expected, actual);
+      assertEquals(expected.getSpan(), actual.getSpan());
+    }
+
+    assertEquals(TokenKind.EOF, stream.peekKind());
+    assertEquals("foo", stream.getBuffer().text(6));
+    assertEquals(12, stream.getBuffer().value(8));
+  }
+
   @Test
   void peekDoesNotAffectNext() {
     var reporter = new ErrorReporter();
     var stream = new TokenStream(reporter, new Lexer("int foo"));
     assertEquals(stream.peek(), stream.next());
   }
+
+  @Test
+  void streamingOnlyKeepsRecentTokens() {
+    var source = "int main() { return 1 + 2; }\n".repeat(10_000);
+    var stream = TokenStream.streaming(new ErrorReporter(), new Lexer(source));
+    var capacity = stream.getBuffer().capacity();
+
+    while (stream.peekKind() != TokenKind.EOF) {
+      stream.advance();
+    }
+
+    assertEquals(110_001, stream.size());
+    assertEquals(capacity, stream.getBuffer().capacity());
+    assertEquals(source.length() - 1, stream.getLastPosition());
+  }
+
+  @Test
+  void marksKeepTokensForRewinding() {
+    var source = "int a;\n".repeat(10_000);
+    var stream = TokenStream.streaming(new ErrorReporter(), new Lexer(source));
+
+    stream.advance();
+    var mark = stream.mark();
+
+    while (stream.peekKind() != TokenKind.EOF) {
+      stream.advance();
+    }
+
+    stream.reset(mark);
+    stream.release();
+
+    assertEquals(new IdentToken(null, "a"), stream.next());
+    assertEquals(new SemicolonToken(null), stream.next());
+  }
+
+  @Test
+  void streamingStreamsCannotBeCopiedEarly() {
+    var stream = TokenStream.streaming(new ErrorReporter(), new Lexer("int foo"));
+    assertThrows(IllegalStateException.class, () -> new TokenStream(stream));
+  }
 }
@@ -0,0 +1,95 @@
+package io.github.llewvallis.cfs.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import io.github.llewvallis.cfs.reporting.CompileErrorsException;
+import io.github.llewvallis.cfs.reporting.SourceMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class Utf8ReaderTest {
+
+  @TempDir Path directory;
+
+  private static String readAll(Utf8Reader reader, int chunk) {
+    var result = new StringBuilder();
+    var chars = new char[chunk];
+
+    while (true) {
+      var read = reader.read(chars, 0, chunk);
+      if (read < 0) return result.toString();
+
+      // Readers may only return nothing when asked for nothing, and looping would never end
+      assertNotEquals(0, read);
+      result.append(chars, 0, read);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 3, 7, 8192})
+  void decodesLikeString(int chunk) {
+    var bytes = "int größe() { return 1; } 数字 😀 end".getBytes(StandardCharsets.UTF_8);
+    var malformed = new byte[bytes.length + 3];
+    System.arraycopy(bytes, 0, malformed, 0, bytes.length);
+    malformed[bytes.length] = (byte) 0xff;
+    malformed[bytes.length + 1] = 'a';
+    malformed[bytes.length + 2] = (byte) 0xc3;
+
+    for (var input : List.of(bytes, malformed)) {
+      var expected = new String(input, StandardCharsets.UTF_8);
+      assertEquals(expected, readAll(new Utf8Reader(ByteBuffer.wrap(input)), chunk));
+    }
+  }
+
+  @Test
+  void mappedFilesLexLikeStrings() throws IOException, LexException {
+    var source = "int größe(int a) {\n  return a && 12; }\n";
+    var file = directory.resolve("source.cfs");
+    Files.writeString(file, source);
+
+    var expected = new Lexer(source);
+    var actual = new Lexer(Utf8Reader.map(file));
+
+    while (true) {
+      var token = expected.next();
+      assertEquals(token, actual.next());
+      assertEquals(expected.getTokenStart(), actual.getTokenStart());
+      assertEquals(expected.getTokenEnd(), actual.getTokenEnd());
+      if (token.getSpan().start() == source.length()) break;
+    }
+  }
+
+  @Test
+  void filesCanBeCompiled() throws Exception {
+    var file = directory.resolve("fib.cfs");
+    Files.writeString(
+        file,
+        "int main() { return fib(15); }\n"
+            + "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }\n");
+
+    var compiler = new CompilerDriver(file);
+    assertEquals(new IntValue(610), compiler.interpret("main", List.of()));
+  }
+
+  @Test
+  void errorPositionsMatchTheDecodedFile() throws IOException {
+    // Positions count characters rather than bytes, so the multi-byte letters can't shift them
+    var source = "int größe() { return x; }\n";
+    var file = directory.resolve("error.cfs");
+    Files.writeString(file, source);
+
+    var e = assertThrows(CompileErrorsException.class, () -> new CompilerDriver(file).analyze());
+    var printed = e.prettyPrint(new SourceMap(source));
+    assertTrue(printed.contains("1:22"), printed);
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.llewvallis.cfs.reporting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.llewvallis.cfs.CompilerDriver;
+import io.github.llewvallis.cfs.interpret.EngineKind;
+import io.github.llewvallis.cfs.interpret.IntValue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PipelineStatsTest {
+
+  private static final String SOURCE =
+      "int main() { return fib(15); } "
+          + "int fib(int n) { return n ? (n - 1 ? fib(n - 1) + fib(n - 2) : 1) : 0; }";
+
+  @Test
+  void everyStageIsRecordedInOrder() throws Exception {
+    var compiler = new CompilerDriver(SOURCE);
+    assertEquals(new IntValue(610), compiler.interpret(EngineKind.CLOSURE, "main", List.of()));
+
+    var stages = compiler.getStats().getStages();
+    assertEquals(
+        List.of(
+            "lex",
+            "parse",
+            "CollectNames",
+            "ResolveNames",
+            "CheckCallArity",
+            "AssignSlots",
+            "CheckInitialization",
+            "MarkTailCalls",
+            "compile",
+            "interpret"),
+        stages.stream().map(PipelineStats.Stage::name).toList());
+
+    for (var stage : stages) {
+      assertTrue(stage.nanos() >= 0, stage.name());
+      assertTrue(stage.allocatedBytes() >= -1, stage.name());
+    }
+
+    // Including the end of file token
+    assertEquals(48, stages.get(0).items());
+    assertEquals(2, stages.get(8).items());
+    assertTrue(stages.get(1).items() > 20);
+  }
+
+  @Test
+  void errorsAreCountedAgainstThePassThatFoundThem() {
+    var compiler = new CompilerDriver("int main() { return f(); }");
+    assertThrows(CompileErrorsException.class, compiler::analyze);
+
+    var errors =
+        compiler.getStats().getStages().stream()
+            .filter(stage -> stage.unit().equals("errors") && stage.items() > 0)
+            .map(PipelineStats.Stage::name)
+            .toList();
+
+    assertEquals(List.of("ResolveNames"), errors);
+  }
+
+  @Test
+  void syntaxErrorsStopAfterParsing() {
+    var compiler = new CompilerDriver("int main( { return 1; }");
+    assertThrows(CompileErrorsException.class, compiler::analyze);
+
+    var stages = compiler.getStats().getStages();
+    assertEquals(List.of("lex", "parse"), stages.stream().map(PipelineStats.Stage::name).toList());
+    assertTrue(compiler.getStats().format().startsWith("stage"));
+  }
+}